@@ -0,0 +1,77 @@
+package taskscheduler;
+
+// data class containing only getter methods for the metrics tracked by a ResultCache
+public class CacheStats {
+
+    // data variables
+    private final long hits;
+    private final long diskHits;
+    private final long misses;
+    private final long evictions;
+    private final long expirations;
+    private final long entries;
+    private final long memoryBytes;
+    private final long diskBytes;
+
+    public CacheStats(long hitsValue, long diskHitsValue, long missesValue, long evictionsValue, long expirationsValue, long entriesValue,
+        long memoryBytesValue, long diskBytesValue){
+        hits = hitsValue;
+        diskHits = diskHitsValue;
+        misses = missesValue;
+        evictions = evictionsValue;
+        expirations = expirationsValue;
+        entries = entriesValue;
+        memoryBytes = memoryBytesValue;
+        diskBytes = diskBytesValue;
+    }
+
+    // getter method for the number of lookups answered from memory
+    public long getHits(){
+        return hits;
+    }
+
+    // getter method for the number of lookups answered from the disk tier
+    public long getDiskHits(){
+        return diskHits;
+    }
+
+    // getter method for the number of lookups that found nothing (the task had to run)
+    public long getMisses(){
+        return misses;
+    }
+
+    // getter method for the number of entries dropped to stay under the size limits
+    public long getEvictions(){
+        return evictions;
+    }
+
+    // getter method for the number of entries dropped because their time to live was up
+    public long getExpirations(){
+        return expirations;
+    }
+
+    // getter method for the number of entries in memory & on disk
+    public long getEntries(){
+        return entries;
+    }
+
+    // getter method for the bytes of serialized tasks held in memory
+    public long getMemoryBytes(){
+        return memoryBytes;
+    }
+
+    // getter method for the bytes of serialized tasks held on disk
+    public long getDiskBytes(){
+        return diskBytes;
+    }
+
+    // returns the share of lookups that were hits in either tier (0 if there haven't been any lookups)
+    public double getHitRate(){
+        long lookups = hits + diskHits + misses;
+
+        // avoid dividing by 0
+        if(lookups == 0)
+            return 0;
+        return (double)(hits + diskHits) / lookups;
+    }
+}
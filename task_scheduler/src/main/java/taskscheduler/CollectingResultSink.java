@@ -0,0 +1,50 @@
+package taskscheduler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// a ResultSink that keeps every completed task in memory, grouped by the server that completed it (what executeAll() returns)
+public class CollectingResultSink implements ResultSink {
+    // maps each server to the tasks it completed
+    private final Map<Server, List<Task>> completedTasks = new HashMap<>();
+
+    // tasks that were abandoned
+    private final List<Task> abandonedTasks = new ArrayList<>();
+
+    // starts with an empty list for each server, so servers that complete nothing are still in the map
+    public CollectingResultSink(List<Server> servers){
+        // check for null
+        if(servers == null)
+            throw new NullPointerException("server list cannot be null");
+
+        servers.stream().forEach(s -> completedTasks.put(s, new ArrayList<Task>()));
+    }
+
+    // starts with an empty map
+    public CollectingResultSink(){
+        this(List.of());
+    }
+
+    @Override
+    public void completed(Server server, Task task){
+        // servers that joined during executeAll get a new list
+        completedTasks.computeIfAbsent(server, k -> new ArrayList<Task>()).add(task);
+    }
+
+    @Override
+    public void abandoned(Task task, String reason){
+        abandonedTasks.add(task);
+    }
+
+    // returns a map of each server to the tasks it completed
+    public Map<Server, List<Task>> getCompletedTasks(){
+        return completedTasks;
+    }
+
+    // returns the tasks that were abandoned
+    public List<Task> getAbandonedTasks(){
+        return abandonedTasks;
+    }
+}
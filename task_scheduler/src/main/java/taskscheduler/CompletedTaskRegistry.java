@@ -0,0 +1,275 @@
+package taskscheduler;
+
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// remembers the ids of completed tasks so dependent tasks submitted in a later executeAll can still see them
+// ids are kept exactly as a bitset of TaskIdRegistry handles (each id holds its handle while it's remembered)
+// optionally, a bloom filter in front answers most lookups for ids that never completed without touching the handle table,
+// and ids can be forgotten a set time after they completed, or once there are more than a set number, so the registry doesn't grow forever
+// not thread safe (the scheduler only uses it while holding its lock)
+public class CompletedTaskRegistry {
+    // the registry the handles come from
+    private final TaskIdRegistry taskIds;
+
+    // handles of the completed ids
+    private final BitSet completed = new BitSet();
+    private int size = 0;
+
+    // how long ids are remembered after they complete (0 means forever)
+    private long retentionNanos = 0;
+
+    // the most ids remembered (0 means no limit), the ones that completed first are forgotten first
+    private int capacity = 0;
+
+    // handles & completion times in the order they completed (a ring buffer, only kept while there is a retention or a capacity)
+    private int[] expiryHandles = new int[0];
+    private long[] expiryTimes = new long[0];
+    private int expiryHead = 0;
+    private int expiryCount = 0;
+
+    // the bloom filter in front of the bitset (null means no filter) & how many ids it was sized for
+    private BloomFilter filter = null;
+    private int filterCapacity = 0;
+    // ids put in the filter (it's rebuilt bigger once this passes filterCapacity)
+    private int filterInserts = 0;
+
+    // creates an empty registry that takes handles from taskIds
+    public CompletedTaskRegistry(TaskIdRegistry taskIdsValue){
+        taskIds = Objects.requireNonNull(taskIdsValue);
+    }
+
+    // creates an empty registry that takes handles from taskIds & remembers at most capacity ids (0 means no limit)
+    public CompletedTaskRegistry(TaskIdRegistry taskIdsValue, int capacityValue){
+        this(taskIdsValue);
+        setCapacity(capacityValue);
+    }
+
+    // forgets ids retention after they complete (null or 0 remembers them forever)
+    // ids that are already in the registry are timed from now
+    public void setRetention(Duration retention){
+        long nanos = retention == null ? 0 : retention.toMillis() * 1_000_000;
+
+        // bounds check
+        if(nanos < 0)
+            throw new IllegalArgumentException("retention cannot be negative");
+
+        // start the expiry order over (with every id completing now)
+        retentionNanos = nanos;
+        restartExpiry();
+    }
+
+    // forgets the ids that completed first once more than maxIds are remembered (0 means no limit)
+    // ids that are already in the registry keep their order if there was a retention or capacity, otherwise they're ordered arbitrarily
+    public void setCapacity(int maxIds){
+        // bounds check
+        if(maxIds < 0)
+            throw new IllegalArgumentException("capacity cannot be negative");
+
+        boolean ordered = retentionNanos > 0 || capacity > 0;
+        capacity = maxIds;
+        if(!ordered)
+            restartExpiry();
+        trim();
+    }
+
+    // puts a bloom filter sized for expectedIds in front of the bitset (0 removes it)
+    // the filter grows by rebuilding once more ids than that have been added
+    public void setFilter(int expectedIds){
+        // bounds check
+        if(expectedIds < 0)
+            throw new IllegalArgumentException("expected ids cannot be negative");
+
+        filterCapacity = expectedIds;
+        rebuildFilter();
+    }
+
+    // remembers that id completed (does nothing if it's already remembered)
+    public void add(String id){
+        expire();
+
+        // skip ids that are already here
+        int handle = taskIds.find(id);
+        if(handle != TaskIdRegistry.NONE && completed.get(handle))
+            return;
+
+        // take a handle for the id
+        handle = taskIds.acquire(id);
+        completed.set(handle);
+        size++;
+        if(retentionNanos > 0 || capacity > 0)
+            pushExpiry(handle, System.nanoTime());
+        trim();
+
+        // add it to the filter, growing the filter once it's past what it was sized for
+        if(filter != null){
+            filter.add(id);
+            if(++filterInserts > filterCapacity){
+                filterCapacity *= 2;
+                rebuildFilter();
+            }
+        }
+    }
+
+    // tests if id completed (within the retention)
+    public boolean contains(String id){
+        expire();
+
+        // the filter never misses an id that was added, so a miss there means the id isn't here
+        if(filter != null && !filter.mightContain(id))
+            return false;
+
+        int handle = taskIds.find(id);
+        return handle != TaskIdRegistry.NONE && completed.get(handle);
+    }
+
+    // tests if the id with this handle completed (within the retention)
+    public boolean containsHandle(int handle){
+        expire();
+        return handle >= 0 && completed.get(handle);
+    }
+
+    // returns the number of ids remembered
+    public int size(){
+        expire();
+        return size;
+    }
+
+    // returns every id remembered
+    public Set<String> ids(){
+        expire();
+        return completed.stream().mapToObj(taskIds::idOf).collect(Collectors.toSet());
+    }
+
+    // forgets every id
+    public void clear(){
+        completed.stream().forEach(taskIds::release);
+        completed.clear();
+        size = 0;
+        expiryHead = 0;
+        expiryCount = 0;
+        rebuildFilter();
+    }
+
+    // forgets the ids whose retention is up
+    private void expire(){
+        if(retentionNanos == 0 || expiryCount == 0)
+            return;
+
+        long cutoff = System.nanoTime() - retentionNanos;
+        while(expiryCount > 0 && expiryTimes[expiryHead] - cutoff <= 0)
+            forgetOldest();
+    }
+
+    // forgets the ids that completed first until there are no more than the capacity
+    private void trim(){
+        while(capacity > 0 && size > capacity && expiryCount > 0)
+            forgetOldest();
+    }
+
+    // forgets the id at the front of the expiry order
+    private void forgetOldest(){
+        int handle = expiryHandles[expiryHead];
+        expiryHead = (expiryHead + 1) % expiryHandles.length;
+        expiryCount--;
+
+        completed.clear(handle);
+        taskIds.release(handle);
+        size--;
+    }
+
+    // starts the expiry order over with every id completing now (only kept while there is a retention or a capacity)
+    private void restartExpiry(){
+        expiryHead = 0;
+        expiryCount = 0;
+        expiryHandles = new int[0];
+        expiryTimes = new long[0];
+        if(retentionNanos > 0 || capacity > 0){
+            long now = System.nanoTime();
+            completed.stream().forEach(h -> pushExpiry(h, now));
+        }
+    }
+
+    // adds a handle to the back of the expiry order, growing the ring if it's full
+    private void pushExpiry(int handle, long time){
+        if(expiryCount == expiryHandles.length){
+            // copy the ring out in order
+            int length = Math.max(16, expiryHandles.length * 2);
+            int[] handles = new int[length];
+            long[] times = new long[length];
+            for(int i = 0; i < expiryCount; i++){
+                handles[i] = expiryHandles[(expiryHead + i) % expiryHandles.length];
+                times[i] = expiryTimes[(expiryHead + i) % expiryHandles.length];
+            }
+            expiryHandles = handles;
+            expiryTimes = times;
+            expiryHead = 0;
+        }
+
+        int tail = (expiryHead + expiryCount) % expiryHandles.length;
+        expiryHandles[tail] = handle;
+        expiryTimes[tail] = time;
+        expiryCount++;
+    }
+
+    // builds the filter again from the ids in the bitset (drops ids that expired since the last build)
+    private void rebuildFilter(){
+        filterInserts = size;
+        if(filterCapacity == 0){
+            filter = null;
+            return;
+        }
+
+        filterCapacity = Math.max(filterCapacity, size);
+        filter = new BloomFilter(filterCapacity);
+        completed.stream().forEach(h -> filter.add(taskIds.idOf(h)));
+    }
+
+    // a bloom filter with about a 1% false positive rate at its capacity (10 bits & 7 hashes per id)
+    private static class BloomFilter {
+        // hashes per id
+        private static final int HASHES = 7;
+
+        // the bits
+        private final long[] bits;
+        private final long bitCount;
+
+        BloomFilter(int capacity){
+            bitCount = Math.max(64, (long)capacity * 10);
+            bits = new long[(int)((bitCount + 63) / 64)];
+        }
+
+        void add(String id){
+            long hash = hash(id);
+            for(int i = 0; i < HASHES; i++){
+                long bit = bitFor(hash, i);
+                bits[(int)(bit >>> 6)] |= 1L << bit;
+            }
+        }
+
+        boolean mightContain(String id){
+            long hash = hash(id);
+            for(int i = 0; i < HASHES; i++){
+                long bit = bitFor(hash, i);
+                if((bits[(int)(bit >>> 6)] & (1L << bit)) == 0)
+                    return false;
+            }
+            return true;
+        }
+
+        // the i-th bit for an id (double hashing with the two halves of the hash)
+        private long bitFor(long hash, int i){
+            int h1 = (int)hash;
+            int h2 = (int)(hash >>> 32) | 1;
+            return Math.floorMod(h1 + (long)i * h2, bitCount);
+        }
+
+        // 64 bits of hash from an id's hash code
+        private static long hash(String id){
+            long h = id.hashCode() * 0x9E3779B97F4A7C15L;
+            return h ^ (h >>> 29) ^ ((long)id.length() << 40);
+        }
+    }
+}
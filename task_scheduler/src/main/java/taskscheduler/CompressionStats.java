@@ -0,0 +1,64 @@
+package taskscheduler;
+
+// data class containing only getter methods for the byte counts tracked by a PayloadCodec
+// "before" is the serialized size of a message and "after" is what actually went over the link
+public class CompressionStats {
+
+    // data variables
+    private final long bytesSentBefore;
+    private final long bytesSentAfter;
+    private final long bytesReceivedBefore;
+    private final long bytesReceivedAfter;
+    private final long messagesCompressed;
+    private final long messagesRaw;
+
+    public CompressionStats(long sentBefore, long sentAfter, long receivedBefore, long receivedAfter, long compressed, long raw){
+        bytesSentBefore = sentBefore;
+        bytesSentAfter = sentAfter;
+        bytesReceivedBefore = receivedBefore;
+        bytesReceivedAfter = receivedAfter;
+        messagesCompressed = compressed;
+        messagesRaw = raw;
+    }
+
+    // getter method for bytes sent before compression
+    public long getBytesSentBefore(){
+        return bytesSentBefore;
+    }
+
+    // getter method for bytes sent after compression
+    public long getBytesSentAfter(){
+        return bytesSentAfter;
+    }
+
+    // getter method for bytes received before decompression (what came over the link)
+    public long getBytesReceivedAfter(){
+        return bytesReceivedAfter;
+    }
+
+    // getter method for bytes received once decompressed
+    public long getBytesReceivedBefore(){
+        return bytesReceivedBefore;
+    }
+
+    // getter method for the number of messages that were compressed
+    public long getMessagesCompressed(){
+        return messagesCompressed;
+    }
+
+    // getter method for the number of messages that were sent raw (compression off or under the threshold)
+    public long getMessagesRaw(){
+        return messagesRaw;
+    }
+
+    // returns link bytes / serialized bytes over everything sent & received (1 means no savings)
+    public double getCompressionRatio(){
+        long before = bytesSentBefore + bytesReceivedBefore;
+        long after = bytesSentAfter + bytesReceivedAfter;
+
+        // avoid dividing by 0 when nothing has been sent
+        if(before == 0)
+            return 1;
+        return (double)after / before;
+    }
+}
@@ -0,0 +1,13 @@
+package taskscheduler;
+
+// the order a server takes queued tasks off its queue in (see TaskScheduler.setDispatchOrder)
+public enum DispatchOrder {
+    // HIGH tasks first, then MEDIUM, LOW & NONE (first in, first out within a priority)
+    PRIORITY,
+    // tasks with a deadline (Task.getDeadline) first, earliest deadline first, then the rest by priority
+    // tasks with deadlines are also placed on the server with the least deadline work queued
+    EARLIEST_DEADLINE_FIRST,
+    // each priority gets a share of run time in proportion to its weight (Server.setPriorityWeight), by deficit round robin over
+    // the tasks' estimated durations, so a steady stream of HIGH tasks can't starve the lower priorities
+    WEIGHTED_FAIR;
+}
@@ -0,0 +1,39 @@
+package taskscheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// the default TaskQueue. keeps every task on the heap
+class HeapTaskQueue implements TaskQueue {
+    // the tasks
+    private final ConcurrentLinkedQueue<Task> tasks = new ConcurrentLinkedQueue<>();
+
+    // number of tasks (ConcurrentLinkedQueue.size() walks the whole queue)
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public void add(Task task){
+        tasks.add(task);
+        count.incrementAndGet();
+    }
+
+    @Override
+    public Task poll(){
+        Task task = tasks.poll();
+        if(task != null)
+            count.decrementAndGet();
+        return task;
+    }
+
+    @Override
+    public int size(){
+        return count.get();
+    }
+
+    @Override
+    public List<Task> toList(){
+        return new ArrayList<>(tasks);
+    }
+}
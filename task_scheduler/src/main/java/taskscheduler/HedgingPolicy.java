@@ -0,0 +1,152 @@
+package taskscheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+// decides when an idempotent task has run long enough to start a backup copy on another server (speculative execution)
+// learns how long each task id usually takes and hedges once a task runs past a percentile of that
+public class HedgingPolicy {
+    // how many recent durations are kept for each task id
+    private static final int SAMPLES_PER_TASK = 32;
+    // how many task ids are remembered (least recently used ids are forgotten)
+    private static final int MAX_TRACKED_TASKS = 10000;
+
+    // a task is hedged once it runs longer than this percentile of its learned durations (0 to 1)
+    private final double percentile;
+
+    // how many durations need to be learned before the percentile is trusted
+    private final int minSamples;
+
+    // until then, a task is hedged once it runs longer than its estimated duration times this multiplier
+    private final double estimateMultiplier;
+
+    // recent durations (ms) for each task id
+    private final Map<String, Samples> durations = new LinkedHashMap<>(16, 0.75f, true){
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Samples> eldest){
+            return size() > MAX_TRACKED_TASKS;
+        }
+    };
+
+    // the servers backups can be sent to (kept up to date by TaskScheduler)
+    private volatile List<Server> servers = new ArrayList<>();
+
+    // metrics
+    private final AtomicLong hedgesLaunched = new AtomicLong();
+    private final AtomicLong hedgesWon = new AtomicLong();
+    private final AtomicLong wastedMillis = new AtomicLong();
+
+    // creates a hedging policy. e.g. (0.95, 5, 2) hedges past the 95th percentile once 5 runs have been seen, or past 2x the estimate before that
+    public HedgingPolicy(double percentileValue, int minSamplesValue, double estimateMultiplierValue){
+        // bounds check
+        if(percentileValue <= 0 || percentileValue > 1)
+            throw new IllegalArgumentException("percentile must be in (0, 1]");
+        if(minSamplesValue < 1 || minSamplesValue > SAMPLES_PER_TASK)
+            throw new IllegalArgumentException("minimum samples must be between 1 and " + SAMPLES_PER_TASK);
+        if(estimateMultiplierValue <= 0)
+            throw new IllegalArgumentException("estimate multiplier must be positive");
+
+        percentile = percentileValue;
+        minSamples = minSamplesValue;
+        estimateMultiplier = estimateMultiplierValue;
+    }
+
+    // returns how long (ms) to wait on a task before starting a backup, or -1 if it shouldn't be hedged
+    public long getHedgeDelay(Task task){
+        // check for null
+        Objects.requireNonNull(task);
+
+        // only idempotent tasks can safely run twice
+        if(!task.isIdempotent())
+            return -1;
+
+        // use the learned percentile once there's enough data
+        synchronized(durations){
+            Samples samples = durations.get(task.getId());
+            if(samples != null && samples.count() >= minSamples)
+                return samples.percentile(percentile);
+        }
+
+        // otherwise go off the estimate (a task without an estimate isn't hedged until it has history)
+        long estimate = task.getEstimatedDuration().toMillis();
+        if(estimate <= 0)
+            return -1;
+        return (long)Math.ceil(estimate * estimateMultiplier);
+    }
+
+    // records how long a task took to complete
+    public void recordDuration(Task task, long millis){
+        synchronized(durations){
+            durations.computeIfAbsent(task.getId(), k -> new Samples()).add(millis);
+        }
+    }
+
+    // picks a server other than the one running the task to run the backup on (null if there isn't one)
+    public Server pickBackup(Server running){
+        return servers.stream().filter(s -> s != running && s.isOnline() && s.canHedge()).findFirst().orElse(null);
+    }
+
+    // sets the servers backups can go to
+    void setServers(List<Server> serverList){
+        servers = new ArrayList<>(serverList);
+    }
+
+    // records that a backup was started
+    void recordHedge(){
+        hedgesLaunched.incrementAndGet();
+    }
+
+    // records how a hedge ended. won is true if the backup finished first, wasted is how long the losing copy ran
+    void recordHedgeResult(boolean won, long wasted){
+        if(won)
+            hedgesWon.incrementAndGet();
+        wastedMillis.addAndGet(wasted);
+    }
+
+    // getter method for the number of backups started
+    public long getHedgesLaunched(){
+        return hedgesLaunched.get();
+    }
+
+    // getter method for the number of times the backup finished before the original
+    public long getHedgesWon(){
+        return hedgesWon.get();
+    }
+
+    // getter method for the total time spent running copies that lost (wasted work)
+    public Duration getWastedTime(){
+        return Duration.ofMillis(wastedMillis.get());
+    }
+
+    // ring buffer of the most recent durations for one task id
+    private static class Samples {
+        private final long[] values = new long[SAMPLES_PER_TASK];
+        private int size = 0;
+        private int next = 0;
+
+        // adds a duration, overwriting the oldest once full
+        void add(long millis){
+            values[next] = millis;
+            next = (next + 1) % values.length;
+            size = Math.min(size + 1, values.length);
+        }
+
+        // number of durations stored
+        int count(){
+            return size;
+        }
+
+        // returns the duration at the given percentile (nearest rank)
+        long percentile(double p){
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            int rank = (int)Math.ceil(p * size) - 1;
+            return sorted[Math.max(0, rank)];
+        }
+    }
+}
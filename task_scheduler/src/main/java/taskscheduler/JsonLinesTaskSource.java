@@ -0,0 +1,291 @@
+package taskscheduler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+// reads tasks lazily from a file with one json object per line, e.g.
+// {"id": "B", "priority": "HIGH", "estimatedDuration": 20, "duration": 10, "dependencies": ["A"]}
+// only "id" is required. durations are in milliseconds, priority defaults to NONE & dependencies default to none
+// blank lines are skipped. the task class is picked the same way as elsewhere: DependentTask, PriorityTask or SimpleTask
+public class JsonLinesTaskSource implements TaskSource {
+    // the file being read
+    private final BufferedReader reader;
+
+    // the next task (read ahead so hasNext() knows if there is one)
+    private Task next;
+
+    // line number of the last line read (for error messages)
+    private int lineNumber = 0;
+
+    // opens a file for reading
+    public JsonLinesTaskSource(Path file) throws IOException{
+        reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+
+        // don't leak the file if the first line can't be read
+        try{
+            next = readTask();
+        }catch(RuntimeException e){
+            reader.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext(){
+        return next != null;
+    }
+
+    @Override
+    public Task next(){
+        if(next == null)
+            throw new NoSuchElementException();
+
+        Task task = next;
+        next = readTask();
+        return task;
+    }
+
+    @Override
+    public void close(){
+        try{
+            reader.close();
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // reads lines until one holds a task (null at the end of the file)
+    private Task readTask(){
+        try{
+            String line;
+            while((line = reader.readLine()) != null){
+                lineNumber++;
+                if(!line.isBlank())
+                    return parseTask(line);
+            }
+            return null;
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // builds a task from one line
+    private Task parseTask(String line){
+        Map<String, Object> fields = new Parser(line, lineNumber).parseLine();
+
+        // id is required
+        if(!(fields.get("id") instanceof String id))
+            throw new IllegalArgumentException("line " + lineNumber + ": task needs a string \"id\"");
+
+        // optional values
+        Duration estimate = Duration.ofMillis(number(fields, "estimatedDuration"));
+        long duration = number(fields, "duration");
+        TaskPriority priority = priority(fields);
+        Set<String> dependencies = dependencies(fields);
+
+        // pick the task class
+        if(!dependencies.isEmpty())
+            return new DependentTask(id, estimate, duration, priority, dependencies);
+        if(priority != TaskPriority.NONE)
+            return new PriorityTask(id, estimate, duration, priority);
+        return new SimpleTask(id, estimate, duration);
+    }
+
+    // returns a number field (0 if it's missing)
+    private long number(Map<String, Object> fields, String name){
+        Object value = fields.getOrDefault(name, 0L);
+        if(!(value instanceof Long n))
+            throw new IllegalArgumentException("line " + lineNumber + ": \"" + name + "\" must be a whole number");
+        return n;
+    }
+
+    // returns the priority field (NONE if it's missing)
+    private TaskPriority priority(Map<String, Object> fields){
+        Object value = fields.getOrDefault("priority", "NONE");
+        if(value instanceof String name)
+            for(TaskPriority p : TaskPriority.values())
+                if(p.name().equals(name))
+                    return p;
+        throw new IllegalArgumentException("line " + lineNumber + ": \"priority\" must be one of " + TaskPriority.getOrder());
+    }
+
+    // returns the dependencies field (none if it's missing)
+    @SuppressWarnings("unchecked")
+    private Set<String> dependencies(Map<String, Object> fields){
+        Object value = fields.getOrDefault("dependencies", Set.of());
+        if(!(value instanceof Set))
+            throw new IllegalArgumentException("line " + lineNumber + ": \"dependencies\" must be an array of strings");
+        return (Set<String>)value;
+    }
+
+    // parses the flat json objects this source reads: string keys with string, whole number or string array values
+    private static class Parser {
+        // the text & current position
+        private final String text;
+        private int pos = 0;
+
+        // line number for error messages
+        private final int lineNumber;
+
+        Parser(String textValue, int lineNumberValue){
+            text = textValue;
+            lineNumber = lineNumberValue;
+        }
+
+        // parses a line holding one object & nothing else
+        Map<String, Object> parseLine(){
+            Map<String, Object> fields = parseObject();
+            skipWhitespace();
+            if(pos < text.length())
+                throw error("unexpected text after the object");
+            return fields;
+        }
+
+        // parses {"key": value, ...}
+        private Map<String, Object> parseObject(){
+            Map<String, Object> fields = new HashMap<>();
+            expect('{');
+            if(peek() == '}'){
+                pos++;
+                return fields;
+            }
+            do{
+                String key = parseString();
+                expect(':');
+                fields.put(key, parseValue());
+            }while(consume(','));
+            expect('}');
+            return fields;
+        }
+
+        // parses a string, number or array of strings
+        private Object parseValue(){
+            char c = peek();
+            if(c == '"')
+                return parseString();
+            if(c == '[')
+                return parseArray();
+            return parseNumber();
+        }
+
+        // parses ["a", "b"]
+        private Set<String> parseArray(){
+            Set<String> values = new HashSet<>();
+            expect('[');
+            if(peek() == ']'){
+                pos++;
+                return values;
+            }
+            do{
+                values.add(parseString());
+            }while(consume(','));
+            expect(']');
+            return values;
+        }
+
+        // parses a string (supports \" \\ \/ \b \f \n \r \t & \\uXXXX escapes)
+        private String parseString(){
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while(pos < text.length() && text.charAt(pos) != '"'){
+                char c = text.charAt(pos++);
+                if(c == '\\' && pos < text.length()){
+                    char escaped = text.charAt(pos++);
+                    switch(escaped){
+                        case 'b' -> value.append('\b');
+                        case 'f' -> value.append('\f');
+                        case 'n' -> value.append('\n');
+                        case 'r' -> value.append('\r');
+                        case 't' -> value.append('\t');
+                        case 'u' -> value.append(parseUnicode());
+                        default -> value.append(escaped);
+                    }
+                }else{
+                    value.append(c);
+                }
+            }
+            expect('"');
+            return value.toString();
+        }
+
+        // parses the 4 hex digits of a \\u escape (the \\u is already consumed)
+        private char parseUnicode(){
+            if(pos + 4 > text.length())
+                throw error("expected 4 hex digits after \\u");
+            int code = 0;
+            for(int i = 0; i < 4; i++){
+                int digit = Character.digit(text.charAt(pos), 16);
+                if(digit < 0)
+                    throw error("expected 4 hex digits after \\u");
+                code = code * 16 + digit;
+                pos++;
+            }
+            return (char)code;
+        }
+
+        // parses a whole number (fractions & exponents are rejected, the fields that hold numbers are whole milliseconds)
+        private Long parseNumber(){
+            skipWhitespace();
+            int start = pos;
+            if(pos < text.length() && text.charAt(pos) == '-')
+                pos++;
+            int digits = pos;
+            while(pos < text.length() && Character.isDigit(text.charAt(pos)))
+                pos++;
+            if(start == pos)
+                throw error("expected a value");
+            if(digits == pos)
+                throw error("expected a digit");
+
+            // only whole numbers
+            if(pos < text.length() && (text.charAt(pos) == '.' || text.charAt(pos) == 'e' || text.charAt(pos) == 'E'))
+                throw error("numbers must be whole (no fractions or exponents)");
+            try{
+                return Long.parseLong(text.substring(start, pos));
+            }catch(NumberFormatException e){
+                throw error("number out of range");
+            }
+        }
+
+        // skips whitespace and returns the next character without consuming it
+        private char peek(){
+            skipWhitespace();
+            if(pos >= text.length())
+                throw error("unexpected end of line");
+            return text.charAt(pos);
+        }
+
+        // consumes c if it's next
+        private boolean consume(char c){
+            if(peek() != c)
+                return false;
+            pos++;
+            return true;
+        }
+
+        // consumes c or fails
+        private void expect(char c){
+            if(!consume(c))
+                throw error("expected '" + c + "'");
+        }
+
+        private void skipWhitespace(){
+            while(pos < text.length() && Character.isWhitespace(text.charAt(pos)))
+                pos++;
+        }
+
+        // makes an error pointing at the current position
+        private IllegalArgumentException error(String message){
+            return new IllegalArgumentException("line " + lineNumber + ", column " + (pos + 1) + ": " + message);
+        }
+    }
+}
@@ -1,11 +1,13 @@
 package taskscheduler;
 
-import java.net.MalformedURLException;
 import java.rmi.AlreadyBoundException;
-import java.rmi.Naming;
+import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.ExportException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
@@ -19,37 +21,44 @@ public class NetworkServer extends UnicastRemoteObject implements NetworkServerI
     // normal server being used to run tasks
     private final Server server = new Server();
 
+    // encodes result batches with the threshold each client sends, & decodes whatever each message's flag says (shared for the byte counts)
+    private final PayloadCodec codec = new PayloadCodec(true, 0);
+
+    // the registry this server is bound to & the name it is bound under (null when not registered)
+    private Registry registry;
+    private String boundName;
+
     // this method will create a new server instance and bind it to the rmi
     public static void main(String serverName) throws RemoteException {
+        // use the default port
+        start(serverName, port);
+    }
+
+    // creates a new server instance, binds it to the rmi registry on the given port & returns it (null if binding failed)
+    public static NetworkServer start(String serverName, int registryPort) throws RemoteException {
         // check that the user provided a name
         Objects.requireNonNull(serverName);
         if(serverName.isEmpty()){
             System.out.println("remote server creation failed: server name cannot be blank");
-            return;
+            return null;
         }
 
         // create implementation object
-        NetworkServerInterface remoteObject = new NetworkServer();
-
-        // register the remote object with the rmi
-        LocateRegistry.createRegistry(port);
+        NetworkServer remoteObject = new NetworkServer();
 
         try{
             // bind the remote object with the name provided in args
-            Naming.bind("rmi://localhost:" + port + "/" + serverName, remoteObject);
-        }catch(MalformedURLException e){
-            // notify the user that the name is invalid
-            System.out.println("remote server creation failed: name is not valid: " + serverName);
-            return;
+            remoteObject.register(serverName, registryPort);
         }catch(AlreadyBoundException e){
             // notify the user that a server with that name already exists
-            // make exception
             System.out.println("remote server creation failed: server with that name already exists");
-            return;
+            UnicastRemoteObject.unexportObject(remoteObject, true);
+            return null;
         }
 
         // let user know that remote server creation was successful
         System.out.println("remote server created with name " + serverName);
+        return remoteObject;
     }
 
     public NetworkServer() throws RemoteException {
@@ -57,13 +66,76 @@ public class NetworkServer extends UnicastRemoteObject implements NetworkServerI
         super();
     }
 
-    // adds task to the server
+    // binds this server to the rmi registry on the given port so schedulers watching the registry can find it
+    // the first server on a port creates the registry, later servers in the same process share it
+    public synchronized void register(String serverName, int registryPort) throws RemoteException, AlreadyBoundException {
+        // check for null
+        Objects.requireNonNull(serverName);
+
+        // can only be registered under one name at a time
+        if(boundName != null)
+            throw new ServerException("network server is already registered as " + boundName);
+
+        // create the registry, or use the existing one if another server on this machine already made it
+        Registry r;
+        try{
+            r = LocateRegistry.createRegistry(registryPort);
+        }catch(ExportException e){
+            r = LocateRegistry.getRegistry(registryPort);
+        }
+
+        // bind this server under the given name
+        r.bind(serverName, this);
+
+        // remember where the server is bound so it can deregister
+        registry = r;
+        boundName = serverName;
+    }
+
+    // removes this server from the rmi registry so schedulers stop sending it tasks
+    public synchronized void deregister() throws RemoteException {
+        // nothing to do if not registered
+        if(boundName == null)
+            return;
+
+        try{
+            // remove the name from the registry
+            registry.unbind(boundName);
+        }catch(NotBoundException e){
+            // someone else already removed it, which is fine
+        }
+
+        // no longer registered
+        registry = null;
+        boundName = null;
+    }
+
+    // deregisters the server and stops accepting calls
+    public void shutdown() throws RemoteException {
+        // leave the registry first so nobody finds a dead server
+        deregister();
+
+        // stop listening for remote calls
+        UnicastRemoteObject.unexportObject(this, true);
+    }
+
+    // adds task to the server (ServerFullException is passed back to the client when the queue is full)
     @Override
     public void addTask(Task task) throws RemoteException {
         // call server addTask method
         server.addTask(task);
     }
 
+    // sets how many tasks can be queued before tasks of this priority are rejected
+    public void setQueueCapacity(TaskPriority priority, int capacity){
+        server.setQueueCapacity(priority, capacity);
+    }
+
+    // sets the total queue capacity (lower priorities are shed first)
+    public void setQueueCapacity(int capacity){
+        server.setQueueCapacity(capacity);
+    }
+
     // executes all the tasks queued in the server
     @Override
     public List<Task> executeTasks() throws ServerException, RemoteException {
@@ -84,4 +156,36 @@ public class NetworkServer extends UnicastRemoteObject implements NetworkServerI
         // call server getStats method
         return server.getStats();
     }
+
+    // agrees to compress result batches over threshold bytes (nothing is kept, the client sends its threshold with each call)
+    @Override
+    public boolean negotiateCompression(int threshold) throws RemoteException {
+        // reject thresholds the codec can't use
+        return threshold >= 0;
+    }
+
+    // adds an encoded batch of tasks to the server (all of them or none, so a full server doesn't keep part of a batch)
+    @Override
+    @SuppressWarnings("unchecked")
+    public void addTasks(byte[] batch) throws RemoteException {
+        // decode & add the tasks
+        server.addTasks((List<Task>)codec.decode(batch));
+    }
+
+    // executes all the tasks queued in the server and returns them encoded
+    @Override
+    public byte[] executeTasksEncoded(int threshold) throws ServerException, RemoteException {
+        return codec.encode(new ArrayList<>(server.executeTasks()), threshold);
+    }
+
+    // returns the failed tasks encoded
+    @Override
+    public byte[] getFailedTasksEncoded(int threshold) throws RemoteException {
+        return codec.encode(new ArrayList<>(server.getFailedTasks()), threshold);
+    }
+
+    // returns the byte counts for messages this server has encoded & decoded
+    public CompressionStats getCompressionStats(){
+        return codec.getSnapshot();
+    }
 }
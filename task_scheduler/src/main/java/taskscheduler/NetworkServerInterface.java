@@ -18,4 +18,18 @@ public interface NetworkServerInterface extends Remote {
 
     // returns a view of ServerMonitor
     public ServerStats getStats() throws RemoteException;
+
+    // asks the server if it can compress result batches over threshold bytes. returns true if the server agreed
+    // once agreed, the client may use the encoded methods below (messages are made by PayloadCodec, & every message says if it's compressed)
+    // the client passes its threshold with each call that returns results, so one client's settings don't change another's
+    public boolean negotiateCompression(int threshold) throws RemoteException;
+
+    // adds an encoded List<Task> to the server. the server takes all of them or none (ServerFullException if it can't take them all)
+    public void addTasks(byte[] batch) throws RemoteException;
+
+    // executes all the tasks queued in the server and returns the completed tasks as an encoded List<Task> (compressed over threshold bytes)
+    public byte[] executeTasksEncoded(int threshold) throws ServerException, RemoteException;
+
+    // returns the failed tasks as an encoded List<Task> (compressed over threshold bytes)
+    public byte[] getFailedTasksEncoded(int threshold) throws RemoteException;
 }
@@ -0,0 +1,212 @@
+package taskscheduler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// serializes batches of tasks (or results) for sending to a remote server, compressing them with Deflater when they're big enough
+// every message starts with one byte saying whether the rest is raw or deflated, so both sides can always decode
+public class PayloadCodec {
+    // format flags written as the first byte of every message
+    private static final byte RAW = 0;
+    private static final byte DEFLATED = 1;
+
+    // largest message (serialized) a peer can ask to have inflated, so a bad header can't make this side allocate gigabytes
+    private static final int MAX_RAW_LENGTH = 64 * 1024 * 1024;
+
+    // whether compression is turned on
+    private final boolean compress;
+
+    // messages smaller than this many bytes (serialized) are sent raw since compressing them isn't worth the cpu
+    private final int threshold;
+
+    // byte counters for messages sent (encoded) and received (decoded)
+    // "before" is the serialized size, "after" is the size that actually went over the link
+    private final AtomicLong bytesSentBefore = new AtomicLong();
+    private final AtomicLong bytesSentAfter = new AtomicLong();
+    private final AtomicLong bytesReceivedBefore = new AtomicLong();
+    private final AtomicLong bytesReceivedAfter = new AtomicLong();
+    // number of messages that were compressed & that were sent raw
+    private final AtomicLong messagesCompressed = new AtomicLong();
+    private final AtomicLong messagesRaw = new AtomicLong();
+
+    // creates a codec. if compress is false every message is sent raw
+    public PayloadCodec(boolean compressValue, int thresholdValue){
+        // bounds check
+        if(thresholdValue < 0)
+            throw new IllegalArgumentException("compression threshold cannot be negative");
+
+        compress = compressValue;
+        threshold = thresholdValue;
+    }
+
+    // serializes the object, compresses it if it's over the threshold & records the sizes
+    public byte[] encode(Serializable payload){
+        return encode(payload, compress, threshold);
+    }
+
+    // like encode, but compressing messages over the threshold a peer asked for instead of this codec's own settings
+    // (so one codec can answer many peers, each with the settings it negotiated)
+    public byte[] encode(Serializable payload, int peerThreshold){
+        // bounds check
+        if(peerThreshold < 0)
+            throw new IllegalArgumentException("compression threshold cannot be negative");
+
+        return encode(payload, true, peerThreshold);
+    }
+
+    // serializes the object, compresses it if compressing & it's over minLength bytes & records the sizes
+    private byte[] encode(Serializable payload, boolean compressing, int minLength){
+        // serialize
+        byte[] raw = serialize(payload);
+
+        // decide whether to compress
+        byte[] message;
+        if(compressing && raw.length >= minLength){
+            message = deflate(raw);
+            messagesCompressed.incrementAndGet();
+        }else{
+            message = withFlag(RAW, raw);
+            messagesRaw.incrementAndGet();
+        }
+
+        // record sizes
+        bytesSentBefore.addAndGet(raw.length);
+        bytesSentAfter.addAndGet(message.length);
+
+        return message;
+    }
+
+    // decompresses (if needed) & deserializes a message made by encode, recording the sizes
+    public Object decode(byte[] message){
+        // check for null & empty messages
+        if(message == null || message.length == 0)
+            throw new ServerException("cannot decode an empty message");
+
+        // undo compression
+        byte[] raw;
+        switch(message[0]){
+            case RAW -> {
+                raw = new byte[message.length - 1];
+                System.arraycopy(message, 1, raw, 0, raw.length);
+            }
+            case DEFLATED -> raw = inflate(message);
+            default -> throw new ServerException("unknown message format: " + message[0]);
+        }
+
+        // record sizes
+        bytesReceivedBefore.addAndGet(raw.length);
+        bytesReceivedAfter.addAndGet(message.length);
+
+        // deserialize
+        return deserialize(raw);
+    }
+
+    // returns whether this codec compresses messages
+    public boolean isCompressing(){
+        return compress;
+    }
+
+    // returns the compression threshold in bytes
+    public int getThreshold(){
+        return threshold;
+    }
+
+    // captures all of the counters and puts them into a data class
+    public CompressionStats getSnapshot(){
+        return new CompressionStats(bytesSentBefore.get(), bytesSentAfter.get(), bytesReceivedBefore.get(), bytesReceivedAfter.get(),
+            messagesCompressed.get(), messagesRaw.get());
+    }
+
+    // serializes an object into bytes
+    private static byte[] serialize(Serializable payload){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(ObjectOutputStream out = new ObjectOutputStream(bytes)){
+            out.writeObject(payload);
+        }catch(IOException e){
+            throw new ServerException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // turns bytes back into an object
+    private static Object deserialize(byte[] raw){
+        try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(raw))){
+            return in.readObject();
+        }catch(IOException | ClassNotFoundException e){
+            throw new ServerException(e);
+        }
+    }
+
+    // compresses bytes. the message is the flag, the raw length (4 bytes) and then the deflated data
+    private static byte[] deflate(byte[] raw){
+        Deflater deflater = new Deflater();
+        deflater.setInput(raw);
+        deflater.finish();
+
+        // write the header then the compressed data
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+        out.write(DEFLATED);
+        out.write(raw.length >>> 24);
+        out.write(raw.length >>> 16);
+        out.write(raw.length >>> 8);
+        out.write(raw.length);
+        byte[] buffer = new byte[8192];
+        while(!deflater.finished()){
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+        }
+        deflater.end();
+
+        return out.toByteArray();
+    }
+
+    // decompresses a message made by deflate
+    private static byte[] inflate(byte[] message){
+        // read the raw length from the header
+        if(message.length < 5)
+            throw new ServerException("compressed message is missing its header");
+        int length = ((message[1] & 0xff) << 24) | ((message[2] & 0xff) << 16) | ((message[3] & 0xff) << 8) | (message[4] & 0xff);
+
+        // bounds check (the length comes from the peer)
+        if(length < 0 || length > MAX_RAW_LENGTH)
+            throw new ServerException("compressed message has a bad length: " + length);
+
+        // inflate into a buffer of exactly that length
+        Inflater inflater = new Inflater();
+        inflater.setInput(message, 5, message.length - 5);
+        byte[] raw = new byte[length];
+        try{
+            int n = 0;
+            while(n < length && !inflater.finished()){
+                int read = inflater.inflate(raw, n, length - n);
+                if(read == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                n += read;
+            }
+            if(n != length)
+                throw new ServerException("compressed message is truncated");
+        }catch(DataFormatException e){
+            throw new ServerException(e);
+        }finally{
+            inflater.end();
+        }
+
+        return raw;
+    }
+
+    // puts the flag byte in front of the data
+    private static byte[] withFlag(byte flag, byte[] data){
+        byte[] message = new byte[data.length + 1];
+        message[0] = flag;
+        System.arraycopy(data, 0, message, 1, data.length);
+        return message;
+    }
+}
@@ -2,8 +2,11 @@ package taskscheduler;
 
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 // keeps track of statistics about tasks & servers
@@ -17,6 +20,21 @@ public class PerformanceMonitor {
     // local time when taskScheduluer.executeAllTasks() was last run
     private LocalTime startTime;
 
+    // number of tasks placed on a server that were predicted to miss their deadline
+    private final AtomicLong predictedDeadlineMisses = new AtomicLong();
+
+    // total time tasks of each priority took from being submitted to completing, & how many completed
+    private final Map<TaskPriority, AtomicLong> latencyTotals = new EnumMap<>(TaskPriority.class);
+    private final Map<TaskPriority, AtomicLong> latencyCounts = new EnumMap<>(TaskPriority.class);
+
+    // constructor
+    public PerformanceMonitor(){
+        TaskPriority.getOrder().forEach(p -> {
+            latencyTotals.put(p, new AtomicLong());
+            latencyCounts.put(p, new AtomicLong());
+        });
+    }
+
     // adds a reference to serverStats, a helper class to keep track of specific server statistics
     public void loadStatsFor(List<Server> servers){
         // check for null value
@@ -85,6 +103,115 @@ public class PerformanceMonitor {
         return (float)numTasksCompleted / numTasksAttempted;
     }
 
+    // returns the total number of tasks servers turned away because their queues were full
+    public int getRejectedTaskCount(){
+        // technically checking for null, but want to notify user that loadStatsFor needs to be called to get up to date statistics
+        if(serverStats == null)
+            throw new NullPointerException("serverStats is null, make sure to call loadStatsFor(serverList) immediately before calling any other function to get up to date statistics");
+
+        // from all servers, sum number of rejected tasks
+        return serverStats.stream()
+            .map(ServerStats::getTasksRejected)
+            .reduce(0, (sum, newVal) -> sum + newVal);
+    }
+
+    // returns the share of completed tasks with a deadline that finished after it (0 if none had deadlines)
+    public double getDeadlineMissRate(){
+        // technically checking for null, but want to notify user that loadStatsFor needs to be called to get up to date statistics
+        if(serverStats == null)
+            throw new NullPointerException("serverStats is null, make sure to call loadStatsFor(serverList) immediately before calling any other function to get up to date statistics");
+
+        // from all servers, sum deadlines met & missed
+        int met = serverStats.stream().mapToInt(ServerStats::getDeadlinesMet).sum();
+        int missed = serverStats.stream().mapToInt(ServerStats::getDeadlinesMissed).sum();
+        return met + missed == 0 ? 0 : (double)missed / (met + missed);
+    }
+
+    // calculates the average time tasks of a priority waited in a server's queue before running (0 if none ran)
+    public Duration getAverageQueueWait(TaskPriority priority){
+        // technically checking for null, but want to notify user that loadStatsFor needs to be called to get up to date statistics
+        if(serverStats == null)
+            throw new NullPointerException("serverStats is null, make sure to call loadStatsFor(serverList) immediately before calling any other function to get up to date statistics");
+
+        // from all servers, sum the waits & the tasks that waited
+        long waited = serverStats.stream().mapToLong(s -> s.getQueueWaitTime(priority).toMillis()).sum();
+        int dispatched = serverStats.stream().mapToInt(s -> s.getTasksDispatched(priority)).sum();
+        return Duration.ofMillis(dispatched == 0 ? 0 : waited / dispatched);
+    }
+
+    // returns the total number of tasks stopped partway to make room for a more urgent task (see TaskScheduler.setPreemption)
+    public int getPreemptedTaskCount(){
+        // technically checking for null, but want to notify user that loadStatsFor needs to be called to get up to date statistics
+        if(serverStats == null)
+            throw new NullPointerException("serverStats is null, make sure to call loadStatsFor(serverList) immediately before calling any other function to get up to date statistics");
+
+        // from all servers, sum number of preempted tasks
+        return serverStats.stream().mapToInt(ServerStats::getTasksPreempted).sum();
+    }
+
+    // records how long a completed task took from being submitted to completing
+    public void recordLatency(TaskPriority priority, Duration latency){
+        latencyTotals.get(priority).addAndGet(latency.toMillis());
+        latencyCounts.get(priority).incrementAndGet();
+    }
+
+    // calculates the average time tasks of a priority took from being submitted to completing (0 if none completed)
+    public Duration getAverageLatency(TaskPriority priority){
+        long count = latencyCounts.get(priority).get();
+        return Duration.ofMillis(count == 0 ? 0 : latencyTotals.get(priority).get() / count);
+    }
+
+    // calculates the share of the batch budget (see Server.setCapacity) that queued tasks set aside on the servers they were packed
+    // onto, in each server's most used resource, averaged over every batch that ran against a capacity (0 if no server has one)
+    // higher means batches were packed more tightly. it measures what was queued for each batch, not what ran at once
+    public double getBatchPackingEfficiency(){
+        // technically checking for null, but want to notify user that loadStatsFor needs to be called to get up to date statistics
+        if(serverStats == null)
+            throw new NullPointerException("serverStats is null, make sure to call loadStatsFor(serverList) immediately before calling any other function to get up to date statistics");
+
+        // weight each server's efficiency by the batches it ran
+        double shares = serverStats.stream().mapToDouble(s -> s.getBatchPackingEfficiency() * s.getPackedBatches()).sum();
+        int batches = serverStats.stream().mapToInt(ServerStats::getPackedBatches).sum();
+        return batches == 0 ? 0 : shares / batches;
+    }
+
+    // calculates the average time a tenant's tasks waited in a server's queue before running (0 if none ran)
+    public Duration getAverageQueueWait(String tenant){
+        // technically checking for null, but want to notify user that loadStatsFor needs to be called to get up to date statistics
+        if(serverStats == null)
+            throw new NullPointerException("serverStats is null, make sure to call loadStatsFor(serverList) immediately before calling any other function to get up to date statistics");
+
+        // from all servers, sum the waits & the tasks that waited
+        long waited = serverStats.stream().mapToLong(s -> s.getQueueWaitTime(tenant).toMillis()).sum();
+        int dispatched = serverStats.stream().mapToInt(s -> s.getTasksDispatched(tenant)).sum();
+        return Duration.ofMillis(dispatched == 0 ? 0 : waited / dispatched);
+    }
+
+    // returns the number of a tenant's tasks that completed
+    public int getTasksCompleted(String tenant){
+        // technically checking for null, but want to notify user that loadStatsFor needs to be called to get up to date statistics
+        if(serverStats == null)
+            throw new NullPointerException("serverStats is null, make sure to call loadStatsFor(serverList) immediately before calling any other function to get up to date statistics");
+
+        // from all servers, sum the tenant's completed tasks
+        return serverStats.stream().mapToInt(s -> s.getTasksCompleted(tenant)).sum();
+    }
+
+    // calculates a tenant's throughput in completed tasks per second since the last startTracking()
+    public double getTenantThroughput(String tenant){
+        return getTasksCompleted(tenant) * 1000.0 / Math.max(1, getTimePassed());
+    }
+
+    // records that a task was placed on a server where it's predicted to miss its deadline
+    public void recordPredictedDeadlineMiss(){
+        predictedDeadlineMisses.incrementAndGet();
+    }
+
+    // returns the number of tasks that were predicted to miss their deadline when they were placed
+    public long getPredictedDeadlineMisses(){
+        return predictedDeadlineMisses.get();
+    }
+
     // calculates and returns serverUtilization by dividing the amount of time each server has spent executing tasks by the amount of time spent on executeAllTasks
     public List<Double> getServerUtilization(){
         // technically checking for null, but want to notify user that loadStatsFor needs to be called to get up to date statistics
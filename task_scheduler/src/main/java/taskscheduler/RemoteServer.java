@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -19,7 +20,11 @@ public class RemoteServer extends Server {
     private static final Logger LOGGER = Logger.getLogger(Server.class.getName());
 
     // port (default is 1900)
-    private static final String port = "1900";
+    private static final int DEFAULT_PORT = 1900;
+
+    // host & port of the rmi registry the remote object is bound to
+    private final String host;
+    private final int port;
 
     // remote object name
     private final String id;
@@ -27,6 +32,18 @@ public class RemoteServer extends Server {
     // reference to the RemoteObject
     NetworkServerInterface stub;
 
+    // encodes task batches & decodes result batches once compression is negotiated (null means plain rmi calls)
+    private volatile PayloadCodec codec = null;
+
+    // with compression on, tasks are held here & sent in one message when the batch starts (or once MAX_OUTGOING are waiting)
+    private final List<Task> outgoing = new ArrayList<>();
+    private static final int MAX_OUTGOING = 256;
+
+    // the tasks handed over since the remote node's last batch started & the ones handed over for that batch (its queue can't be
+    // read from here, so these are what getUnfinishedTasks gives back). guarded by outgoing
+    private List<Task> sent = new ArrayList<>();
+    private List<Task> lastBatch = new ArrayList<>();
+
     // server status. When true, server is responsive, when false, server is unresponsive
     private boolean status = false;
 
@@ -43,13 +60,22 @@ public class RemoteServer extends Server {
 
     // when you create a new RemoteServer, you need to pass the id of a remote object that should already be bound to the rmi registry
     RemoteServer(String objectName){
+        // use the registry on this machine with the default port
+        this("localhost", DEFAULT_PORT, objectName);
+    }
+
+    // creates a RemoteServer for a remote object bound to the rmi registry at host:registryPort
+    public RemoteServer(String registryHost, int registryPort, String objectName){
         // call parent constructor
         super();
 
         // check for null
+        Objects.requireNonNull(registryHost);
         Objects.requireNonNull(objectName);
 
-        // set object name
+        // set registry location & object name
+        host = registryHost;
+        port = registryPort;
         id = objectName;
 
         // attempt to bind stub to a remote objecton the rmi registry
@@ -73,7 +99,7 @@ public class RemoteServer extends Server {
         try{
             // search for the remote object on the rmi registry
             // use instanceof to check cast type
-            stub = (NetworkServerInterface)Naming.lookup("rmi://localhost:" + port + "/" + id);
+            stub = (NetworkServerInterface)Naming.lookup("rmi://" + host + ":" + port + "/" + id);
 
             // change status to indicate that server is reachable
             status = true;
@@ -101,20 +127,120 @@ public class RemoteServer extends Server {
         // check for null values
         Objects.requireNonNull(task);
 
+        // the remote node's queue can't be seen from here, so the batch budget (see setCapacity) is kept on this side for the tasks sent
+        reserve(task);
+
+        // with compression on, hold the task so the batch goes out in one (compressed) message
+        if(codec != null){
+            try{
+                if(!status)
+                    throw new ServerException("remote server unresponsive, failed to schedule task");
+                synchronized(outgoing){
+                    outgoing.add(task);
+                    sent.add(task);
+                    if(outgoing.size() >= MAX_OUTGOING)
+                        sendOutgoing();
+                }
+            }catch(ServerException e){
+                // the scheduler places this one somewhere else (if the remote was full, the tasks held before it stay held)
+                synchronized(outgoing){
+                    outgoing.remove(task);
+                    sent.remove(task);
+                }
+                release(task);
+                throw e;
+            }
+            return;
+        }
+
         try{
             // send serialized task to remote server
             stub.addTask(task);
+            synchronized(outgoing){
+                sent.add(task);
+            }
         }catch(RemoteException e){
-            // increment numFails
+            // increment numFails & mark offline until the stub can be bound again
             numFails++;
+            status = false;
+            release(task);
 
             // throw an error so the scheduler knows the task could not get scheduled
             throw new ServerException("remote server unresponsive, failed to schedule task");
         }
     }
 
+    // adds a batch of tasks to the server in one message (compressed if negotiated)
+    @Override
+    public void addTasks(List<Task> tasks){
+        // check for circuit breaker threshold exceeded, don't even try to schedule
+        if(isCircuitBroken())
+            throw new ServerException("remote server unresponsive, failed to schedule tasks");
+
+        // check for null values
+        Objects.requireNonNull(tasks);
+
+        // without compression, fall back to one call per task
+        if(codec == null){
+            tasks.forEach(this::addTask);
+            return;
+        }
+
+        // set aside the batch budget for all of them (or none)
+        List<Task> reserved = new ArrayList<>();
+        try{
+            for(Task task : tasks){
+                reserve(task);
+                reserved.add(task);
+            }
+        }catch(ServerException e){
+            reserved.forEach(this::release);
+            throw e;
+        }
+
+        // send them with anything already held, as one encoded message
+        synchronized(outgoing){
+            outgoing.addAll(tasks);
+            sent.addAll(tasks);
+            try{
+                sendOutgoing();
+            }catch(ServerException e){
+                // the caller places these somewhere else (if the remote was full, it took none of the message & the tasks
+                // held before these stay held for the next send)
+                outgoing.removeAll(tasks);
+                sent.removeAll(tasks);
+                reserved.forEach(this::release);
+                throw e;
+            }
+        }
+    }
+
+    // sends the held tasks to the remote server as one encoded message
+    // the remote takes the whole message or none of it, so if it's full (ServerFullException) the tasks stay held
+    private void sendOutgoing(){
+        synchronized(outgoing){
+            if(outgoing.isEmpty())
+                return;
+            ArrayList<Task> batch = new ArrayList<>(outgoing);
+            try{
+                stub.addTasks(codec.encode(batch));
+                outgoing.clear();
+            }catch(RemoteException e){
+                // increment numFails & mark offline until the stub can be bound again
+                numFails++;
+                status = false;
+                outgoing.clear();
+
+                // throw an error so the scheduler knows the tasks could not get scheduled (held tasks it already placed are
+                // reported as lost & re-placed)
+                throw new ServerException("remote server unresponsive, failed to schedule tasks");
+            }
+        }
+    }
+
     // executes all the tasks queued in the server
     @Override
+    @SuppressWarnings("unchecked")
     public List<Task> executeTasks() {
         // check for circuit breaker threshold exceeded, don't even try to schedule
         if(isCircuitBroken()){
@@ -125,20 +251,54 @@ public class RemoteServer extends Server {
             return new ArrayList<>();
         }
 
+        // the tasks sent so far go to run, so their budget is free for the next batch
+        releaseAll();
+        synchronized(outgoing){
+            lastBatch = sent;
+            sent = new ArrayList<>();
+        }
+
         try{
-            // tell stub to execute all tasks
-            return stub.executeTasks();
+            // tell stub to execute all tasks (sending the held ones first)
+            if(codec == null)
+                return stub.executeTasks();
+            try{
+                sendOutgoing();
+            }catch(ServerFullException e){
+                // the held tasks never got there (the scheduler re-places them as lost), but the ones sent before still run
+                LOGGER.severe("remote server full. held tasks could not be sent");
+                synchronized(outgoing){
+                    outgoing.clear();
+                }
+            }catch(ServerException e){
+                // the held tasks never got there (the scheduler re-places them as lost)
+                LOGGER.severe("server unreachable. held tasks could not be sent");
+                return new ArrayList<>();
+            }
+            return (List<Task>)codec.decode(stub.executeTasksEncoded(codec.getThreshold()));
         }catch(RemoteException e){
-            // increment numFails
+            // increment numFails & mark offline until the stub can be bound again
             numFails++;
+            status = false;
 
             // return blank list (no tasks executed successfully)
             return new ArrayList<>();
         }
     }
 
+    // returns the tasks handed to the remote node since the start of the last batch (the ones that ran are filtered out by the caller)
+    @Override
+    public List<Task> getUnfinishedTasks(){
+        synchronized(outgoing){
+            List<Task> unfinished = new ArrayList<>(lastBatch);
+            unfinished.addAll(sent);
+            return unfinished;
+        }
+    }
+
     // returns a list of all the failed tasks
     @Override
+    @SuppressWarnings("unchecked")
     public List<Task> getFailedTasks() {
         // check for circuit breaker threshold exceeded, don't even try to schedule
         if(isCircuitBroken()){
@@ -151,7 +311,9 @@ public class RemoteServer extends Server {
 
         try{
             // ask stub for failedTasks list
-            return stub.getFailedTasks();
+            if(codec == null)
+                return stub.getFailedTasks();
+            return (List<Task>)codec.decode(stub.getFailedTasksEncoded(codec.getThreshold()));
         }catch(RemoteException e){
             // increment numFails
             numFails++;
@@ -185,6 +347,67 @@ public class RemoteServer extends Server {
         }
     }
 
+    // asks the remote server to use compressed batches for messages over threshold bytes
+    // returns true if the server agreed. if it didn't (or couldn't be reached), plain rmi calls keep being used
+    public boolean enableCompression(int threshold){
+        try{
+            // both sides have to agree before the encoded methods are used
+            if(!stub.negotiateCompression(threshold))
+                return false;
+        }catch(RemoteException e){
+            LOGGER.log(Level.WARNING, "compression negotiation with {0} failed", id);
+            return false;
+        }
+
+        // switch to encoded batches
+        codec = new PayloadCodec(true, threshold);
+        return true;
+    }
+
+    // returns the bytes sent & received before and after compression for this link (all zero if compression is off)
+    public CompressionStats getCompressionStats(){
+        PayloadCodec c = codec;
+        if(c == null)
+            return new CompressionStats(0, 0, 0, 0, 0, 0);
+        return c.getSnapshot();
+    }
+
+    // backups can't be started on a remote server outside its queue
+    @Override
+    public boolean canHedge(){
+        return false;
+    }
+
+    // backups can't be started on a remote server outside its queue
+    @Override
+    public Future<Void> executeHedge(Task copy){
+        throw new ServerException("remote servers cannot run backup copies");
+    }
+
+    // the remote node queues tasks by their own priority
+    @Override
+    public void addTask(Task task, TaskPriority priority){
+        addTask(task);
+    }
+
+    // tasks queued on a remote server can't be moved up
+    @Override
+    public boolean boost(Task task, TaskPriority priority){
+        return false;
+    }
+
+    // the remote node runs its own batches, a running task there can't be stopped from here
+    @Override
+    public boolean preemptFor(Task task){
+        return false;
+    }
+
+    // tasks queued on a remote server can't be reached to cancel them (the scheduler drops their results instead)
+    @Override
+    public boolean cancel(String taskId){
+        return false;
+    }
+
     // returns whether the server is reachable or not
     @Override
     public boolean isOnline(){
@@ -197,8 +420,20 @@ public class RemoteServer extends Server {
         numFails = 0;
 
         // if server is offline, attempt to reconnect the stub (do nothing with the Exception because we're expecting to still fail)
+        // IllegalArgumentException is thrown when the name was unbound, which would otherwise stop the periodic reset for good
         if(!status)
-            try{bindStub();}catch(RemoteException e){}
+            try{bindStub();}catch(RemoteException | IllegalArgumentException e){}
+    }
+
+    // returns the name the remote object is bound under
+    public String getName(){
+        return id;
+    }
+
+    // stops the periodic reset & reconnect thread. call when the server is no longer used
+    public void close(){
+        resetter.cancel(false);
+        scheduler.shutdown();
     }
 
     // returns true if numFails exceeds circuitBreakerThreshold, meaning that circuit is currently broken
@@ -0,0 +1,68 @@
+package taskscheduler;
+
+import java.io.Serializable;
+
+// data class for an amount of cpu & memory, either what a task needs or what a server has (see Server.setCapacity)
+public class Resources implements Serializable {
+
+    // no resources (what a task that doesn't declare any needs)
+    public static final Resources NONE = new Resources(0, 0);
+
+    // data variables
+    private final double cpus;
+    private final long memoryMb;
+
+    public Resources(double cpus, long memoryMb){
+        // bounds check
+        if(cpus < 0 || memoryMb < 0)
+            throw new IllegalArgumentException("resources cannot be negative");
+
+        this.cpus = cpus;
+        this.memoryMb = memoryMb;
+    }
+
+    // getter method for cpus
+    public double getCpus(){
+        return cpus;
+    }
+
+    // getter method for memory (in MB)
+    public long getMemoryMb(){
+        return memoryMb;
+    }
+
+    // true if this is no resources at all
+    public boolean isNone(){
+        return cpus == 0 && memoryMb == 0;
+    }
+
+    // true if this fits within other in every resource
+    public boolean fitsIn(Resources other){
+        return cpus <= other.cpus && memoryMb <= other.memoryMb;
+    }
+
+    // returns this plus other
+    public Resources plus(Resources other){
+        return new Resources(cpus + other.cpus, memoryMb + other.memoryMb);
+    }
+
+    // returns this minus other (never below 0)
+    public Resources minus(Resources other){
+        return new Resources(Math.max(0, cpus - other.cpus), Math.max(0, memoryMb - other.memoryMb));
+    }
+
+    // returns the share of capacity this takes up in its most used resource (resources capacity has none of count as 0)
+    public double dominantShareOf(Resources capacity){
+        return Math.max(shareOf(cpus, capacity.cpus), shareOf(memoryMb, capacity.memoryMb));
+    }
+
+    // share of a capacity an amount takes up
+    static double shareOf(double amount, double capacity){
+        return capacity == 0 ? 0 : amount / capacity;
+    }
+
+    @Override
+    public String toString(){
+        return cpus + " cpus, " + memoryMb + "MB";
+    }
+}
@@ -0,0 +1,333 @@
+package taskscheduler;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.*;
+
+// memoizes completed tasks by their cache key (see Task.getCacheKey) so a task with the same key doesn't have to run again
+// completed tasks are kept serialized, least recently used first out once the cache is over its byte limit
+// entries can expire after a time to live, and evicted entries can go to an optional on-disk tier (which is read back after a restart)
+// one cache can be shared by every server (TaskScheduler.setResultCache)
+public class ResultCache {
+    // logger
+    private static final Logger LOGGER = Logger.getLogger(ResultCache.class.getName());
+
+    // extension of the files in the disk tier
+    private static final String FILE_EXTENSION = ".cache";
+
+    // serializes the cached tasks (compressing big ones)
+    private final PayloadCodec codec = new PayloadCodec(true, 4096);
+
+    // most bytes kept in memory
+    private final long maxBytes;
+
+    // how long an entry is good for (ms, 0 means forever)
+    private final long ttlMillis;
+
+    // in memory entries by key, least recently used first
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes = 0;
+
+    // directory of the disk tier (null means no disk tier) & most bytes kept there
+    private final Path directory;
+    private final long maxDiskBytes;
+
+    // disk entries by key, least recently used first
+    private final LinkedHashMap<String, Entry> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes = 0;
+
+    // metrics
+    private long hits = 0;
+    private long diskHits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long expirations = 0;
+
+    // creates an in memory cache holding up to maxBytes of serialized tasks, each good for ttl (null means forever)
+    public ResultCache(long maxBytesValue, Duration ttl){
+        this(maxBytesValue, ttl, null, 0);
+    }
+
+    // creates a cache that moves entries evicted from memory into directory, holding up to maxDiskBytes there
+    // entries already in directory (from an earlier run) are loaded
+    public ResultCache(long maxBytesValue, Duration ttl, Path directoryValue, long maxDiskBytesValue){
+        // bounds check
+        if(maxBytesValue < 0 || maxDiskBytesValue < 0)
+            throw new IllegalArgumentException("cache size cannot be negative");
+        if(ttl != null && ttl.toMillis() < 0)
+            throw new IllegalArgumentException("time to live cannot be negative");
+
+        maxBytes = maxBytesValue;
+        ttlMillis = ttl == null ? 0 : ttl.toMillis();
+        directory = directoryValue;
+        maxDiskBytes = maxDiskBytesValue;
+
+        // load the disk tier
+        if(directory != null)
+            loadDisk();
+    }
+
+    // returns a completed copy of a task with the same cache key & id, or null if there isn't one (or the task has no key)
+    // a result stored under the key by a task with another id is a miss, since it would be reported under that id
+    public synchronized Task get(Task task){
+        // tasks without a key aren't cached
+        String key = task.getCacheKey();
+        if(key == null)
+            return null;
+
+        // memory tier
+        long now = System.currentTimeMillis();
+        Entry entry = memory.get(key);
+        if(entry != null && entry.expired(now)){
+            removeMemory(key);
+            expirations++;
+            entry = null;
+        }
+        if(entry != null){
+            Task cached = decode(entry.data);
+            if(cached != null){
+                // a result stored by another task id doesn't count (the scheduler tracks tasks by id)
+                if(!cached.getId().equals(task.getId())){
+                    misses++;
+                    return null;
+                }
+                hits++;
+                return cached;
+            }
+            removeMemory(key);
+        }
+
+        // disk tier (a hit moves the entry back into memory)
+        entry = disk.get(key);
+        if(entry != null && entry.expired(now)){
+            removeDisk(key);
+            expirations++;
+            entry = null;
+        }
+        if(entry != null){
+            byte[] data = readFile(key);
+            removeDisk(key);
+            Task cached = data == null ? null : decode(data);
+            if(cached != null){
+                putMemory(key, new Entry(data, entry.expiresAt));
+                if(!cached.getId().equals(task.getId())){
+                    misses++;
+                    return null;
+                }
+                diskHits++;
+                return cached;
+            }
+        }
+
+        misses++;
+        return null;
+    }
+
+    // stores a completed task under its cache key (tasks without a key, or too big for the cache, aren't stored)
+    public synchronized void put(Task task){
+        // check for null
+        Objects.requireNonNull(task);
+
+        String key = task.getCacheKey();
+        if(key == null || !task.isCompleted())
+            return;
+
+        // serialize
+        byte[] data;
+        try{
+            data = codec.encode(task);
+        }catch(ServerException e){
+            LOGGER.log(Level.WARNING, "task could not be cached. id: {0}", task.getId());
+            return;
+        }
+
+        // replace any older entry
+        removeMemory(key);
+        if(disk.containsKey(key))
+            removeDisk(key);
+        putMemory(key, new Entry(data, ttlMillis == 0 ? Long.MAX_VALUE : System.currentTimeMillis() + ttlMillis));
+    }
+
+    // returns the cache's metrics
+    public synchronized CacheStats getStats(){
+        return new CacheStats(hits, diskHits, misses, evictions, expirations, memory.size() + disk.size(), memoryBytes, diskBytes);
+    }
+
+    // adds an entry to memory, moving least recently used entries to disk (or dropping them) to stay under the limit
+    private void putMemory(String key, Entry entry){
+        // too big to ever fit
+        if(entry.size > maxBytes){
+            demote(key, entry);
+            return;
+        }
+
+        memory.put(key, entry);
+        memoryBytes += entry.size;
+
+        // evict until it fits
+        Iterator<Map.Entry<String, Entry>> oldest = memory.entrySet().iterator();
+        while(memoryBytes > maxBytes){
+            Map.Entry<String, Entry> evicted = oldest.next();
+            oldest.remove();
+            memoryBytes -= evicted.getValue().size;
+            demote(evicted.getKey(), evicted.getValue());
+        }
+    }
+
+    // moves an entry out of memory into the disk tier (counts as an eviction if there's no disk tier or it doesn't fit)
+    private void demote(String key, Entry entry){
+        if(directory == null || entry.size > maxDiskBytes || !writeFile(key, entry)){
+            evictions++;
+            return;
+        }
+
+        disk.put(key, new Entry(entry.size, entry.expiresAt));
+        diskBytes += entry.size;
+
+        // evict until it fits
+        Iterator<Map.Entry<String, Entry>> oldest = disk.entrySet().iterator();
+        while(diskBytes > maxDiskBytes){
+            Map.Entry<String, Entry> evicted = oldest.next();
+            oldest.remove();
+            deleteFile(evicted.getKey());
+            diskBytes -= evicted.getValue().size;
+            evictions++;
+        }
+    }
+
+    // removes an entry from memory
+    private void removeMemory(String key){
+        Entry removed = memory.remove(key);
+        if(removed != null)
+            memoryBytes -= removed.size;
+    }
+
+    // removes an entry from disk
+    private void removeDisk(String key){
+        Entry removed = disk.remove(key);
+        if(removed != null){
+            diskBytes -= removed.size;
+            deleteFile(key);
+        }
+    }
+
+    // decodes a cached task (null if it can't be read, e.g. the class changed)
+    private Task decode(byte[] data){
+        try{
+            return (Task)codec.decode(data);
+        }catch(ServerException | ClassCastException e){
+            LOGGER.log(Level.WARNING, "cached task could not be read: {0}", e.getMessage());
+            return null;
+        }
+    }
+
+    // reads the index of the disk tier from its files, deleting expired ones
+    private void loadDisk(){
+        try{
+            Files.createDirectories(directory);
+            long now = System.currentTimeMillis();
+            try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_EXTENSION)){
+                for(Path file : files){
+                    try(DataInputStream in = new DataInputStream(Files.newInputStream(file))){
+                        long expiresAt = in.readLong();
+                        String key = in.readUTF();
+                        int size = in.readInt();
+                        if(expiresAt <= now){
+                            Files.delete(file);
+                            continue;
+                        }
+                        disk.put(key, new Entry(size, expiresAt));
+                        diskBytes += size;
+                    }catch(IOException e){
+                        LOGGER.log(Level.WARNING, "skipping unreadable cache file: {0}", file);
+                    }
+                }
+            }
+        }catch(IOException e){
+            throw new SchedulerException(e);
+        }
+    }
+
+    // writes an entry's file (false if it couldn't be written)
+    private boolean writeFile(String key, Entry entry){
+        try(DataOutputStream out = new DataOutputStream(Files.newOutputStream(fileFor(key)))){
+            out.writeLong(entry.expiresAt);
+            out.writeUTF(key);
+            out.writeInt((int)entry.size);
+            out.write(entry.data);
+            return true;
+        }catch(IOException e){
+            LOGGER.log(Level.WARNING, "could not write cache file: {0}", e.getMessage());
+            return false;
+        }
+    }
+
+    // reads the cached bytes from an entry's file (null if the file is gone or isn't for this key)
+    private byte[] readFile(String key){
+        try(DataInputStream in = new DataInputStream(Files.newInputStream(fileFor(key)))){
+            in.readLong();
+            if(!in.readUTF().equals(key))
+                return null;
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            return data;
+        }catch(IOException e){
+            LOGGER.log(Level.WARNING, "could not read cache file: {0}", e.getMessage());
+            return null;
+        }
+    }
+
+    // deletes an entry's file
+    private void deleteFile(String key){
+        try{
+            Files.deleteIfExists(fileFor(key));
+        }catch(IOException e){
+            LOGGER.log(Level.WARNING, "could not delete cache file: {0}", e.getMessage());
+        }
+    }
+
+    // the file an entry is kept in (named by a hash of the key so any key makes a valid file name)
+    private Path fileFor(String key){
+        try{
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return directory.resolve(HexFormat.of().formatHex(hash) + FILE_EXTENSION);
+        }catch(NoSuchAlgorithmException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // a cached task (data is null for disk entries, which only keep the size)
+    private static class Entry {
+        final byte[] data;
+        final long size;
+        final long expiresAt;
+
+        Entry(byte[] dataValue, long expiresAtValue){
+            data = dataValue;
+            size = dataValue.length;
+            expiresAt = expiresAtValue;
+        }
+
+        Entry(long sizeValue, long expiresAtValue){
+            data = null;
+            size = sizeValue;
+            expiresAt = expiresAtValue;
+        }
+
+        boolean expired(long now){
+            return expiresAt <= now;
+        }
+    }
+}
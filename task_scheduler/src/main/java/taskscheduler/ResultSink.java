@@ -0,0 +1,12 @@
+package taskscheduler;
+
+// receives results from executeAll as they happen, so the scheduler doesn't have to keep finished tasks in memory
+// called on the thread running executeAll, between batches
+public interface ResultSink {
+    // called once for each task a server completed
+    public void completed(Server server, Task task);
+
+    // called once for each task the scheduler gave up on, with the reason it was abandoned (ignored by default)
+    public default void abandoned(Task task, String reason){
+    }
+}
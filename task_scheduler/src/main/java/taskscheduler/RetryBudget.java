@@ -0,0 +1,133 @@
+package taskscheduler;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+// limits retries to a share of recent dispatches so a burst of failures can't turn into a retry storm
+// e.g. a ratio of 0.1 over a 10 second window means retries can be at most 10% of the tasks dispatched in the last 10 seconds
+public class RetryBudget {
+    // number of buckets the window is split into (the window slides one bucket at a time)
+    private static final int BUCKETS = 10;
+
+    // what happens to a retry when the budget is used up
+    public enum Overflow {
+        // the task is abandoned
+        DROP,
+        // the retry is pushed back until the budget has room
+        DEFER
+    }
+
+    // retries allowed per dispatch
+    private final double ratio;
+
+    // retries always allowed per window, so a quiet scheduler can still retry
+    private final int minRetries;
+
+    // length of one bucket in milliseconds
+    private final long bucketMillis;
+
+    // what to do with retries over the budget
+    private final Overflow overflow;
+
+    // dispatch & retry counts for each bucket, and the bucket number each slot currently holds
+    private final long[] dispatches = new long[BUCKETS];
+    private final long[] retries = new long[BUCKETS];
+    private final long[] bucketIds = new long[BUCKETS];
+
+    // metrics
+    private final AtomicLong retriesAllowed = new AtomicLong();
+    private final AtomicLong retriesDenied = new AtomicLong();
+
+    // creates a retry budget
+    public RetryBudget(double ratioValue, int minRetriesValue, Duration window, Overflow overflowValue){
+        // check for null
+        Objects.requireNonNull(window);
+        Objects.requireNonNull(overflowValue);
+
+        // bounds check (at least one retry per window so deferred retries always get through eventually)
+        if(ratioValue < 0)
+            throw new IllegalArgumentException("retry ratio cannot be negative");
+        if(minRetriesValue < 1)
+            throw new IllegalArgumentException("at least one retry per window must be allowed");
+        if(window.toMillis() < BUCKETS)
+            throw new IllegalArgumentException("window must be at least " + BUCKETS + "ms");
+
+        ratio = ratioValue;
+        minRetries = minRetriesValue;
+        bucketMillis = window.toMillis() / BUCKETS;
+        overflow = overflowValue;
+    }
+
+    // records that a task was sent to a server (first attempts and retries both count)
+    public synchronized void recordDispatch(){
+        dispatches[currentSlot()]++;
+    }
+
+    // returns true (and uses up budget) if a retry can be sent now
+    public synchronized boolean tryAcquireRetry(){
+        int slot = currentSlot();
+
+        // add up the window
+        long windowDispatches = 0;
+        long windowRetries = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            windowDispatches += dispatches[i];
+            windowRetries += retries[i];
+        }
+
+        // check the budget
+        if(windowRetries + 1 > Math.max(minRetries, ratio * windowDispatches)){
+            retriesDenied.incrementAndGet();
+            return false;
+        }
+
+        // use the budget
+        retries[slot]++;
+        retriesAllowed.incrementAndGet();
+        return true;
+    }
+
+    // returns what happens to retries over the budget
+    public Overflow getOverflow(){
+        return overflow;
+    }
+
+    // how long a deferred retry waits before trying the budget again (one bucket, when the oldest counts fall out of the window)
+    public Duration getDeferDelay(){
+        return Duration.ofMillis(bucketMillis);
+    }
+
+    // getter method for the number of retries the budget let through
+    public long getRetriesAllowed(){
+        return retriesAllowed.get();
+    }
+
+    // getter method for the number of retries the budget turned away (dropped or deferred)
+    public long getRetriesDenied(){
+        return retriesDenied.get();
+    }
+
+    // returns the slot for the current bucket, clearing any slots whose bucket fell out of the window
+    private int currentSlot(){
+        long bucket = System.currentTimeMillis() / bucketMillis;
+        int slot = (int)(bucket % BUCKETS);
+
+        // the slot holds an old bucket, reset it
+        if(bucketIds[slot] != bucket){
+            bucketIds[slot] = bucket;
+            dispatches[slot] = 0;
+            retries[slot] = 0;
+        }
+
+        // clear other slots that are too old (happens when no calls were made for a while)
+        for(int i = 0; i < BUCKETS; i++){
+            if(bucket - bucketIds[i] >= BUCKETS){
+                bucketIds[i] = bucket - BUCKETS;
+                dispatches[i] = 0;
+                retries[i] = 0;
+            }
+        }
+
+        return slot;
+    }
+}
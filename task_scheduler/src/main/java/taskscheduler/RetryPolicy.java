@@ -1,5 +1,8 @@
 package taskscheduler;
 
+import java.util.Objects;
+import java.util.Random;
+
 public class RetryPolicy {
 
     // integer noting how many times a task can be retried before giving up
@@ -62,34 +65,90 @@ public class RetryPolicy {
         }
     }
 
+    // how much randomness is added to a delay so tasks that failed together don't all retry at the same moment
+    public enum Jitter {
+        // no randomness, every task gets the same delay
+        NONE,
+        // delay is random between 0 and the normal delay
+        FULL,
+        // delay is random between the initial delay and 3x the previous attempt's range (capped), so delays spread out but don't collapse to 0
+        DECORRELATED
+    }
+
     // given a starting value, the exponential timeout function doubles the delay with each incremental attempt
     public static class ExponentialTimeout implements TimeFunction {
 
         // starting delay time
         Duration initialDelay;
 
+        // the delay never goes above this
+        private final Duration maxDelay;
+
+        // randomness added to each delay
+        private final Jitter jitter;
+
+        // source of randomness for jitter
+        private final Random random;
+
         // constructor
         public ExponentialTimeout(Duration initialDelayValue){
+            // no cap & no jitter
+            this(initialDelayValue, Duration.ofMillis(Long.MAX_VALUE), Jitter.NONE);
+        }
+
+        // constructor with a cap on the delay and a jitter mode
+        public ExponentialTimeout(Duration initialDelayValue, Duration maxDelayValue, Jitter jitterValue){
+            this(initialDelayValue, maxDelayValue, jitterValue, new Random());
+        }
+
+        // constructor with a cap, jitter mode and random number generator (give a seeded Random for repeatable delays)
+        public ExponentialTimeout(Duration initialDelayValue, Duration maxDelayValue, Jitter jitterValue, Random randomValue){
             // check for null
             if(initialDelayValue == null)
                 throw new NullPointerException("initial delay cannot be null");
+            Objects.requireNonNull(maxDelayValue);
+            Objects.requireNonNull(jitterValue);
+            Objects.requireNonNull(randomValue);
+
+            // bounds check
+            if(maxDelayValue.compareTo(initialDelayValue) < 0)
+                throw new IllegalArgumentException("max delay cannot be less than the initial delay");
             
-            // initialize value
+            // initialize values
             initialDelay = initialDelayValue;
+            maxDelay = maxDelayValue;
+            jitter = jitterValue;
+            random = randomValue;
         }
         
         // timeout function doubles the delay value with each new attempt
         @Override
         public Duration getTimeoutFor(int attemptNum){
             // convert time to long so we can do math
-            long duration = initialDelay.toMillis();
-
-            // use bit shifting
-            // calculates the delay using power function
-            duration = duration * (long)Math.pow(2, attemptNum-1);
+            long initial = initialDelay.toMillis();
+            long cap = maxDelay.toMillis();
+
+            // calculates the delay using power function (capped, doing the math in doubles so big attempt numbers don't overflow)
+            long duration = (long)Math.min(cap, initial * Math.pow(2, attemptNum-1));
+
+            // add jitter
+            switch(jitter){
+                case FULL -> duration = randomBetween(0, duration);
+                case DECORRELATED -> duration = randomBetween(initial, (long)Math.min(cap, initial * Math.pow(3, attemptNum-1)));
+                case NONE -> {}
+            }
             
             // convert back to a Duration and return value
             return Duration.ofMillis(duration);
         }
+
+        // returns a random number between low and high (inclusive)
+        private long randomBetween(long low, long high){
+            if(high <= low)
+                return low;
+            synchronized(random){
+                return low + (long)(random.nextDouble() * (high - low + 1));
+            }
+        }
     }
 }
\ No newline at end of file
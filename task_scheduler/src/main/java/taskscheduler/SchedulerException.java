@@ -8,4 +8,9 @@ public class SchedulerException extends RuntimeException{
         // call super
         super(s);
     }
+
+    // constructor for other error
+    public SchedulerException(Exception e){
+        super(e);
+    }
 }
\ No newline at end of file
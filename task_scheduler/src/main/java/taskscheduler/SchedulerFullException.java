@@ -1,7 +1,7 @@
 package taskscheduler;
 
-// exception class for when the scheduler has no servers available
-class SchedulerFullException extends SchedulerException{
+// exception class for when the scheduler has no servers available (every server's queue is full)
+public class SchedulerFullException extends SchedulerException{
 
     // constructor
     public SchedulerFullException(String s){
@@ -0,0 +1,213 @@
+package taskscheduler;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+// a point in time copy of a TaskScheduler's pending work, written to a compact binary file so a restart doesn't have to replay the whole journal
+// the scheduler serializes a snapshot to bytes while holding its lock (so no task changes partway through), the slow part (writing the
+// file) happens afterwards on another thread
+// file layout: magic, version, journal position, then the completed ids, attempt counts, per-server queued tasks, retry timers & dependent tasks
+public class SchedulerSnapshot {
+    // file header
+    private static final int MAGIC = 0x54535353;
+    private static final int VERSION = 1;
+
+    // the object stream's handle table is reset this often so it doesn't hold on to every task written
+    private static final int RESET_INTERVAL = 1024;
+
+    // journal position when the snapshot was taken (records after this aren't in the snapshot), -1 if there's no journal
+    final long journalPosition;
+
+    // ids of tasks that completed
+    final Set<String> completedIds;
+
+    // attempt counts of tasks that failed at least once
+    final Map<String, Integer> attempts;
+
+    // tasks queued to each server that haven't run (including tasks deferred because every server was full, as the last group)
+    final List<List<Task>> queuedTasks;
+
+    // tasks waiting to be retried & how many milliseconds were left on each one's timer
+    final List<Task> retryTasks;
+    final List<Long> retryDelays;
+
+    // tasks waiting on dependencies & the ids of the dependencies that were already fulfilled
+    final List<Task> dependentTasks;
+    final List<Set<String>> fulfilledDependencies;
+
+    // creates a snapshot from state the scheduler already copied
+    SchedulerSnapshot(long journalPositionValue, Set<String> completed, Map<String, Integer> attemptCounts, List<List<Task>> queued,
+            List<Task> retries, List<Long> delays, List<Task> dependents, List<Set<String>> fulfilled){
+        journalPosition = journalPositionValue;
+        completedIds = completed;
+        attempts = attemptCounts;
+        queuedTasks = queued;
+        retryTasks = retries;
+        retryDelays = delays;
+        dependentTasks = dependents;
+        fulfilledDependencies = fulfilled;
+    }
+
+    // writes the snapshot to a file (written to a temporary file first so a crash never leaves half a snapshot)
+    public void write(Path file){
+        write(file, encode());
+    }
+
+    // serializes the snapshot into the bytes write() puts in the file (the tasks are read as they are now)
+    byte[] encode(){
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try{
+            // header
+            DataOutputStream header = new DataOutputStream(stream);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeLong(journalPosition);
+            header.flush();
+
+            // body (one object stream so each task class is only described once)
+            ObjectOutputStream out = new ObjectOutputStream(stream);
+            out.writeInt(completedIds.size());
+            for(String id : completedIds)
+                out.writeUTF(id);
+
+            out.writeInt(attempts.size());
+            for(Map.Entry<String, Integer> entry : attempts.entrySet()){
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+
+            out.writeInt(queuedTasks.size());
+            for(List<Task> group : queuedTasks)
+                writeTasks(out, group);
+
+            writeTasks(out, retryTasks);
+            for(long delay : retryDelays)
+                out.writeLong(delay);
+
+            writeTasks(out, dependentTasks);
+            for(Set<String> fulfilled : fulfilledDependencies){
+                out.writeInt(fulfilled.size());
+                for(String id : fulfilled)
+                    out.writeUTF(id);
+            }
+            out.flush();
+        }catch(IOException e){
+            throw new SchedulerException(e);
+        }
+        return stream.toByteArray();
+    }
+
+    // writes bytes made by encode() to a file (written to a temporary file first so a crash never leaves half a snapshot)
+    static void write(Path file, byte[] encoded){
+        Objects.requireNonNull(file);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try{
+            Files.write(temp, encoded);
+        }catch(IOException e){
+            throw new SchedulerException(e);
+        }
+
+        // swap the new snapshot in
+        try{
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }catch(IOException e){
+            throw new SchedulerException(e);
+        }
+    }
+
+    // reads a snapshot written by write()
+    public static SchedulerSnapshot read(Path file){
+        Objects.requireNonNull(file);
+
+        try(BufferedInputStream stream = new BufferedInputStream(Files.newInputStream(file))){
+            // header
+            DataInputStream header = new DataInputStream(stream);
+            if(header.readInt() != MAGIC)
+                throw new SchedulerException("not a scheduler snapshot");
+            int version = header.readInt();
+            if(version != VERSION)
+                throw new SchedulerException("unsupported snapshot version: " + version);
+            long journalPosition = header.readLong();
+
+            // body
+            ObjectInputStream in = new ObjectInputStream(stream);
+            int count = in.readInt();
+            Set<String> completed = new HashSet<>(count * 2);
+            for(int i = 0; i < count; i++)
+                completed.add(in.readUTF());
+
+            count = in.readInt();
+            Map<String, Integer> attempts = new HashMap<>(count * 2);
+            for(int i = 0; i < count; i++)
+                attempts.put(in.readUTF(), in.readInt());
+
+            count = in.readInt();
+            List<List<Task>> queued = new ArrayList<>(count);
+            for(int i = 0; i < count; i++)
+                queued.add(readTasks(in));
+
+            List<Task> retries = readTasks(in);
+            List<Long> delays = new ArrayList<>(retries.size());
+            for(int i = 0; i < retries.size(); i++)
+                delays.add(in.readLong());
+
+            List<Task> dependents = readTasks(in);
+            List<Set<String>> fulfilled = new ArrayList<>(dependents.size());
+            for(int i = 0; i < dependents.size(); i++){
+                count = in.readInt();
+                Set<String> ids = new HashSet<>();
+                for(int j = 0; j < count; j++)
+                    ids.add(in.readUTF());
+                fulfilled.add(ids);
+            }
+
+            return new SchedulerSnapshot(journalPosition, completed, attempts, queued, retries, delays, dependents, fulfilled);
+        }catch(IOException | ClassNotFoundException e){
+            throw new SchedulerException(e);
+        }
+    }
+
+    // returns the journal position the snapshot was taken at (-1 if there was no journal)
+    public long getJournalPosition(){
+        return journalPosition;
+    }
+
+    // returns the number of tasks that haven't finished (queued, waiting to retry & waiting on dependencies)
+    public int getPendingCount(){
+        return queuedTasks.stream().mapToInt(List::size).sum() + retryTasks.size() + dependentTasks.size();
+    }
+
+    // writes a count and then each task
+    private static void writeTasks(ObjectOutputStream out, List<Task> tasks) throws IOException{
+        out.writeInt(tasks.size());
+        for(int i = 0; i < tasks.size(); i++){
+            out.writeObject(tasks.get(i));
+            if(i % RESET_INTERVAL == RESET_INTERVAL - 1)
+                out.reset();
+        }
+    }
+
+    // reads a list of tasks written by writeTasks
+    private static List<Task> readTasks(ObjectInputStream in) throws IOException, ClassNotFoundException{
+        int count = in.readInt();
+        List<Task> tasks = new ArrayList<>(count);
+        for(int i = 0; i < count; i++)
+            tasks.add((Task)in.readObject());
+        return tasks;
+    }
+}
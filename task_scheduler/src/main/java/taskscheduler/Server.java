@@ -1,15 +1,25 @@
 package taskscheduler;
 
-import java.util.AbstractQueue;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.*;
 
 // the server class is a computational node capable of executing tasks
@@ -18,18 +28,97 @@ public class Server{
     private static final Logger LOGGER = Logger.getLogger(Server.class.getName());
 
     // holds all tasks to be executed, separated by TaskPriority
-    private Map<TaskPriority, ConcurrentLinkedQueue<Task>> taskQueues = new ConcurrentHashMap<>();
+    private Map<TaskPriority, TaskQueue> taskQueues = new ConcurrentHashMap<>();
+
+    // number of tasks in all the taskQueues (also used to reserve spots against the capacity limits)
+    private final AtomicInteger queuedTasks = new AtomicInteger();
+
+    // a task is only accepted if fewer than this many tasks (of any priority) are queued
+    // lower priorities get smaller limits so they're shed first when the server backs up
+    // never changed in place: a new unmodifiable map is swapped in (under capacityLock), so addTask reads it without locking
+    private volatile Map<TaskPriority, Integer> queueCapacity;
+    private final Object capacityLock = new Object();
+
+    // when each priority's queued tasks were added (System.nanoTime), in the same order as the tasks
+    // adding & taking a task locks its priority's deque so the two stay lined up
+    private final Map<TaskPriority, ArrayDeque<Long>> enqueueTimes = new EnumMap<>(TaskPriority.class);
+
+    // the order tasks are taken off the queue in
+    private volatile DispatchOrder dispatchOrder = DispatchOrder.PRIORITY;
+
+    // tasks with a deadline, earliest deadline first (only used with DispatchOrder.EARLIEST_DEADLINE_FIRST, they run before taskQueues)
+    private final PriorityBlockingQueue<QueuedTask> deadlineQueue = new PriorityBlockingQueue<>(11, Comparator.comparing((QueuedTask q) -> q.task.getDeadline()));
+
+    // with PRIORITY & EARLIEST_DEADLINE_FIRST order, a waiting task counts as one priority higher for each agingNanos it has waited (0 means no aging)
+    private volatile long agingNanos = 0;
+
+    // share of run time each priority gets with WEIGHTED_FAIR order
+    private final Map<TaskPriority, Integer> priorityWeights = new EnumMap<>(Map.of(TaskPriority.HIGH, 8, TaskPriority.MEDIUM, 4, TaskPriority.LOW, 2, TaskPriority.NONE, 1));
+
+    // estimated run time (ms) a weight of 1 earns each round of WEIGHTED_FAIR order
+    private static final long FAIR_QUANTUM = 10;
+
+    // deficit round robin state for WEIGHTED_FAIR order: run time each priority (in TaskPriority.getOrder()) still has this round,
+    // the priority being served & whether it has been given its quantum yet
+    private final long[] fairDeficits = new long[TaskPriority.getOrder().size()];
+    private int fairIndex = 0;
+    private boolean fairCredited = false;
 
     // list of failed tasks
     private List<Task> failedTasks = new ArrayList<>();
 
+    // tasks the last batch took off the queue without running them (cancelled), so they can still be handed back (see getUnfinishedTasks)
+    private List<Task> skippedTasks = new ArrayList<>();
+
+    // when each task completed in the last batch (System.nanoTime()), by task
+    private Map<Task, Long> completionTimes = new IdentityHashMap<>();
+
     // keeps track of the stats for the server
     ServerMonitor serverMonitor;
 
+    // starts backup copies of idempotent tasks that run long (null means no hedging)
+    private volatile HedgingPolicy hedgingPolicy = null;
+
+    // completed tasks memoized by cache key (null means no memoization)
+    private volatile ResultCache resultCache = null;
+
+    // queued tasks that were moved up to a higher priority, by id
+    private final Map<String, Boost> boosts = new HashMap<>();
+
+    // the cpu & memory queued tasks can use between them (null means no limit) & what the queued tasks have set aside
+    // both are guarded by resourceLock
+    private Resources capacity = null;
+    private Resources reserved = Resources.NONE;
+    private final Object resourceLock = new Object();
+
+    // labels describing the server (e.g. "gpu" or the data it holds) that tasks can require or prefer
+    private volatile Set<String> labels = Set.of();
+
+    // ids of cancelled tasks. queued ones are skipped when they come up (cleared at the end of each batch)
+    private final Set<String> cancelledIds = ConcurrentHashMap.newKeySet();
+
+    // the task running right now & its execution (null between tasks), so it can be interrupted if it's cancelled
+    private volatile Task runningTask = null;
+    private volatile Future<Void> runningExecution = null;
+
+    // the running task when it's being stopped to make room for a more urgent one (null if it isn't)
+    // guarded by runLock along with taking the next task, so an urgent task is never handed over after the batch stopped looking
+    private Task preempted = null;
+    // the urgent task a preemption made room for, taken before anything queued no matter the dispatch order (null if there isn't one)
+    // also guarded by runLock
+    private QueuedTask handover = null;
+    private final Object runLock = new Object();
+
     // constructor 
     public Server(){
         // create an empty list for each TaskPriority
-        TaskPriority.getOrder().stream().forEach(priority -> taskQueues.put(priority, new ConcurrentLinkedQueue<>()));
+        TaskPriority.getOrder().stream().forEach(priority -> taskQueues.put(priority, new HeapTaskQueue()));
+        TaskPriority.getOrder().stream().forEach(priority -> enqueueTimes.put(priority, new ArrayDeque<>()));
+
+        // no capacity limits by default
+        Map<TaskPriority, Integer> unlimited = new EnumMap<>(TaskPriority.class);
+        TaskPriority.getOrder().stream().forEach(priority -> unlimited.put(priority, Integer.MAX_VALUE));
+        queueCapacity = Collections.unmodifiableMap(unlimited);
 
         // create ServerMonitor
         serverMonitor = new ServerMonitor();
@@ -42,20 +131,306 @@ public class Server{
 
         // copy all taskQueues
         this.taskQueues = new ConcurrentHashMap<>();
-        for(TaskPriority p : TaskPriority.getOrder())
-            this.taskQueues.put(p, new ConcurrentLinkedQueue<>(s.taskQueues.get(p)));
+        for(TaskPriority p : TaskPriority.getOrder()){
+            TaskQueue copy = new HeapTaskQueue();
+            ArrayDeque<Long> times = new ArrayDeque<>();
+            s.taskQueues.get(p).toList().forEach(t -> {
+                copy.add(t);
+                times.add(System.nanoTime());
+            });
+            this.taskQueues.put(p, copy);
+            this.enqueueTimes.put(p, times);
+        }
+        deadlineQueue.addAll(s.deadlineQueue);
+        synchronized(s.runLock){
+            handover = s.handover;
+        }
+        dispatchOrder = s.dispatchOrder;
+        agingNanos = s.agingNanos;
+        priorityWeights.putAll(s.priorityWeights);
+        queuedTasks.set(s.queuedTasks.get());
+        synchronized(s.resourceLock){
+            capacity = s.capacity;
+            reserved = s.reserved;
+        }
+        labels = s.labels;
+
+        // share capacity limits (the map is never changed in place)
+        queueCapacity = s.queueCapacity;
         
         // create serverMonitor
         serverMonitor = new ServerMonitor();
     }
 
     // adds a task to the queue
+    // throws ServerFullException if the queue is at capacity for the task's priority (the task should be sent somewhere else)
     public void addTask(Task task){
         // check for null task
         Objects.requireNonNull(task);
 
-        // add the task to the correct queue
-        taskQueues.get(task.getPriority()).add(task);
+        addTask(task, task.getPriority());
+    }
+
+    // adds a task to the queue as if it had the given priority (e.g. one it inherited from a task waiting on it)
+    // throws ServerFullException if the queue is at capacity for that priority
+    public void addTask(Task task, TaskPriority priority){
+        // check for null
+        Objects.requireNonNull(task);
+        Objects.requireNonNull(priority);
+
+        admit(task, priority);
+        place(task, priority);
+    }
+
+    // reserves a spot in the queue & the resources for a task, or throws ServerFullException (nothing is kept) if there isn't room
+    private void admit(Task task, TaskPriority priority){
+        // reserve a spot in the queue, giving it back if the priority's limit is exceeded
+        if(queuedTasks.incrementAndGet() > queueCapacity.get(priority)){
+            queuedTasks.decrementAndGet();
+
+            // count the rejection & tell the caller to go elsewhere
+            serverMonitor.recordRejection();
+            throw new ServerFullException("server queue is full for " + priority + " tasks, id: " + task.getId());
+        }
+
+        // set aside the resources the task needs, giving back its spot if there isn't room
+        try{
+            reserve(task);
+        }catch(ServerException e){
+            queuedTasks.decrementAndGet();
+            throw e;
+        }
+    }
+
+    // puts an admitted task on the correct queue
+    private void place(Task task, TaskPriority priority){
+        // add the task to the correct queue (with the time it was added)
+        if(dispatchOrder == DispatchOrder.EARLIEST_DEADLINE_FIRST && task.getDeadline() != null){
+            deadlineQueue.add(new QueuedTask(task, System.nanoTime()));
+            return;
+        }
+        enqueue(task, priority);
+    }
+
+    // sets aside the resources a task needs until it's taken off the queue
+    // throws ServerFullException if the batch doesn't have room for it right now, or ServerException if the server never will
+    void reserve(Task task){
+        Resources needs = task.getResources();
+        synchronized(resourceLock){
+            if(capacity != null && !needs.fitsIn(capacity.minus(reserved))){
+                // more than the whole server has, no point waiting for room
+                if(!needs.fitsIn(capacity))
+                    throw new ServerException("task needs " + needs + " but the server only has " + capacity + ", id: " + task.getId());
+
+                // count the rejection & tell the caller to go elsewhere
+                serverMonitor.recordRejection();
+                throw new ServerFullException("server doesn't have " + needs + " free, id: " + task.getId());
+            }
+            reserved = reserved.plus(needs);
+        }
+    }
+
+    // gives back the resources a task set aside
+    void release(Task task){
+        synchronized(resourceLock){
+            reserved = reserved.minus(task.getResources());
+        }
+    }
+
+    // gives back the resources every queued task set aside (once they've all gone to run)
+    void releaseAll(){
+        synchronized(resourceLock){
+            reserved = Resources.NONE;
+        }
+    }
+
+    // moves a task that's already queued up to a higher priority (e.g. a more urgent task is waiting on it)
+    // the task is queued again at the new priority & the old entry is skipped when it comes up. returns false if it can't be moved
+    // (tasks waiting by deadline are already ordered by deadline). only call this for a task that's still queued here
+    public boolean boost(Task task, TaskPriority priority){
+        // check for null
+        Objects.requireNonNull(task);
+        Objects.requireNonNull(priority);
+
+        if(dispatchOrder == DispatchOrder.EARLIEST_DEADLINE_FIRST && task.getDeadline() != null)
+            return false;
+
+        // remember which entry is the real one, counting the entries left behind
+        synchronized(boosts){
+            Boost boost = boosts.get(task.getId());
+            if(boost == null){
+                if(priority.compareTo(task.getPriority()) <= 0)
+                    return false;
+                boosts.put(task.getId(), new Boost(priority));
+            }else{
+                if(priority.compareTo(boost.priority) <= 0)
+                    return false;
+                boost.priority = priority;
+                boost.leftBehind++;
+            }
+        }
+        LOGGER.log(Level.INFO, "task moved up to " + priority + ". id: {0}", task.getId());
+        enqueue(task, priority);
+        return true;
+    }
+
+    // adds a task to a priority's queue with the time it was added
+    private void enqueue(Task task, TaskPriority priority){
+        ArrayDeque<Long> times = enqueueTimes.get(priority);
+        synchronized(times){
+            taskQueues.get(priority).add(task);
+            times.add(System.nanoTime());
+        }
+    }
+
+    // makes waiting tasks count as one priority higher for each interval they've waited, so a steady stream of higher priority
+    // tasks can't hold them back forever (null or 0 turns aging off). used with PRIORITY & EARLIEST_DEADLINE_FIRST order
+    public void setPriorityAging(Duration interval){
+        long nanos = interval == null ? 0 : interval.toMillis() * 1_000_000;
+
+        // bounds check
+        if(nanos < 0)
+            throw new IllegalArgumentException("aging interval cannot be negative");
+
+        agingNanos = nanos;
+    }
+
+    // sets the share of run time a priority gets with WEIGHTED_FAIR order (by default HIGH 8, MEDIUM 4, LOW 2 & NONE 1)
+    public synchronized void setPriorityWeight(TaskPriority priority, int weight){
+        // check for null & bounds
+        Objects.requireNonNull(priority);
+        if(weight < 1)
+            throw new IllegalArgumentException("priority weight must be at least 1");
+
+        priorityWeights.put(priority, weight);
+    }
+
+    // sets the order tasks are taken off the queue in
+    // can only be changed while nothing is queued
+    public synchronized void setDispatchOrder(DispatchOrder order){
+        // check for null
+        Objects.requireNonNull(order);
+
+        // tasks already queued were sorted for the old order
+        if(queuedTasks.get() != 0)
+            throw new IllegalStateException("dispatch order can only be changed while the server's queue is empty");
+
+        dispatchOrder = order;
+    }
+
+    // sets how many tasks (of any priority) can be queued before tasks of this priority are rejected
+    public void setQueueCapacity(TaskPriority priority, int capacity){
+        // check for null & bounds
+        Objects.requireNonNull(priority);
+        if(capacity < 0)
+            throw new IllegalArgumentException("queue capacity cannot be negative");
+
+        setQueueCapacities(Map.of(priority, capacity));
+    }
+
+    // sets the total queue capacity. HIGH tasks can fill the whole queue, MEDIUM 3/4 of it, LOW 1/2 and NONE 1/4
+    // so as the server backs up, NONE and LOW tasks are shed first
+    public void setQueueCapacity(int capacity){
+        // bounds check
+        if(capacity < 0)
+            throw new IllegalArgumentException("queue capacity cannot be negative");
+
+        // scale the limit for each priority (all changed at once)
+        setQueueCapacities(Map.of(TaskPriority.HIGH, capacity, TaskPriority.MEDIUM, capacity * 3 / 4, TaskPriority.LOW, capacity / 2,
+            TaskPriority.NONE, capacity / 4));
+    }
+
+    // swaps in a copy of the capacity limits with the given ones changed
+    private void setQueueCapacities(Map<TaskPriority, Integer> limits){
+        synchronized(capacityLock){
+            Map<TaskPriority, Integer> updated = new EnumMap<>(queueCapacity);
+            updated.putAll(limits);
+            queueCapacity = Collections.unmodifiableMap(updated);
+        }
+    }
+
+    // keeps at most hotWindow tasks of each priority on the heap, spilling the rest into store (null keeps every task on the heap)
+    // can only be changed while nothing is queued
+    public synchronized void setSpillStore(SpillStore store, int hotWindow){
+        // the queues can't be swapped out from under tasks that are already in them
+        if(queuedTasks.get() != 0)
+            throw new IllegalStateException("spilling can only be changed while the server's queue is empty");
+
+        // replace each priority's queue
+        for(TaskPriority p : TaskPriority.getOrder())
+            taskQueues.put(p, store == null ? new HeapTaskQueue() : new SpillTaskQueue(store, hotWindow));
+    }
+
+    // sets the cpu & memory budget for the tasks queued on this server for one batch (null means no limit, the default)
+    // the server runs its tasks one at a time, so this isn't what runs at once: it's how much work the server takes per batch, so
+    // servers get work in proportion to their size & a task bigger than a small node never lands on it. a task that needs the
+    // whole budget gets a batch to itself. tasks that don't fit in what's left of the budget are turned away with a
+    // ServerFullException (the scheduler sends them elsewhere or holds them for the next batch). the budget frees up as tasks
+    // are taken off the queue to run
+    public void setCapacity(Resources resources){
+        synchronized(resourceLock){
+            capacity = resources;
+        }
+    }
+
+    // returns the server's capacity (null means no limit)
+    public Resources getCapacity(){
+        synchronized(resourceLock){
+            return capacity;
+        }
+    }
+
+    // returns the resources set aside by the tasks queued on this server
+    public Resources getReservedResources(){
+        synchronized(resourceLock){
+            return reserved;
+        }
+    }
+
+    // sets the labels tasks can require or prefer (see Task.getRequiredLabels). set them before adding the server to a scheduler,
+    // it indexes servers by label when they join
+    public void setLabels(Set<String> labelSet){
+        // check for null
+        Objects.requireNonNull(labelSet);
+
+        labels = Set.copyOf(labelSet);
+    }
+
+    // returns the server's labels
+    public Set<String> getLabels(){
+        return labels;
+    }
+
+    // returns the number of tasks waiting to be executed
+    public int getQueuedTaskCount(){
+        return queuedTasks.get();
+    }
+
+    // adds a batch of tasks to the queue (remote servers send the whole batch in one message)
+    // the batch is taken whole or not at all: if any task doesn't fit, none are queued & the exception is rethrown
+    public void addTasks(List<Task> tasks){
+        // check for null list
+        Objects.requireNonNull(tasks);
+        tasks.forEach(Objects::requireNonNull);
+
+        // make room for every task before queueing any, giving back what was set aside if one doesn't fit
+        List<Task> admitted = new ArrayList<>();
+        try{
+            for(Task task : tasks){
+                admit(task, task.getPriority());
+                admitted.add(task);
+            }
+        }catch(ServerException e){
+            for(Task task : admitted){
+                queuedTasks.decrementAndGet();
+                release(task);
+            }
+            throw e;
+        }
+
+        // queue them all
+        for(Task task : admitted)
+            place(task, task.getPriority());
     }
 
     // executes all tasks in the queue and returns a list of completed tasks
@@ -67,81 +442,550 @@ public class Server{
         // list to hold all completed tasks
         List<Task> completedTasks = new ArrayList<>();
 
-        // reset failed tasks list
+        // reset failed & skipped tasks lists & completion times
         failedTasks = new ArrayList<>();
+        skippedTasks = new ArrayList<>();
+        completionTimes = new IdentityHashMap<>();
 
-        // iterate through each priority level in order
-        for(TaskPriority p : TaskPriority.getOrder()){
-            // get taskList for easy reference
-            AbstractQueue<Task> taskList = taskQueues.get(p);
+        // record how much of the server's budget the batch was packed into
+        synchronized(resourceLock){
+            if(capacity != null && !reserved.isNone())
+                serverMonitor.recordPacking(reserved, capacity);
+        }
 
-            // execute tasks as future
-            taskList.stream().forEach(task -> {
-                try{
-                    // tell the ServerMonitor that a task is starting
-                    serverMonitor.taskStarted();
-
-                    // log that task started
-                    LOGGER.log(Level.INFO, "task started. id: {0}", task.getId());
-
-                    // execute the task with a timeout using the Future class
-                    task.execute().get(Task.timeout.toMillis(), TimeUnit.MILLISECONDS);
-
-                    // tell serverMonitor that task finished
-                    serverMonitor.recordTask(task.isCompleted());
-
-                    // log task completion
-                    LOGGER.log(Level.INFO, "task completed. id: {0}", task.getId());
-                }catch(InterruptedException | ExecutionException | TimeoutException e){
-                    // log failed task
-                    LOGGER.log(Level.WARNING, "task timed out. id: {0}", task.getId());
-
-                    // run task cleanup (also has a timeout but if this task times out, it doesn't get to clean up)
-                    try{
-                        task.cleanup().get(Task.timeout.toMillis(), TimeUnit.MILLISECONDS);
-                    }catch(InterruptedException | ExecutionException | TimeoutException e2){
-                        LOGGER.log(Level.SEVERE, "task cleanup timed out. id: {0}", task.getId());
-                    }
-
-                    // tell serverMonitor that task failed
-                    serverMonitor.recordTask(false);
-                }catch(TaskException e){
-                    // log failed task
-                    LOGGER.log(Level.WARNING, "task failed. id: {0}", task.getId());
-
-                    // run task cleanup (also has a timeout but if this task times out, it doesn't get to clean up)
-                    try{
-                        task.cleanup().get(Task.timeout.toMillis(), TimeUnit.MILLISECONDS);
-                    }catch(InterruptedException | ExecutionException | TimeoutException e2){
-                        LOGGER.log(Level.SEVERE, "task cleanup timed out. id: {0}", task.getId());
-                    }
-
-                    // tell serverMonitor that task failed
-                    serverMonitor.recordTask(false);
-                }
-            });
+        // take tasks off the queue one at a time in the dispatch order (tasks added while executing are picked up too)
+        Task task;
+        while((task = takeNext()) != null){
+            // free up the spot in the queue & the task's resources
+            queuedTasks.decrementAndGet();
+            release(task);
+
+            // skip cancelled tasks (they're reported as neither completed nor failed)
+            if(cancelledIds.remove(task.getId())){
+                LOGGER.log(Level.INFO, "task cancelled, skipping. id: {0}", task.getId());
+                skippedTasks.add(task);
+                continue;
+            }
+
+            // a memoized result means the task doesn't need to run
+            ResultCache cache = resultCache;
+            Task cached = cache == null ? null : cache.get(task);
+            if(cached != null){
+                LOGGER.log(Level.INFO, "task result found in cache. id: {0}", task.getId());
+                completedTasks.add(cached);
+                completionTimes.put(cached, System.nanoTime());
+                recordDeadline(task);
+                serverMonitor.recordTenantCompletion(task.getTenant());
+                continue;
+            }
 
-            // add completed tasks to completedTasks
-            taskList.stream().filter(Task::isCompleted).forEach(task -> completedTasks.add(task));
+            // run the task (if a backup copy finished first, the copy is what gets reported)
+            // a task stopped for a more urgent one was queued again, it's neither completed nor failed yet
+            Task result = executeTask(task);
+            if(result == null)
+                continue;
 
-            // collect failed tasks
-            taskList.stream().filter(t -> !t.isCompleted()).forEach(task -> failedTasks.add(task));
+            // sort into completed & failed tasks (memoizing completed ones)
+            if(result.isCompleted()){
+                completedTasks.add(result);
+                completionTimes.put(result, System.nanoTime());
+                recordDeadline(task);
+                serverMonitor.recordTenantCompletion(task.getTenant());
+                if(cache != null)
+                    cache.put(result);
+            }else
+                failedTasks.add(result);
         }
 
-        // clear the taskQueue by creating a new, empty one
-        taskQueues = new ConcurrentHashMap<>();
-        TaskPriority.getOrder().stream().forEach(priority -> taskQueues.put(priority, new ConcurrentLinkedQueue<>()));
+        // cancellations of tasks that weren't here (or finished first) don't carry over
+        cancelledIds.clear();
 
         // return list of completed tasks
         return completedTasks;
     }
 
+    // takes the next task to run while no urgent task can be handed over (see preemptFor)
+    private Task takeNext(){
+        synchronized(runLock){
+            return nextTask();
+        }
+    }
+
+    // takes the next task to run (null once every queue is empty)
+    // an urgent task handed over by preemptFor goes first, then tasks with deadlines, then the priority the dispatch order picks
+    private Task nextTask(){
+        // urgent task
+        if(handover != null){
+            QueuedTask urgent = handover;
+            handover = null;
+            recordWait(urgent.task, urgent.task.getPriority(), urgent.enqueuedAt);
+            return urgent.task;
+        }
+
+        // earliest deadline
+        QueuedTask due = deadlineQueue.poll();
+        if(due != null){
+            recordWait(due.task, due.task.getPriority(), due.enqueuedAt);
+            return due.task;
+        }
+
+        // pick again if the picked queue only had entries left behind by moved up tasks
+        while(true){
+            // weighted fair order charges the priority for the task's estimated run time
+            if(dispatchOrder == DispatchOrder.WEIGHTED_FAIR){
+                int i = nextFairIndex();
+                if(i < 0)
+                    return null;
+                Task task = poll(TaskPriority.getOrder().get(i));
+                if(task == null)
+                    continue;
+                fairDeficits[i] -= Math.max(1, task.getEstimatedDuration().toMillis());
+                return task;
+            }
+
+            // highest (aged) priority
+            TaskPriority p = highestPriority();
+            if(p == null)
+                return null;
+            Task task = poll(p);
+            if(task != null)
+                return task;
+        }
+    }
+
+    // returns the priority whose oldest task has the highest priority once aging is counted (null if every queue is empty)
+    // ties go to the higher priority
+    private TaskPriority highestPriority(){
+        List<TaskPriority> order = TaskPriority.getOrder();
+        long now = System.nanoTime();
+        TaskPriority best = null;
+        long bestLevel = Long.MIN_VALUE;
+        for(int i = 0; i < order.size(); i++){
+            ArrayDeque<Long> times = enqueueTimes.get(order.get(i));
+            Long oldest;
+            synchronized(times){
+                oldest = times.peek();
+            }
+            if(oldest == null)
+                continue;
+
+            // the priority's level, raised one for each aging interval its oldest task has waited
+            long level = order.size() - 1 - i;
+            if(agingNanos > 0)
+                level += (now - oldest) / agingNanos;
+            if(level > bestLevel){
+                best = order.get(i);
+                bestLevel = level;
+            }
+        }
+        return best;
+    }
+
+    // deficit round robin: returns the index (in TaskPriority.getOrder()) of the priority to take the next task from (-1 if every queue is empty)
+    // each time a priority comes up it gets its weight times FAIR_QUANTUM of run time, & keeps serving tasks until that's used up
+    private int nextFairIndex(){
+        List<TaskPriority> order = TaskPriority.getOrder();
+        int emptyInARow = 0;
+        while(emptyInARow < order.size()){
+            TaskPriority p = order.get(fairIndex);
+
+            // empty priorities don't save up run time
+            if(taskQueues.get(p).size() == 0){
+                fairDeficits[fairIndex] = 0;
+                nextFairPriority();
+                emptyInARow++;
+                continue;
+            }
+            emptyInARow = 0;
+
+            // give it its quantum the first time it comes up this round
+            if(!fairCredited){
+                fairDeficits[fairIndex] += priorityWeights.get(p) * FAIR_QUANTUM;
+                fairCredited = true;
+            }
+
+            // serve it while it has run time left
+            if(fairDeficits[fairIndex] > 0)
+                return fairIndex;
+            nextFairPriority();
+        }
+        return -1;
+    }
+
+    // moves deficit round robin on to the next priority
+    private void nextFairPriority(){
+        fairIndex = (fairIndex + 1) % fairDeficits.length;
+        fairCredited = false;
+    }
+
+    // takes the task at the front of a priority's queue, recording how long it waited
+    // entries left behind when a task was moved up are skipped (null if there's nothing else in the queue)
+    private Task poll(TaskPriority p){
+        ArrayDeque<Long> times = enqueueTimes.get(p);
+        while(true){
+            Task task;
+            long enqueuedAt;
+            synchronized(times){
+                task = taskQueues.get(p).poll();
+                if(task == null)
+                    return null;
+                enqueuedAt = times.poll();
+            }
+            if(isLeftBehind(task, p))
+                continue;
+            recordWait(task, p, enqueuedAt);
+            return task;
+        }
+    }
+
+    // tests if an entry taken from a priority's queue was left behind when the task was moved up (the entry at its new priority is the real one)
+    private boolean isLeftBehind(Task task, TaskPriority p){
+        synchronized(boosts){
+            Boost boost = boosts.get(task.getId());
+            if(boost == null)
+                return false;
+
+            // the real entry runs, the others are skipped
+            boolean leftBehind = p != boost.priority || boost.taken;
+            if(leftBehind)
+                boost.leftBehind--;
+            else
+                boost.taken = true;
+            if(boost.taken && boost.leftBehind == 0)
+                boosts.remove(task.getId());
+            return leftBehind;
+        }
+    }
+
+    // records how long a task waited in a priority's queue
+    private void recordWait(Task task, TaskPriority p, long enqueuedAt){
+        serverMonitor.recordQueueWait(p, task.getTenant(), Duration.ofMillis((System.nanoTime() - enqueuedAt) / 1_000_000));
+    }
+
+    // records whether a completed task with a deadline finished by it
+    private void recordDeadline(Task task){
+        if(task.getDeadline() != null)
+            serverMonitor.recordDeadline(System.currentTimeMillis() <= task.getDeadline().toEpochMilli());
+    }
+
+    // cancels a task: it's skipped if it's still queued, or interrupted (& cleaned up) if it's running
+    // the task isn't taken out of the queue right away, just marked so it's passed over when it comes up
+    public boolean cancel(String taskId){
+        // check for null
+        Objects.requireNonNull(taskId);
+
+        // mark it so it's skipped
+        cancelledIds.add(taskId);
+
+        // interrupt it if it's running (executeTask cleans it up)
+        Task running = runningTask;
+        Future<Void> execution = runningExecution;
+        if(running != null && execution != null && running.getId().equals(taskId)){
+            LOGGER.log(Level.INFO, "interrupting cancelled task. id: {0}", taskId);
+            execution.cancel(true);
+        }
+        return true;
+    }
+
+    // hands the server an urgent task while it's running a batch, stopping the task it's running so the urgent one runs next
+    // only a preemptible task with a lower priority is stopped. it gets preempt() called & is queued again (not counted as failed)
+    // returns false (without taking the task) if nothing running can be stopped for it
+    public boolean preemptFor(Task task){
+        // check for null
+        Objects.requireNonNull(task);
+
+        synchronized(runLock){
+            Task running = runningTask;
+            Future<Void> execution = runningExecution;
+            if(running == null || execution == null || preempted != null || handover != null || !running.isPreemptible()
+                    || running.getPriority().compareTo(task.getPriority()) >= 0)
+                return false;
+
+            // make room for the urgent task & hand it over so it's what the batch takes next (ahead of the dispatch order)
+            try{
+                admit(task, task.getPriority());
+            }catch(ServerException e){
+                return false;
+            }
+            handover = new QueuedTask(task, System.nanoTime());
+
+            // interrupt the running task (executeTask queues it again)
+            LOGGER.log(Level.INFO, "preempting task for " + task.getId() + ". id: {0}", running.getId());
+            preempted = running;
+            execution.cancel(true);
+            return true;
+        }
+    }
+
+    // puts a preempted task back in the queue at its own priority
+    // it already had a spot & its resources, so the queue & resource limits don't turn it away
+    private void requeue(Task task){
+        queuedTasks.incrementAndGet();
+        synchronized(resourceLock){
+            reserved = reserved.plus(task.getResources());
+        }
+        if(dispatchOrder == DispatchOrder.EARLIEST_DEADLINE_FIRST && task.getDeadline() != null){
+            deadlineQueue.add(new QueuedTask(task, System.nanoTime()));
+            return;
+        }
+        enqueue(task, task.getPriority());
+    }
+
+    // executes one task with a timeout, recording the result in the serverMonitor and cleaning up if it fails
+    // returns the task that ran to the end (the task itself, or its backup copy if hedging started one that won)
+    // or null if the task was preempted & queued again
+    private Task executeTask(Task task){
+        try{
+            // tell the ServerMonitor that a task is starting
+            serverMonitor.taskStarted();
+
+            // log that task started
+            LOGGER.log(Level.INFO, "task started. id: {0}", task.getId());
+
+            // execute the task with a timeout using the Future class (racing a backup copy if it's a straggler)
+            long start = System.currentTimeMillis();
+            Future<Void> execution = task.execute();
+            runningExecution = execution;
+            runningTask = task;
+            // cancelled before it could be tracked
+            if(cancelledIds.contains(task.getId()))
+                execution.cancel(true);
+            Task result = executeHedged(task, execution);
+
+            // tell serverMonitor that task finished
+            serverMonitor.recordTask(result.isCompleted());
+
+            // learn how long the task takes so stragglers can be spotted
+            HedgingPolicy policy = hedgingPolicy;
+            if(policy != null && result.isCompleted())
+                policy.recordDuration(task, System.currentTimeMillis() - start);
+
+            // log task completion
+            LOGGER.log(Level.INFO, "task completed. id: {0}", task.getId());
+            return result;
+        }catch(InterruptedException | ExecutionException | TimeoutException | CancellationException e){
+            // stopped to make room for an urgent task, let it save its progress & queue it again
+            // (recordPreemption closes the start instead of recordTask, so it isn't counted as attempted)
+            if(isPreempted(task)){
+                LOGGER.log(Level.INFO, "task preempted, queueing it again. id: {0}", task.getId());
+                try{
+                    task.preempt().get(Task.timeout.toMillis(), TimeUnit.MILLISECONDS);
+                }catch(InterruptedException | ExecutionException | TimeoutException | TaskException e2){
+                    LOGGER.log(Level.SEVERE, "task preemption hook failed. id: {0}", task.getId());
+                }
+                serverMonitor.recordPreemption();
+                requeue(task);
+                return null;
+            }
+
+            // log failed task
+            if(e instanceof CancellationException)
+                LOGGER.log(Level.WARNING, "task cancelled while running. id: {0}", task.getId());
+            else
+                LOGGER.log(Level.WARNING, "task timed out. id: {0}", task.getId());
+
+            // run task cleanup (also has a timeout but if this task times out, it doesn't get to clean up)
+            try{
+                task.cleanup().get(Task.timeout.toMillis(), TimeUnit.MILLISECONDS);
+            }catch(InterruptedException | ExecutionException | TimeoutException e2){
+                LOGGER.log(Level.SEVERE, "task cleanup timed out. id: {0}", task.getId());
+            }
+
+            // tell serverMonitor that task failed
+            serverMonitor.recordTask(false);
+        }catch(TaskException e){
+            // log failed task
+            LOGGER.log(Level.WARNING, "task failed. id: {0}", task.getId());
+
+            // run task cleanup (also has a timeout but if this task times out, it doesn't get to clean up)
+            try{
+                task.cleanup().get(Task.timeout.toMillis(), TimeUnit.MILLISECONDS);
+            }catch(InterruptedException | ExecutionException | TimeoutException e2){
+                LOGGER.log(Level.SEVERE, "task cleanup timed out. id: {0}", task.getId());
+            }
+
+            // tell serverMonitor that task failed
+            serverMonitor.recordTask(false);
+        }finally{
+            // nothing running to interrupt anymore
+            synchronized(runLock){
+                runningTask = null;
+                runningExecution = null;
+                preempted = null;
+            }
+        }
+
+        // task failed
+        return task;
+    }
+
+    // waits for a task to finish. if it's idempotent and runs past the hedging policy's delay, a copy is started on another server
+    // the first copy to complete wins, the other is cancelled and cleaned up. returns the winner
+    // throws TimeoutException if neither finishes within Task.timeout (both are cancelled)
+    private Task executeHedged(Task task, Future<Void> primary) throws InterruptedException, ExecutionException, TimeoutException {
+        // figure out when to hedge
+        HedgingPolicy policy = hedgingPolicy;
+        long delay = policy == null ? -1 : policy.getHedgeDelay(task);
+        long timeout = Task.timeout.toMillis();
+
+        // not hedging, just wait for the task
+        if(delay < 0 || delay >= timeout){
+            primary.get(timeout, TimeUnit.MILLISECONDS);
+            return task;
+        }
+
+        // give the task until the hedge delay to finish on its own
+        long start = System.currentTimeMillis();
+        try{
+            primary.get(delay, TimeUnit.MILLISECONDS);
+            return task;
+        }catch(TimeoutException e){
+            // straggler, try to start a backup below
+        }
+
+        // find another server and make a copy of the task for it (the copy is separate so both can run at once)
+        Server backup = policy.pickBackup(this);
+        Task copy = backup == null ? null : copyTask(task);
+        if(copy == null){
+            // nowhere to hedge, wait out the rest of the timeout
+            primary.get(timeout - (System.currentTimeMillis() - start), TimeUnit.MILLISECONDS);
+            return task;
+        }
+
+        // start the backup
+        LOGGER.log(Level.INFO, "task running long, starting backup copy. id: {0}", task.getId());
+        Future<Void> secondary = backup.executeHedge(copy);
+        long backupStart = System.currentTimeMillis();
+        policy.recordHedge();
+
+        // wait for the first copy to complete (a copy that finishes without completing doesn't win)
+        while(true){
+            boolean primaryDone = primary.isDone();
+            boolean secondaryDone = secondary.isDone();
+
+            // stopped for an urgent task, the backup goes too (the caller queues the original again)
+            if(primary.isCancelled() && isPreempted(task)){
+                cancelCopy(copy, secondary);
+                policy.recordHedgeResult(false, System.currentTimeMillis() - backupStart);
+                throw new CancellationException("task preempted");
+            }
+
+            // original won
+            if(primaryDone && task.isCompleted()){
+                cancelCopy(copy, secondary);
+                policy.recordHedgeResult(false, System.currentTimeMillis() - backupStart);
+                return task;
+            }
+
+            // backup won
+            if(secondaryDone && copy.isCompleted()){
+                cancelCopy(task, primary);
+                policy.recordHedgeResult(true, System.currentTimeMillis() - start);
+                return copy;
+            }
+
+            // both finished without completing, report the original as failed
+            if(primaryDone && secondaryDone){
+                policy.recordHedgeResult(false, System.currentTimeMillis() - backupStart);
+                return task;
+            }
+
+            // out of time, cancel the backup (the caller cleans up the original)
+            if(System.currentTimeMillis() - start >= timeout){
+                cancelCopy(copy, secondary);
+                policy.recordHedgeResult(false, System.currentTimeMillis() - backupStart);
+                throw new TimeoutException("task and backup copy both timed out");
+            }
+
+            // check again shortly
+            Thread.sleep(1);
+        }
+    }
+
+    // tests if the running task is being stopped for an urgent one
+    private boolean isPreempted(Task task){
+        synchronized(runLock){
+            return preempted == task;
+        }
+    }
+
+    // cancels a losing copy of a task and lets it clean up
+    private void cancelCopy(Task task, Future<Void> execution){
+        execution.cancel(true);
+        try{
+            task.cleanup().get(Task.timeout.toMillis(), TimeUnit.MILLISECONDS);
+        }catch(InterruptedException | ExecutionException | TimeoutException | TaskException e){
+            LOGGER.log(Level.SEVERE, "cleanup of cancelled copy failed. id: {0}", task.getId());
+        }
+    }
+
+    // makes a separate copy of a task by serializing it (null if the task can't be copied)
+    private static Task copyTask(Task task){
+        try{
+            PayloadCodec codec = new PayloadCodec(false, 0);
+            return (Task)codec.decode(codec.encode(task));
+        }catch(ServerException e){
+            LOGGER.log(Level.WARNING, "task could not be copied for hedging. id: {0}", task.getId());
+            return null;
+        }
+    }
+
+    // starts a backup copy of a task from another server. the copy doesn't go through the queue
+    public Future<Void> executeHedge(Task copy){
+        // check for null
+        Objects.requireNonNull(copy);
+
+        // start it right away
+        return copy.execute();
+    }
+
+    // returns whether this server can run backup copies for other servers
+    public boolean canHedge(){
+        // local servers can
+        return true;
+    }
+
+    // sets the hedging policy (null turns hedging off)
+    public void setHedgingPolicy(HedgingPolicy policy){
+        hedgingPolicy = policy;
+    }
+
+    // sets the cache that completed tasks are memoized in & looked up from before running (null turns memoization off)
+    public void setResultCache(ResultCache cache){
+        resultCache = cache;
+    }
+
+    // returns when a task completed in the last batch (System.nanoTime()), or -1 if it didn't complete here
+    public long getCompletionTime(Task task){
+        return completionTimes.getOrDefault(task, -1L);
+    }
+
     // returns a list of all the failed tasks
     public List<Task> getFailedTasks(){
         // make defensive copy and return failedTask list
         return new ArrayList<>(failedTasks);
     }
 
+    // returns the tasks given to this server that it hasn't completed or failed: the ones still queued (spilled ones are read back)
+    // & the ones the last batch skipped. the scheduler only keeps the ids of the tasks it placed & reads them back from here when a
+    // server leaves or loses them. call it between batches. servers that keep their own queue have to override it
+    public List<Task> getUnfinishedTasks(){
+        // a moved up task is queued more than once, keep one of each id
+        Map<String, Task> unfinished = new LinkedHashMap<>();
+        for(TaskPriority p : TaskPriority.getOrder()){
+            synchronized(enqueueTimes.get(p)){
+                taskQueues.get(p).toList().forEach(t -> unfinished.putIfAbsent(t.getId(), t));
+            }
+        }
+        deadlineQueue.forEach(q -> unfinished.putIfAbsent(q.task.getId(), q.task));
+        synchronized(runLock){
+            if(handover != null)
+                unfinished.putIfAbsent(handover.task.getId(), handover.task);
+        }
+        skippedTasks.forEach(t -> unfinished.putIfAbsent(t.getId(), t));
+        return new ArrayList<>(unfinished.values());
+    }
+
     // returns a view of ServerMonitor
     public ServerStats getStats(){
         return serverMonitor.getSnapshot();
@@ -152,4 +996,26 @@ public class Server{
         // the base Server class is local, so always reachable
         return true;
     }
+
+    // a queued task that was moved up: the priority of its real entry, whether that entry was taken yet & the entries left behind in lower queues
+    private static class Boost {
+        TaskPriority priority;
+        boolean taken = false;
+        int leftBehind = 1;
+
+        Boost(TaskPriority priorityValue){
+            priority = priorityValue;
+        }
+    }
+
+    // a task in the deadline queue & when it was added
+    private static class QueuedTask {
+        final Task task;
+        final long enqueuedAt;
+
+        QueuedTask(Task taskValue, long enqueuedAtValue){
+            task = taskValue;
+            enqueuedAt = enqueuedAtValue;
+        }
+    }
 }
\ No newline at end of file
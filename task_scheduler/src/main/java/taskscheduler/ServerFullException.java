@@ -0,0 +1,12 @@
+package taskscheduler;
+
+// exception class for when a server's queue is full for a task's priority
+// the task was not accepted, so it's safe to try another server
+public class ServerFullException extends ServerException {
+
+    // constructor
+    public ServerFullException(String s){
+        // call super
+        super(s);
+    }
+}
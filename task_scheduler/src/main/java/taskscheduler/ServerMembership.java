@@ -0,0 +1,120 @@
+package taskscheduler;
+
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// watches an rmi registry for NetworkServers registering & deregistering themselves and keeps a TaskScheduler's server set in sync
+// nodes join by calling NetworkServer.register() and leave by calling NetworkServer.deregister() (or shutdown())
+public class ServerMembership {
+    // logger
+    private static final Logger LOGGER = Logger.getLogger(ServerMembership.class.getName());
+
+    // the scheduler whose server set is kept up to date
+    private final TaskScheduler taskScheduler;
+
+    // location of the rmi registry being watched
+    private final String host;
+    private final int port;
+
+    // maps each registered name to the RemoteServer that was added to the scheduler for it
+    private final Map<String, RemoteServer> members = new ConcurrentHashMap<>();
+
+    // runs refresh() periodically once start() is called (a daemon thread, so a watcher that's never stopped doesn't keep the jvm up)
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "server-membership-poller");
+        t.setDaemon(true);
+        return t;
+    });
+    private ScheduledFuture<?> poller;
+
+    // creates a membership watcher for the registry at host:registryPort
+    public ServerMembership(TaskScheduler ts, String registryHost, int registryPort){
+        // check for null
+        Objects.requireNonNull(ts);
+        Objects.requireNonNull(registryHost);
+
+        // save values
+        taskScheduler = ts;
+        host = registryHost;
+        port = registryPort;
+    }
+
+    // checks the registry once. names that appeared join the scheduler, names that disappeared leave it
+    public synchronized void refresh(){
+        // get the names currently bound in the registry
+        Set<String> registered;
+        try{
+            Registry registry = LocateRegistry.getRegistry(host, port);
+            registered = new HashSet<>(Arrays.asList(registry.list()));
+        }catch(RemoteException e){
+            // registry unreachable, keep the current members (servers that are really down go offline on their own)
+            LOGGER.log(Level.WARNING, "could not reach rmi registry at {0}", host + ":" + port);
+            return;
+        }
+
+        // names that left the registry leave the scheduler (their queued tasks get re-placed)
+        members.keySet().stream().filter(name -> !registered.contains(name)).toList().forEach(this::leave);
+
+        // new names join the scheduler
+        registered.stream().filter(name -> !members.containsKey(name)).forEach(this::join);
+    }
+
+    // starts checking the registry every interval
+    public synchronized void start(Duration interval){
+        // check for null
+        Objects.requireNonNull(interval);
+
+        // only one poller at a time
+        if(poller != null)
+            poller.cancel(false);
+
+        // run refresh periodically
+        poller = scheduler.scheduleAtFixedRate(this::refresh, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // stops checking the registry. current members stay in the scheduler
+    public synchronized void stop(){
+        if(poller != null)
+            poller.cancel(false);
+        poller = null;
+    }
+
+    // returns the names of the servers currently in the scheduler through this registry
+    public Set<String> getMembers(){
+        return new HashSet<>(members.keySet());
+    }
+
+    // creates a RemoteServer for a newly registered name and adds it to the scheduler
+    private void join(String name){
+        try{
+            RemoteServer server = new RemoteServer(host, port, name);
+            members.put(name, server);
+            taskScheduler.addServer(server);
+            LOGGER.log(Level.INFO, "remote server joined: {0}", name);
+        }catch(ServerException | IllegalArgumentException e){
+            // the name was unbound (or the node died) between listing and lookup, try again on the next refresh
+            LOGGER.log(Level.WARNING, "remote server {0} registered but could not be reached", name);
+        }
+    }
+
+    // removes a deregistered server from the scheduler
+    private void leave(String name){
+        RemoteServer server = members.remove(name);
+        taskScheduler.removeServer(server);
+        server.close();
+        LOGGER.log(Level.INFO, "remote server left: {0}", name);
+    }
+}
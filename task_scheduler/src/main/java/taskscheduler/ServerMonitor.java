@@ -1,6 +1,9 @@
 package taskscheduler;
 
 import java.time.LocalTime;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
 
 // public class to monitor the task status within a Server
 public class ServerMonitor {
@@ -9,8 +12,27 @@ public class ServerMonitor {
     private int numTasksAttempted = 0;
     private int numTasksComplete = 0;
     private int numTasksFailed = 0;
+    private int numTasksRejected = 0;
+    private int numTasksPreempted = 0;
+    private int numDeadlinesMet = 0;
+    private int numDeadlinesMissed = 0;
     private Duration totalExecutionTime = Duration.ofMillis(0);
 
+    // time tasks of each priority spent queued & how many were taken off the queue
+    private final Map<TaskPriority, Duration> queueWaits = new EnumMap<>(TaskPriority.class);
+    private final Map<TaskPriority, Integer> tasksDispatched = new EnumMap<>(TaskPriority.class);
+
+    // the same by tenant, & how many of each tenant's tasks completed
+    private final Map<String, Duration> tenantWaits = new HashMap<>();
+    private final Map<String, Integer> tenantDispatched = new HashMap<>();
+    private final Map<String, Integer> tenantCompleted = new HashMap<>();
+
+    // shares of the server's capacity set aside by each batch (summed) & the number of those batches
+    private double cpuShares = 0;
+    private double memoryShares = 0;
+    private double dominantShares = 0;
+    private int numPackedBatches = 0;
+
     // keeps track of when the most recent task was started
     private LocalTime taskStartTime;
 
@@ -29,6 +51,11 @@ public class ServerMonitor {
         return numTasksFailed;
     }
 
+    // getter method for tasksRejected
+    public int getTasksRejected(){
+        return numTasksRejected;
+    }
+
     // getter method for execution time
     public Duration getExecutionTime(){
         return totalExecutionTime;
@@ -55,7 +82,48 @@ public class ServerMonitor {
         totalExecutionTime = totalExecutionTime.add(executionTime);
     }
 
-    // starts tracking a task
+    // records that a task was turned away because the queue was full
+    public synchronized void recordRejection(){
+        numTasksRejected++;
+    }
+
+    // records that the running task was stopped to make room for a more urgent one
+    // it isn't counted as attempted, it runs again later
+    public synchronized void recordPreemption(){
+        taskStartTime = null;
+        numTasksPreempted++;
+    }
+
+    // records whether a completed task with a deadline finished by it
+    public synchronized void recordDeadline(boolean met){
+        if(met)
+            numDeadlinesMet++;
+        else
+            numDeadlinesMissed++;
+    }
+
+    // records how long a task of a priority & tenant waited in the queue before it was taken off
+    public synchronized void recordQueueWait(TaskPriority priority, String tenant, Duration wait){
+        queueWaits.merge(priority, wait, Duration::add);
+        tasksDispatched.merge(priority, 1, Integer::sum);
+        tenantWaits.merge(tenant, wait, Duration::add);
+        tenantDispatched.merge(tenant, 1, Integer::sum);
+    }
+
+    // records that one of a tenant's tasks completed
+    public synchronized void recordTenantCompletion(String tenant){
+        tenantCompleted.merge(tenant, 1, Integer::sum);
+    }
+
+    // records how much of the server's capacity the tasks in a batch set aside
+    public synchronized void recordPacking(Resources reserved, Resources capacity){
+        cpuShares += Resources.shareOf(reserved.getCpus(), capacity.getCpus());
+        memoryShares += Resources.shareOf(reserved.getMemoryMb(), capacity.getMemoryMb());
+        dominantShares += reserved.dominantShareOf(capacity);
+        numPackedBatches++;
+    }
+
+    // starts tracking a task. each start is closed by recordTask, or by recordPreemption if the task is stopped & queued again
     public void taskStarted(){
         // check to make sure the previous task was completed
         if(taskStartTime != null)
@@ -66,7 +134,14 @@ public class ServerMonitor {
     }
 
     // captures all of the variables and puts them into a data class
-    public ServerStats getSnapshot(){
-        return new ServerStats(numTasksAttempted, numTasksComplete, numTasksFailed, totalExecutionTime);
+    public synchronized ServerStats getSnapshot(){
+        return new ServerStats(numTasksAttempted, numTasksComplete, numTasksFailed, numTasksRejected, numDeadlinesMet, numDeadlinesMissed, totalExecutionTime,
+            queueWaits, tasksDispatched, average(cpuShares), average(memoryShares), average(dominantShares), numPackedBatches,
+            tenantWaits, tenantDispatched, tenantCompleted, numTasksPreempted);
+    }
+
+    // averages a sum of shares over the packed batches
+    private double average(double shares){
+        return numPackedBatches == 0 ? 0 : shares / numPackedBatches;
     }
 }
\ No newline at end of file
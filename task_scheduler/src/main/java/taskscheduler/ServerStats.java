@@ -1,5 +1,8 @@
 package taskscheduler;
 
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 
 // data class containing only getter methods for stats tracked by ServerMonitor
@@ -9,16 +12,89 @@ public class ServerStats {
     private final int numTasksAttempted;
     private final int numTasksComplete;
     private final int numTasksFailed;
+    private final int numTasksRejected;
+    private final int numDeadlinesMet;
+    private final int numDeadlinesMissed;
     private final Duration totalExecutionTime;
+    private final Map<TaskPriority, Duration> queueWaits = new EnumMap<>(TaskPriority.class);
+    private final Map<TaskPriority, Integer> tasksDispatched = new EnumMap<>(TaskPriority.class);
+    private final double batchCpuShare;
+    private final double batchMemoryShare;
+    private final double batchPackingEfficiency;
+    private final int numPackedBatches;
+    private final Map<String, Duration> tenantWaits = new HashMap<>();
+    private final Map<String, Integer> tenantDispatched = new HashMap<>();
+    private final Map<String, Integer> tenantCompleted = new HashMap<>();
+    private final int numTasksPreempted;
 
     public ServerStats(int attempted, int complete, int failed, Duration executionTime){
+        // no rejections
+        this(attempted, complete, failed, 0, executionTime);
+    }
+
+    public ServerStats(int attempted, int complete, int failed, int rejected, Duration executionTime){
+        // no tasks with deadlines
+        this(attempted, complete, failed, rejected, 0, 0, executionTime);
+    }
+
+    public ServerStats(int attempted, int complete, int failed, int rejected, int deadlinesMet, int deadlinesMissed, Duration executionTime){
+        // no queue waits
+        this(attempted, complete, failed, rejected, deadlinesMet, deadlinesMissed, executionTime, Map.of(), Map.of());
+    }
+
+    public ServerStats(int attempted, int complete, int failed, int rejected, int deadlinesMet, int deadlinesMissed, Duration executionTime,
+            Map<TaskPriority, Duration> waits, Map<TaskPriority, Integer> dispatched){
+        // no batches packed against a capacity
+        this(attempted, complete, failed, rejected, deadlinesMet, deadlinesMissed, executionTime, waits, dispatched, 0, 0, 0, 0);
+    }
+
+    public ServerStats(int attempted, int complete, int failed, int rejected, int deadlinesMet, int deadlinesMissed, Duration executionTime,
+            Map<TaskPriority, Duration> waits, Map<TaskPriority, Integer> dispatched,
+            double cpuShare, double memoryShare, double dominantShare, int packedBatches){
+        // no tenants
+        this(attempted, complete, failed, rejected, deadlinesMet, deadlinesMissed, executionTime, waits, dispatched,
+            cpuShare, memoryShare, dominantShare, packedBatches, Map.of(), Map.of(), Map.of());
+    }
+
+    public ServerStats(int attempted, int complete, int failed, int rejected, int deadlinesMet, int deadlinesMissed, Duration executionTime,
+            Map<TaskPriority, Duration> waits, Map<TaskPriority, Integer> dispatched,
+            double cpuShare, double memoryShare, double dominantShare, int packedBatches,
+            Map<String, Duration> tenantWaitTimes, Map<String, Integer> tenantDispatches, Map<String, Integer> tenantCompletions){
+        // no preemptions
+        this(attempted, complete, failed, rejected, deadlinesMet, deadlinesMissed, executionTime, waits, dispatched,
+            cpuShare, memoryShare, dominantShare, packedBatches, tenantWaitTimes, tenantDispatches, tenantCompletions, 0);
+    }
+
+    public ServerStats(int attempted, int complete, int failed, int rejected, int deadlinesMet, int deadlinesMissed, Duration executionTime,
+            Map<TaskPriority, Duration> waits, Map<TaskPriority, Integer> dispatched,
+            double cpuShare, double memoryShare, double dominantShare, int packedBatches,
+            Map<String, Duration> tenantWaitTimes, Map<String, Integer> tenantDispatches, Map<String, Integer> tenantCompletions,
+            int preempted){
         // check for null
         Objects.requireNonNull(executionTime);
+        Objects.requireNonNull(waits);
+        Objects.requireNonNull(dispatched);
+        Objects.requireNonNull(tenantWaitTimes);
+        Objects.requireNonNull(tenantDispatches);
+        Objects.requireNonNull(tenantCompletions);
+        queueWaits.putAll(waits);
+        tasksDispatched.putAll(dispatched);
+        tenantWaits.putAll(tenantWaitTimes);
+        tenantDispatched.putAll(tenantDispatches);
+        tenantCompleted.putAll(tenantCompletions);
 
         numTasksAttempted = attempted;
         numTasksComplete = complete;
         numTasksFailed = failed;
+        numTasksRejected = rejected;
+        numDeadlinesMet = deadlinesMet;
+        numDeadlinesMissed = deadlinesMissed;
         totalExecutionTime = executionTime;
+        batchCpuShare = cpuShare;
+        batchMemoryShare = memoryShare;
+        batchPackingEfficiency = dominantShare;
+        numPackedBatches = packedBatches;
+        numTasksPreempted = preempted;
     }
 
     // getter method for tasksAttempted
@@ -36,6 +112,71 @@ public class ServerStats {
         return numTasksFailed;
     }
 
+    // getter method for tasksRejected (turned away because the queue was full)
+    public int getTasksRejected(){
+        return numTasksRejected;
+    }
+
+    // getter method for deadlinesMet (completed tasks with a deadline that finished by it)
+    public int getDeadlinesMet(){
+        return numDeadlinesMet;
+    }
+
+    // getter method for deadlinesMissed (completed tasks with a deadline that finished after it)
+    public int getDeadlinesMissed(){
+        return numDeadlinesMissed;
+    }
+
+    // getter method for the total time tasks of a priority spent queued
+    public Duration getQueueWaitTime(TaskPriority priority){
+        return queueWaits.getOrDefault(priority, Duration.ofMillis(0));
+    }
+
+    // getter method for the number of tasks of a priority taken off the queue
+    public int getTasksDispatched(TaskPriority priority){
+        return tasksDispatched.getOrDefault(priority, 0);
+    }
+
+    // getter method for the total time a tenant's tasks spent queued
+    public Duration getQueueWaitTime(String tenant){
+        return tenantWaits.getOrDefault(tenant, Duration.ofMillis(0));
+    }
+
+    // getter method for the number of a tenant's tasks taken off the queue
+    public int getTasksDispatched(String tenant){
+        return tenantDispatched.getOrDefault(tenant, 0);
+    }
+
+    // getter method for the number of a tenant's tasks that completed
+    public int getTasksCompleted(String tenant){
+        return tenantCompleted.getOrDefault(tenant, 0);
+    }
+
+    // getter method for batchCpuShare (average share of the server's cpu budget set aside by the tasks queued for a batch, 0 if it has no capacity)
+    public double getBatchCpuShare(){
+        return batchCpuShare;
+    }
+
+    // getter method for batchMemoryShare (average share of the server's memory budget set aside by the tasks queued for a batch, 0 if it has no capacity)
+    public double getBatchMemoryShare(){
+        return batchMemoryShare;
+    }
+
+    // getter method for batchPackingEfficiency (average share of the server's most used resource budget set aside by the tasks queued for a batch)
+    public double getBatchPackingEfficiency(){
+        return batchPackingEfficiency;
+    }
+
+    // getter method for packedBatches (batches run with tasks holding resources against the server's capacity)
+    public int getPackedBatches(){
+        return numPackedBatches;
+    }
+
+    // getter method for tasksPreempted (stopped partway to make room for a more urgent task & queued again)
+    public int getTasksPreempted(){
+        return numTasksPreempted;
+    }
+
     // getter method for execution time
     public Duration getExecutionTime(){
         return totalExecutionTime;
@@ -0,0 +1,221 @@
+package taskscheduler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.logging.*;
+
+// keeps serialized tasks outside the java heap in memory-mapped segment files, so huge backlogs don't fill the heap or slow down gc
+// put() returns a handle that get()/take() turn back into the task. a segment file is deleted once every task in it has been taken
+public class SpillStore implements AutoCloseable {
+    // logger
+    private static final Logger LOGGER = Logger.getLogger(SpillStore.class.getName());
+
+    // default size of each segment file
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    // directory the segment files go in
+    private final Path directory;
+
+    // size of each segment file
+    private final int segmentSize;
+
+    // every segment made so far, by number (null once a segment has been deleted)
+    private final List<Segment> segments = new ArrayList<>();
+
+    // the segment new tasks are written to
+    private Segment current = null;
+
+    // number of tasks in the store & bytes they take up
+    private long storedTasks = 0;
+    private long storedBytes = 0;
+
+    // set once close() is called
+    private boolean closed = false;
+
+    // creates a store with the default segment size
+    public SpillStore(Path directoryValue){
+        this(directoryValue, DEFAULT_SEGMENT_SIZE);
+    }
+
+    // creates a store that writes segments of segmentSize bytes into directory
+    public SpillStore(Path directoryValue, int segmentSizeValue){
+        // check for null
+        Objects.requireNonNull(directoryValue);
+
+        // bounds check
+        if(segmentSizeValue < 1024)
+            throw new IllegalArgumentException("segment size must be at least 1024 bytes");
+
+        directory = directoryValue;
+        segmentSize = segmentSizeValue;
+
+        try{
+            Files.createDirectories(directory);
+        }catch(IOException e){
+            throw new SchedulerException(e);
+        }
+    }
+
+    // serializes a task into the store and returns its handle
+    public synchronized long put(Task task){
+        // check for null & closed
+        Objects.requireNonNull(task);
+        if(closed)
+            throw new SchedulerException("spill store is closed");
+
+        // serialize
+        byte[] data = serialize(task);
+        if(data.length + 4 > segmentSize)
+            throw new SchedulerException("task is bigger than a spill segment. id: " + task.getId());
+
+        // start a new segment if the current one is full
+        if(current == null || current.buffer.remaining() < data.length + 4)
+            current = newSegment();
+
+        // write length then data
+        int offset = current.buffer.position();
+        current.buffer.putInt(data.length).put(data);
+        current.live++;
+        storedTasks++;
+        storedBytes += data.length + 4;
+
+        // handle is the segment number and the offset in it
+        return ((long)current.number << 32) | offset;
+    }
+
+    // reads a task back without removing it from the store
+    public synchronized Task get(long handle){
+        Segment segment = segmentFor(handle);
+        int offset = (int)handle;
+
+        // read the length & data
+        byte[] data = new byte[segment.buffer.getInt(offset)];
+        segment.buffer.get(offset + 4, data);
+        return deserialize(data);
+    }
+
+    // reads a task back and removes it from the store
+    public synchronized Task take(long handle){
+        Task task = get(handle);
+        release(handle);
+        return task;
+    }
+
+    // removes a task from the store without reading it
+    public synchronized void release(long handle){
+        Segment segment = segmentFor(handle);
+        segment.live--;
+        storedTasks--;
+        storedBytes -= segment.buffer.getInt((int)handle) + 4;
+
+        // delete full segments that have nothing left in them
+        if(segment.live == 0 && segment != current)
+            deleteSegment(segment);
+    }
+
+    // returns the number of tasks in the store
+    public synchronized long getStoredTaskCount(){
+        return storedTasks;
+    }
+
+    // returns the number of bytes the stored tasks take up
+    public synchronized long getStoredBytes(){
+        return storedBytes;
+    }
+
+    // returns the number of segment files currently on disk
+    public synchronized int getSegmentCount(){
+        return (int)segments.stream().filter(Objects::nonNull).count();
+    }
+
+    // deletes every segment file
+    @Override
+    public synchronized void close(){
+        closed = true;
+        segments.stream().filter(Objects::nonNull).toList().forEach(this::deleteSegment);
+        current = null;
+    }
+
+    // creates & maps a new segment file
+    private Segment newSegment(){
+        // the old current segment may already be empty
+        if(current != null && current.live == 0)
+            deleteSegment(current);
+
+        Segment segment = new Segment();
+        segment.number = segments.size();
+        segment.path = directory.resolve("spill-" + System.identityHashCode(this) + "-" + segment.number + ".seg");
+        try(FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            // the mapping stays valid after the channel is closed
+            segment.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }catch(IOException e){
+            throw new SchedulerException(e);
+        }
+        segments.add(segment);
+        return segment;
+    }
+
+    // deletes a segment's file (the mapping goes away once it's garbage collected)
+    private void deleteSegment(Segment segment){
+        segments.set(segment.number, null);
+        try{
+            Files.deleteIfExists(segment.path);
+        }catch(IOException e){
+            LOGGER.log(Level.WARNING, "could not delete spill segment {0}", segment.path);
+        }
+    }
+
+    // finds the segment a handle points into
+    private Segment segmentFor(long handle){
+        int number = (int)(handle >>> 32);
+        Segment segment = number < segments.size() ? segments.get(number) : null;
+        if(segment == null)
+            throw new SchedulerException("spill handle points to a released segment");
+        return segment;
+    }
+
+    // serializes a task
+    private static byte[] serialize(Task task){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try(ObjectOutputStream out = new ObjectOutputStream(bytes)){
+            out.writeObject(task);
+        }catch(IOException e){
+            throw new SchedulerException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // turns serialized bytes back into a task
+    private static Task deserialize(byte[] data){
+        try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))){
+            return (Task)in.readObject();
+        }catch(IOException | ClassNotFoundException e){
+            throw new SchedulerException(e);
+        }
+    }
+
+    // a mapped segment file
+    private static class Segment {
+        // segment number (the top half of its handles)
+        int number;
+
+        // the file & its mapping
+        Path path;
+        MappedByteBuffer buffer;
+
+        // number of tasks in the segment that haven't been taken
+        int live = 0;
+    }
+}
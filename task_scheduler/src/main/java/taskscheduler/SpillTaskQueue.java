@@ -0,0 +1,89 @@
+package taskscheduler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+// a TaskQueue that only keeps a window of tasks at the front on the heap. the rest are serialized into a SpillStore
+// once any task has spilled, new tasks spill too until the spilled ones have been read back, so order is kept
+public class SpillTaskQueue implements TaskQueue {
+    // where spilled tasks go
+    private final SpillStore store;
+
+    // most tasks kept on the heap
+    private final int hotWindow;
+
+    // tasks at the front of the queue, on the heap
+    private final ArrayDeque<Task> hot = new ArrayDeque<>();
+
+    // handles of the spilled tasks in order (a ring buffer so each spilled task only costs 8 bytes of heap)
+    private long[] handles = new long[1024];
+    private int head = 0;
+    private int spilled = 0;
+
+    // creates a queue that keeps at most hotWindow tasks on the heap
+    public SpillTaskQueue(SpillStore storeValue, int hotWindowValue){
+        // check for null
+        Objects.requireNonNull(storeValue);
+
+        // bounds check
+        if(hotWindowValue < 1)
+            throw new IllegalArgumentException("hot window must hold at least 1 task");
+
+        store = storeValue;
+        hotWindow = hotWindowValue;
+    }
+
+    @Override
+    public synchronized void add(Task task){
+        // stay on the heap if nothing is spilled and there's room
+        if(spilled == 0 && hot.size() < hotWindow){
+            hot.add(task);
+            return;
+        }
+
+        // spill, growing the ring buffer if it's full
+        if(spilled == handles.length){
+            long[] bigger = new long[handles.length * 2];
+            for(int i = 0; i < spilled; i++)
+                bigger[i] = handles[(head + i) % handles.length];
+            handles = bigger;
+            head = 0;
+        }
+        handles[(head + spilled) % handles.length] = store.put(task);
+        spilled++;
+    }
+
+    @Override
+    public synchronized Task poll(){
+        // refill the window from the store once it's empty
+        if(hot.isEmpty()){
+            while(spilled > 0 && hot.size() < hotWindow){
+                hot.add(store.take(handles[head]));
+                head = (head + 1) % handles.length;
+                spilled--;
+            }
+        }
+
+        return hot.poll();
+    }
+
+    @Override
+    public synchronized int size(){
+        return hot.size() + spilled;
+    }
+
+    @Override
+    public synchronized List<Task> toList(){
+        List<Task> tasks = new ArrayList<>(hot);
+        for(int i = 0; i < spilled; i++)
+            tasks.add(store.get(handles[(head + i) % handles.length]));
+        return tasks;
+    }
+
+    // returns the number of tasks that are spilled (not on the heap)
+    public synchronized int getSpilledCount(){
+        return spilled;
+    }
+}
@@ -1,6 +1,7 @@
 package taskscheduler;
 
 import java.io.Serializable;
+import java.time.Instant;
 import java.util.Set;
 import java.util.concurrent.Future;
 
@@ -29,4 +30,63 @@ public interface Task extends Serializable{
 
     // returns a list of all dependencies for the task
     public Set<String> getDependencies();
+
+    // true if running the task more than once has the same effect as running it once
+    // idempotent tasks can get a backup copy started on another server when they run long (see HedgingPolicy)
+    public default boolean isIdempotent(){
+        return false;
+    }
+
+    // the time the task should be done by, or null if it has no deadline
+    // with DispatchOrder.EARLIEST_DEADLINE_FIRST, tasks with the earliest deadlines run first no matter their priority
+    public default Instant getDeadline(){
+        return null;
+    }
+
+    // true if the task can be stopped partway to make room for a more urgent task (see TaskScheduler.setPreemption)
+    // a stopped task isn't counted as failed, it's queued again & runs later
+    public default boolean isPreemptible(){
+        return false;
+    }
+
+    // called when the task is stopped to make room for a more urgent one, so it can checkpoint what it's done (to pick up from
+    // there next time it runs) or roll back to start over. by default it's cleaned up like a cancelled task
+    public default Future<Void> preempt() throws TaskException{
+        return cleanup();
+    }
+
+    // the cpu & memory the task needs, counted against a server's batch budget while it's queued there (see Server.setCapacity)
+    // tasks are only placed on servers with room for them, best fit first
+    public default Resources getResources(){
+        return Resources.NONE;
+    }
+
+    // labels a server must have to run the task (e.g. "gpu"). tasks are only placed on servers with every one (see Server.setLabels)
+    public default Set<String> getRequiredLabels(){
+        return Set.of();
+    }
+
+    // labels the task would rather run on a server with, if one of those servers takes it
+    public default Set<String> getPreferredLabels(){
+        return Set.of();
+    }
+
+    // id of a task whose server this task would rather run on (e.g. the task that wrote the data it reads), or null if it has none
+    // the server that last ran the task (or has it queued) is tried first
+    public default String getAffinity(){
+        return null;
+    }
+
+    // the team or client the task belongs to. with tenant fairness on, tenants get their share of each batch no matter
+    // how many tasks they submit (see TaskScheduler.setTenantFairness)
+    public default String getTenant(){
+        return "default";
+    }
+
+    // key for memoizing the task's result (see ResultCache), or null if the task shouldn't be memoized
+    // tasks with the same key must do the same work (e.g. the id plus a hash of the inputs), since a hit skips running the task
+    // a result is only reused for a task with the same id as the one that stored it, tasks with other ids sharing the key still run
+    public default String getCacheKey(){
+        return null;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package taskscheduler;
+
+// exception a task's handle (from TaskScheduler.scheduleTask) completes with when the scheduler gives up on the task
+public class TaskAbandonedException extends SchedulerException{
+    // the task given up on & why
+    private final transient Task task;
+    private final String reason;
+
+    // constructor
+    public TaskAbandonedException(Task taskValue, String reasonValue){
+        // call super
+        super("task abandoned due to " + reasonValue + ". id: " + taskValue.getId());
+        task = taskValue;
+        reason = reasonValue;
+    }
+
+    // returns the task that was abandoned
+    public Task getTask(){
+        return task;
+    }
+
+    // returns why the task was abandoned (e.g. "too many attempts")
+    public String getReason(){
+        return reason;
+    }
+}
@@ -0,0 +1,162 @@
+package taskscheduler;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+// interns task ids as dense int handles so scheduler bookkeeping can use int arrays & bitsets instead of maps keyed by String
+// handles are reference counted: acquire() adds a reference, release() drops one, and a handle with no references left
+// is recycled for the next new id. lookups use an open addressing table, so there's no per-entry object
+// not thread safe (the scheduler only uses it while holding its lock)
+public class TaskIdRegistry {
+    // returned by find() for ids that aren't interned
+    public static final int NONE = -1;
+
+    // the id for each handle (null for free handles)
+    private String[] ids;
+
+    // number of references to each handle
+    private int[] references;
+
+    // hash table of handles (NONE for empty slots). linear probing, length is always a power of 2
+    private int[] table;
+
+    // free handles waiting to be reused
+    private int[] freeHandles;
+    private int freeCount = 0;
+
+    // handles below this have been given out at least once
+    private int highestHandle = 0;
+
+    // number of ids interned
+    private int size = 0;
+
+    // creates an empty registry
+    public TaskIdRegistry(){
+        this(16);
+    }
+
+    // creates an empty registry sized for about capacity ids
+    public TaskIdRegistry(int capacity){
+        // bounds check
+        if(capacity < 1)
+            throw new IllegalArgumentException("capacity must be at least 1");
+
+        ids = new String[capacity];
+        references = new int[capacity];
+        freeHandles = new int[0];
+        table = new int[tableSizeFor(capacity)];
+        Arrays.fill(table, NONE);
+    }
+
+    // returns the handle for id, interning it if it's new, and adds a reference to it
+    public int acquire(String id){
+        // check for null
+        Objects.requireNonNull(id);
+
+        // existing id
+        int slot = slotOf(id);
+        if(table[slot] != NONE){
+            references[table[slot]]++;
+            return table[slot];
+        }
+
+        // new id, reuse a free handle if there is one
+        int handle = freeCount > 0 ? freeHandles[--freeCount] : highestHandle++;
+        if(handle >= ids.length){
+            ids = Arrays.copyOf(ids, ids.length * 2);
+            references = Arrays.copyOf(references, ids.length);
+        }
+        ids[handle] = id;
+        references[handle] = 1;
+        table[slot] = handle;
+        size++;
+
+        // keep the table at most half full
+        if(size * 2 > table.length)
+            rehash(table.length * 2);
+        return handle;
+    }
+
+    // returns the handle for id without adding a reference (NONE if it isn't interned)
+    public int find(String id){
+        return id == null ? NONE : table[slotOf(id)];
+    }
+
+    // drops a reference to handle, freeing it (and forgetting its id) when no references are left
+    public void release(int handle){
+        // bounds check
+        if(handle < 0 || handle >= highestHandle || ids[handle] == null)
+            throw new IllegalArgumentException("handle isn't in use: " + handle);
+
+        if(--references[handle] > 0)
+            return;
+
+        // take it out of the table & put it on the free list
+        removeSlot(slotOf(ids[handle]));
+        ids[handle] = null;
+        size--;
+        if(freeCount == freeHandles.length)
+            freeHandles = Arrays.copyOf(freeHandles, Math.max(16, freeCount * 2));
+        freeHandles[freeCount++] = handle;
+    }
+
+    // returns the id a handle stands for (null if the handle is free)
+    public String idOf(int handle){
+        return handle >= 0 && handle < highestHandle ? ids[handle] : null;
+    }
+
+    // returns the number of ids interned
+    public int size(){
+        return size;
+    }
+
+    // returns one more than the highest handle given out so far (arrays indexed by handle need to be at least this long)
+    public int handleLimit(){
+        return highestHandle;
+    }
+
+    // returns the slot holding id, or the empty slot it would go in
+    private int slotOf(String id){
+        int mask = table.length - 1;
+        int slot = mix(id.hashCode()) & mask;
+        while(table[slot] != NONE && !ids[table[slot]].equals(id))
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    // empties a slot, shifting later entries in the probe sequence back so lookups don't stop early
+    private void removeSlot(int slot){
+        int mask = table.length - 1;
+        int next = (slot + 1) & mask;
+        while(table[next] != NONE){
+            // move the entry back if the empty slot is between its home slot & where it is now
+            int home = mix(ids[table[next]].hashCode()) & mask;
+            if(((next - home) & mask) >= ((next - slot) & mask)){
+                table[slot] = table[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[slot] = NONE;
+    }
+
+    // rebuilds the table with a new length
+    private void rehash(int length){
+        table = new int[length];
+        Arrays.fill(table, NONE);
+        for(int handle = 0; handle < highestHandle; handle++)
+            if(ids[handle] != null)
+                table[slotOf(ids[handle])] = handle;
+    }
+
+    // spreads the hash bits so ids with similar hashes don't cluster
+    private static int mix(int hash){
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    // smallest power of 2 that holds capacity entries at most half full
+    private static int tableSizeFor(int capacity){
+        return Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+    }
+}
@@ -0,0 +1,494 @@
+package taskscheduler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.logging.*;
+
+// an append-only, memory-mapped journal of what happened to each task (submitted, placed, completed, failed, abandoned)
+// the file is mapped one region at a time. records are copied into the mapping and a background thread forces them to disk,
+// so many records (and many commit() callers) share one disk sync (group commit)
+// after a crash, recover() reads the journal back and returns the tasks that still need to run
+public class TaskJournal implements AutoCloseable {
+    // logger
+    private static final Logger LOGGER = Logger.getLogger(TaskJournal.class.getName());
+
+    // file header: magic number, format version & region size
+    private static final int MAGIC = 0x54534a4c;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+
+    // record layout: length (4 bytes, covers type + data), type (1 byte), data, crc32 of type + data (4 bytes)
+    private static final int RECORD_OVERHEAD = 9;
+    // written in place of a length when the rest of a region is unused (the next record starts at the next region)
+    private static final int END_OF_REGION = -1;
+
+    // default size of each mapped region
+    public static final int DEFAULT_REGION_SIZE = 64 * 1024 * 1024;
+
+    // record types
+    static final byte SUBMITTED = 1;
+    static final byte PLACED = 2;
+    static final byte COMPLETED = 3;
+    static final byte FAILED = 4;
+    static final byte ABANDONED = 5;
+
+    // the journal file
+    private final Path path;
+    private final FileChannel channel;
+
+    // size of each mapped region
+    private final int regionSize;
+
+    // the region currently being written & where it starts in the file
+    private MappedByteBuffer region;
+    private long regionStart;
+
+    // file position of the end of the last record written
+    private long writePosition;
+
+    // group commit state: how far the file has been forced to disk & how far callers are waiting for
+    private final Object flushLock = new Object();
+    private long flushedPosition;
+    private long requestedPosition;
+
+    // background thread that forces records to disk
+    private final Thread flusher;
+    // the flusher syncs at least this often even if nobody is waiting
+    private final long flushIntervalMillis;
+
+    // set once close() is called
+    private volatile boolean closed = false;
+
+    // opens (or creates) a journal using the default region size, syncing at least every 10ms
+    public TaskJournal(Path file){
+        this(file, DEFAULT_REGION_SIZE, Duration.ofMillis(10));
+    }
+
+    // opens (or creates) a journal. new records go after the last valid record already in the file
+    public TaskJournal(Path file, int regionSizeValue, Duration flushInterval){
+        // check for null
+        Objects.requireNonNull(file);
+        Objects.requireNonNull(flushInterval);
+
+        // bounds check
+        if(regionSizeValue < 1024)
+            throw new IllegalArgumentException("region size must be at least 1024 bytes");
+
+        path = file;
+        flushIntervalMillis = Math.max(1, flushInterval.toMillis());
+
+        try{
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            // new file, write the header. existing file, use the region size it was written with
+            if(channel.size() == 0){
+                regionSize = regionSizeValue;
+                mapRegion(0);
+                region.putInt(MAGIC).putInt(VERSION).putInt(regionSize);
+                writePosition = HEADER_SIZE;
+            }else{
+                regionSize = readHeader(channel);
+                writePosition = scan(channel, regionSize, HEADER_SIZE, null);
+                mapRegion(writePosition - writePosition % regionSize);
+                region.position((int)(writePosition - regionStart));
+            }
+        }catch(IOException e){
+            throw new SchedulerException(e);
+        }
+
+        // everything up to here is already on disk (or is the new header, which gets forced with the first commit)
+        flushedPosition = 0;
+        requestedPosition = 0;
+
+        // start the flusher
+        flusher = new Thread(this::flushLoop, "task-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // records that a task was given to the scheduler (the whole task is stored so it can be rebuilt)
+    // the id goes first so recovery can track the task without deserializing it
+    public void submitted(Task task){
+        byte[] id = task.getId().getBytes(StandardCharsets.UTF_8);
+        byte[] serialized = serialize(task);
+        byte[] data = new byte[4 + id.length + serialized.length];
+        putInt(data, id.length);
+        System.arraycopy(id, 0, data, 4, id.length);
+        System.arraycopy(serialized, 0, data, 4 + id.length, serialized.length);
+        append(SUBMITTED, data);
+    }
+
+    // records that a task was queued to a server
+    public void placed(String taskId){
+        append(PLACED, taskId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // records that a task completed (it's skipped on recovery)
+    public void completed(String taskId){
+        append(COMPLETED, taskId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // records that a task failed for the attemptNum-th time
+    public void failed(String taskId, int attemptNum){
+        byte[] id = taskId.getBytes(StandardCharsets.UTF_8);
+        byte[] data = new byte[id.length + 4];
+        putInt(data, attemptNum);
+        System.arraycopy(id, 0, data, 4, id.length);
+        append(FAILED, data);
+    }
+
+    // records that the scheduler gave up on a task (it's not run again on recovery)
+    public void abandoned(String taskId){
+        append(ABANDONED, taskId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // waits until every record written so far is on disk
+    // callers that commit at the same time share a single sync
+    public void commit(){
+        long target;
+        synchronized(this){
+            target = writePosition;
+        }
+
+        synchronized(flushLock){
+            // ask the flusher to sync up to target & wait for it
+            requestedPosition = Math.max(requestedPosition, target);
+            flushLock.notifyAll();
+            while(flushedPosition < target){
+                if(closed)
+                    throw new SchedulerException("journal closed before commit finished");
+                try{
+                    flushLock.wait();
+                }catch(InterruptedException e){
+                    Thread.currentThread().interrupt();
+                    throw new SchedulerException("interrupted while committing journal");
+                }
+            }
+        }
+    }
+
+    // reads the journal and returns the work that hadn't finished when it was written
+    public Recovery recover(){
+        return recover(HEADER_SIZE);
+    }
+
+    // reads the records after fromPosition (a position from size(), e.g. when a snapshot was taken) and returns what they changed
+    public Recovery recover(long fromPosition){
+        // make sure records written through the mapping are visible to the reader
+        commit();
+
+        Recovery recovery = new Recovery();
+        try{
+            scan(channel, regionSize, Math.max(HEADER_SIZE, fromPosition), recovery);
+        }catch(IOException e){
+            throw new SchedulerException(e);
+        }
+        return recovery;
+    }
+
+    // returns the journal file
+    public Path getPath(){
+        return path;
+    }
+
+    // returns the number of bytes of records in the journal (including the header)
+    public synchronized long size(){
+        return writePosition;
+    }
+
+    // syncs everything and closes the file
+    @Override
+    public void close(){
+        if(closed)
+            return;
+
+        // sync what's left
+        commit();
+
+        // stop the flusher
+        closed = true;
+        synchronized(flushLock){
+            flushLock.notifyAll();
+        }
+        try{
+            flusher.join();
+            channel.close();
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }catch(IOException e){
+            throw new SchedulerException(e);
+        }
+    }
+
+    // copies a record into the mapped region (moving to a new region if it doesn't fit)
+    private synchronized void append(byte type, byte[] data){
+        if(closed)
+            throw new SchedulerException("journal is closed");
+
+        // check the record fits in a region at all
+        int length = data.length + 1;
+        if(length + RECORD_OVERHEAD - 1 > regionSize - HEADER_SIZE)
+            throw new SchedulerException("journal record is bigger than a region: " + length + " bytes");
+
+        try{
+            // move to the next region if this one is too full
+            if(region.remaining() < length + RECORD_OVERHEAD - 1){
+                // mark the rest of the region as unused (if there's room for the marker)
+                if(region.remaining() >= 4)
+                    region.putInt(END_OF_REGION);
+                // the old region won't be forced by the flusher anymore, so force it now
+                region.force();
+                mapRegion(regionStart + regionSize);
+                writePosition = regionStart;
+            }
+        }catch(IOException e){
+            throw new SchedulerException(e);
+        }
+
+        // write the record
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(data);
+        region.putInt(length).put(type).put(data).putInt((int)crc.getValue());
+        writePosition = regionStart + region.position();
+    }
+
+    // maps the region starting at start for writing
+    private void mapRegion(long start) throws IOException{
+        region = channel.map(FileChannel.MapMode.READ_WRITE, start, regionSize);
+        regionStart = start;
+    }
+
+    // forces records to disk whenever a commit is waiting (and at least every flushInterval)
+    private void flushLoop(){
+        while(true){
+            // wait for a commit or the flush interval
+            synchronized(flushLock){
+                try{
+                    if(!closed && requestedPosition <= flushedPosition)
+                        flushLock.wait(flushIntervalMillis);
+                }catch(InterruptedException e){
+                    return;
+                }
+            }
+
+            // take the current end of the journal, everything before it is forced together
+            long position;
+            MappedByteBuffer toForce;
+            synchronized(this){
+                position = writePosition;
+                toForce = region;
+            }
+            if(position > flushedPosition)
+                toForce.force();
+
+            // wake up the commits that are covered
+            synchronized(flushLock){
+                flushedPosition = Math.max(flushedPosition, position);
+                flushLock.notifyAll();
+                if(closed)
+                    return;
+            }
+        }
+    }
+
+    // reads the header of an existing journal and returns its region size
+    private static int readHeader(FileChannel channel) throws IOException{
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        if(header.getInt() != MAGIC)
+            throw new SchedulerException("not a task journal");
+        int version = header.getInt();
+        if(version != VERSION)
+            throw new SchedulerException("unsupported journal version: " + version);
+        return header.getInt();
+    }
+
+    // reads every valid record from position on, giving them to recovery (if not null), and returns the position after the last valid record
+    // reading stops at the first empty or corrupt record (a record that was half written when the process died)
+    private static long scan(FileChannel channel, int regionSize, long position, Recovery recovery) throws IOException{
+        long fileSize = channel.size();
+
+        while(position < fileSize){
+            // map the region holding position
+            long start = position - position % regionSize;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(regionSize, fileSize - start));
+            buffer.position((int)(position - start));
+
+            // read records until the region or the journal ends
+            while(true){
+                // no room for another record, go to the next region
+                if(buffer.remaining() < RECORD_OVERHEAD){
+                    position = start + regionSize;
+                    break;
+                }
+
+                int length = buffer.getInt();
+                // the rest of the region is unused
+                if(length == END_OF_REGION){
+                    position = start + regionSize;
+                    break;
+                }
+                // end of the journal (or a torn length)
+                if(length <= 0 || length + 4 > buffer.remaining())
+                    return position;
+
+                // read the record and check it wasn't torn
+                byte type = buffer.get();
+                byte[] data = new byte[length - 1];
+                buffer.get(data);
+                CRC32 crc = new CRC32();
+                crc.update(type);
+                crc.update(data);
+                if(buffer.getInt() != (int)crc.getValue()){
+                    LOGGER.warning("journal record failed its checksum, ignoring the rest of the journal");
+                    return position;
+                }
+
+                // apply the record
+                if(recovery != null)
+                    recovery.apply(type, data);
+                position = start + buffer.position();
+            }
+        }
+
+        return Math.min(position, fileSize);
+    }
+
+    // writes an int into the first 4 bytes of data
+    private static void putInt(byte[] data, int value){
+        data[0] = (byte)(value >>> 24);
+        data[1] = (byte)(value >>> 16);
+        data[2] = (byte)(value >>> 8);
+        data[3] = (byte)value;
+    }
+
+    // reads an int from the first 4 bytes of data
+    private static int getInt(byte[] data){
+        return ((data[0] & 0xff) << 24) | ((data[1] & 0xff) << 16) | ((data[2] & 0xff) << 8) | (data[3] & 0xff);
+    }
+
+    // serializes a task for a SUBMITTED record
+    private static byte[] serialize(Task task){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(ObjectOutputStream out = new ObjectOutputStream(bytes)){
+            out.writeObject(task);
+        }catch(IOException e){
+            throw new SchedulerException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // the state rebuilt from a journal
+    public static class Recovery {
+        // serialized tasks that were submitted but haven't completed or been abandoned, in submission order
+        // (kept as bytes while reading so finished tasks are never deserialized)
+        private final Map<String, byte[]> pending = new LinkedHashMap<>();
+
+        // attempt counts of tasks that failed at least once
+        private final Map<String, Integer> attempts = new HashMap<>();
+
+        // ids of completed tasks
+        private final Set<String> completedIds = new HashSet<>();
+
+        // ids of abandoned tasks
+        private final Set<String> abandonedIds = new HashSet<>();
+
+        // ids of tasks that were placed on a server and haven't finished
+        private final Set<String> placed = new HashSet<>();
+
+        // number of records read
+        private long recordsRead = 0;
+
+        // updates the state with one record
+        void apply(byte type, byte[] data){
+            recordsRead++;
+            switch(type){
+                case SUBMITTED -> {
+                    int idLength = getInt(data);
+                    String id = new String(data, 4, idLength, StandardCharsets.UTF_8);
+                    // records are read in order, so submissions before the id completed were already taken out by its COMPLETED record
+                    // & this one is a new run of it (the next run of a recurring task, or a rerun)
+                    pending.put(id, Arrays.copyOfRange(data, 4 + idLength, data.length));
+                }
+                case PLACED -> placed.add(new String(data, StandardCharsets.UTF_8));
+                case COMPLETED -> {
+                    String id = new String(data, StandardCharsets.UTF_8);
+                    completedIds.add(id);
+                    pending.remove(id);
+                    placed.remove(id);
+                    attempts.remove(id);
+                }
+                case FAILED -> {
+                    attempts.put(new String(data, 4, data.length - 4, StandardCharsets.UTF_8), getInt(data));
+                }
+                case ABANDONED -> {
+                    String id = new String(data, StandardCharsets.UTF_8);
+                    abandonedIds.add(id);
+                    pending.remove(id);
+                    placed.remove(id);
+                    attempts.remove(id);
+                }
+                default -> LOGGER.warning("unknown journal record type: " + type);
+            }
+        }
+
+        // returns the tasks that still need to run, in the order they were submitted
+        public List<Task> getPendingTasks(){
+            List<Task> tasks = new ArrayList<>(pending.size());
+            pending.values().stream().forEach(data -> tasks.add(deserialize(data)));
+            return tasks;
+        }
+
+        // returns the attempt counts of pending tasks that have failed before
+        public Map<String, Integer> getAttempts(){
+            return new HashMap<>(attempts);
+        }
+
+        // returns the ids of tasks that completed
+        public Set<String> getCompletedIds(){
+            return new HashSet<>(completedIds);
+        }
+
+        // returns the ids of tasks that were abandoned
+        public Set<String> getAbandonedIds(){
+            return new HashSet<>(abandonedIds);
+        }
+
+        // returns the number of pending tasks that had been placed on a server
+        public int getPlacedCount(){
+            return (int)placed.stream().filter(pending::containsKey).count();
+        }
+
+        // returns the number of records read from the journal
+        public long getRecordsRead(){
+            return recordsRead;
+        }
+
+        // turns a SUBMITTED record back into a task
+        private static Task deserialize(byte[] data){
+            try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))){
+                return (Task)in.readObject();
+            }catch(IOException | ClassNotFoundException e){
+                throw new SchedulerException(e);
+            }
+        }
+    }
+}
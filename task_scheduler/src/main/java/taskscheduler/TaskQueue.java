@@ -0,0 +1,18 @@
+package taskscheduler;
+
+import java.util.List;
+
+// a first in, first out queue of tasks waiting on a server (Server keeps one per priority)
+public interface TaskQueue {
+    // adds a task to the back of the queue
+    public void add(Task task);
+
+    // removes & returns the task at the front of the queue (null if it's empty)
+    public Task poll();
+
+    // returns the number of tasks in the queue
+    public int size();
+
+    // returns every task in the queue in order, without removing them
+    public List<Task> toList();
+}
@@ -1,12 +1,33 @@
 package taskscheduler;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntPredicate;
 import java.util.stream.Collectors;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.time.LocalTime;
 import java.util.logging.*;
 
@@ -19,23 +40,140 @@ public class TaskScheduler {
 
     // maps each priority to a priorityQueue containing ServerWait objects
     private Map<TaskPriority, PriorityQueue<ServerWait>> waitTimes = new EnumMap<>(TaskPriority.class);
+    // expected wait for tasks with deadlines on each server (only used with DispatchOrder.EARLIEST_DEADLINE_FIRST, where they run ahead of every priority)
+    private PriorityQueue<ServerWait> deadlineWaits = new PriorityQueue<>();
+    // the order servers take tasks off their queues in
+    private DispatchOrder dispatchOrder = DispatchOrder.PRIORITY;
+    // how long a task waits before it counts as one priority higher on its server (null means no aging)
+    private Duration agingInterval = null;
+    // weights of the priorities that were changed for WEIGHTED_FAIR order
+    private final Map<TaskPriority, Integer> priorityWeights = new EnumMap<>(TaskPriority.class);
+
+    // the servers currently in the scheduler (replaced, never modified, so it can be read without holding the lock)
+    private volatile List<Server> servers = new ArrayList<>();
+    // each server's entries in waitTimes & deadlineWaits, so a server found by label or affinity can be placed on without polling the rest
+    private final Map<Server, Map<TaskPriority, ServerWait>> priorityEntries = new IdentityHashMap<>();
+    private final Map<Server, ServerWait> deadlineEntries = new IdentityHashMap<>();
+    // the servers with each label, in the order they joined
+    private final Map<String, Set<Server>> labelIndex = new HashMap<>();
+    // the server each recently completed task ran on, by id (for tasks with an affinity to it). only the latest AFFINITY_MEMORY are kept
+    private static final int AFFINITY_MEMORY = 10_000;
+    private final Map<String, Server> lastRanOn = new LinkedHashMap<>(16, 0.75f, true){
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Server> eldest){
+            return size() > AFFINITY_MEMORY;
+        }
+    };
+
+    // maps each server that was added to the server the scheduler actually uses (a copy unless DEBUG is on)
+    private final Map<Server, Server> members = new IdentityHashMap<>();
+    // servers waiting to join or leave. applied between batches so the server set can change during executeAll
+    private final ConcurrentLinkedQueue<MembershipChange> membershipChanges = new ConcurrentLinkedQueue<>();
+    // ids of the tasks that have been queued to each server but not executed yet (used to re-place tasks when a server leaves)
+    // only ids are kept so a queued backlog can spill off the heap, the tasks are read back from the server when they're needed
+    private Map<Server, List<String>> placements = new IdentityHashMap<>();
+    // tasks from the last batch that a server neither completed nor failed (a remote node went away mid batch)
+    private Map<Server, List<Task>> lostTasks = new IdentityHashMap<>();
+    // failed tasks reported by each server in the last batch
+    private Map<Server, List<Task>> failedBatch = new IdentityHashMap<>();
+
+    // every task that is pending or running, by id (submissions of an id that's already here attach to it instead of running again)
+    // concurrent so duplicate submissions & cancellations are handled without taking the scheduler lock
+    // kept small since there's one per queued task, even when the tasks themselves are spilled (see Submission)
+    private final ConcurrentHashMap<String, Submission> inFlight = new ConcurrentHashMap<>();
+    // number of submissions that were attached to a task already in flight
+    private final AtomicLong coalescedSubmissions = new AtomicLong();
+    // true if tasks that other tasks wait on take the priority of the most urgent task waiting on them
+    private boolean priorityInheritance = false;
+    // priorities inherited by ids that haven't been submitted yet (they take it when they are, forgotten at the end of executeAll)
+    private final Map<String, TaskPriority> pendingInheritance = new HashMap<>();
+    // true if HIGH tasks submitted while a batch is running stop preemptible lower priority work to run right away
+    // volatile since it's read without the lock (executeAll holds it for the whole batch)
+    private volatile boolean preemption = false;
+    // ids of the HIGH tasks handed straight to each server by preempt (added to the placements of the batch they ran in)
+    private final Map<Server, List<String>> handedOver = new IdentityHashMap<>();
+    // number of batches started, so the scheduler can tell if a task it placed is still queued (placed since the last batch started)
+    private long batchNumber = 0;
+    // ids of cancelled tasks whose dependent tasks should be cancelled too (done between batches, since it needs the lock)
+    private final ConcurrentLinkedQueue<String> cascadingCancels = new ConcurrentLinkedQueue<>();
+
+    // tasks that were ready to run while every server's queue was full. queued again after the next batch drains the servers
+    private List<Task> deferredTasks = new ArrayList<>();
 
     // holds on to tasks with dependencies until those dependencies have been completed
     private List<Dependency> dependencies = new ArrayList<>();
+    // where tasks waiting on dependencies are kept off the heap (null keeps them on the heap)
+    private SpillStore spillStore = null;
+
+    // tasks pulled lazily while executeAll runs (null means only tasks given to scheduleTask run)
+    private TaskSource taskSource = null;
+    // most tasks from the source that can be in the scheduler at once (queued, deferred, waiting to retry or waiting on dependencies)
+    private int sourceWindow = 0;
 
     // policy dictating how many retries each task gets & how the time scales
     private RetryPolicy retryPolicy;
     // priority queue keeping track of tasks to retry & when they can be retried
     private PriorityQueue<Retry> retryQueue = new PriorityQueue<>();
-    // hashmap connecting a Task id with the amount of times it has been retried
-    private Map<String, Integer> taskAttempts = new HashMap<>();
+    // interns task ids as int handles for the attempt counts, completed ids & dependency bookkeeping
+    private final TaskIdRegistry taskIds = new TaskIdRegistry();
+    // the number of times each task has failed, indexed by handle (0 for tasks that haven't, the handle is held while it's above 0)
+    private int[] taskAttempts = new int[16];
+    // hashmap connecting a Task id with the servers it has failed on (retries avoid these servers when there's another option)
+    private Map<String, Set<Server>> failedOn = new HashMap<>();
+
+    // where executeAll reports results while it runs (null outside of executeAll)
+    private ResultSink resultSink = null;
+
+    // delayed & recurring tasks waiting for their time (fired by executeAll, which doesn't wait for them)
+    // the current timer of each recurring task by id (a timer that isn't current anymore is ignored when it fires)
+    // the timer of each delayed task by id & the ones taken out by cancel (their tasks are dropped by the next executeAll)
+    // the wheel is synchronized on by itself so cancel can take timers out without the scheduler lock
+    private final TimerWheel<DelayedTask> timers = new TimerWheel<>(System.currentTimeMillis(), 1, 256);
+    private final ConcurrentHashMap<String, DelayedTask> recurring = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, DelayedTask> delayed = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<DelayedTask> cancelledTimers = new ConcurrentLinkedQueue<>();
 
     // flag true whenever there is a task scheduled to a server that hasn't been executed yet
     private boolean tasksQueued = false;
 
+    // with tenant fairness on, tasks wait here by tenant (in the order tenants showed up) until the next batch starts
+    // each tenant's share (1 if it isn't set) & the most tasks it can have in one batch (no limit if it isn't set)
+    private volatile boolean tenantFairness = false;
+    private final Map<String, ArrayDeque<Task>> tenantQueues = new LinkedHashMap<>();
+    private int heldTasks = 0;
+    private final Map<String, Integer> tenantShares = new HashMap<>();
+    private final Map<String, Integer> tenantLimits = new HashMap<>();
+
     // used to track statistics about the server
     private PerformanceMonitor performanceMonitor;
 
+    // limits retries to a share of recent dispatches (null means no limit)
+    private RetryBudget retryBudget = null;
+
+    // starts backup copies of long running idempotent tasks on other servers (null means no hedging)
+    private HedgingPolicy hedgingPolicy = null;
+
+    // memoizes completed tasks for every server (null means no memoization)
+    private ResultCache resultCache = null;
+
+    // records what happens to each task so pending work survives a crash (null means no journal)
+    private volatile TaskJournal journal = null;
+    // ids of completed tasks, from earlier runs too (dependent tasks submitted later see them as done)
+    // only kept once a journal, snapshots, a task source or setCompletedRetention need them, & at most DEFAULT_COMPLETED_CAPACITY unless that's changed
+    private static final int DEFAULT_COMPLETED_CAPACITY = 100_000;
+    private final CompletedTaskRegistry completedIds = new CompletedTaskRegistry(taskIds, DEFAULT_COMPLETED_CAPACITY);
+    private boolean rememberCompleted = false;
+    // true once a journal or snapshot is in use, so tasks in completedIds are skipped if scheduled again
+    // volatile since preempt reads it without the lock
+    private volatile boolean skipCompleted = false;
+
+    // file that executeAll periodically snapshots the scheduler to (null means no periodic snapshots) & how often
+    private Path snapshotFile = null;
+    private long snapshotIntervalNanos = 0;
+    private long lastSnapshot = 0;
+    // writes snapshots in the background so the scheduler only pauses to copy its state
+    private ExecutorService snapshotWriter = null;
+
     // constructor for when you want to specify a custom retry policy
     public TaskScheduler(RetryPolicy policy){
         // check for null value
@@ -59,23 +197,322 @@ public class TaskScheduler {
     }
 
     // adds a server to the list of servers (assumes server has no elements currently in taskQueue for scheduling purposes)
-    public synchronized void addServer(Server server){
+    // can be called at any time, including while executeAll is running (the server joins before the next batch)
+    public void addServer(Server server){
         // check for null
         if(server == null)
             throw new NullPointerException("cannot add null to server list");
 
-        // log server addition
-        LOGGER.info("server added to taskScheduler");
+        // queue the join (doesn't need the scheduler lock, so a running executeAll doesn't block the caller)
+        membershipChanges.add(new MembershipChange(server, true));
+    }
 
-        // defensively copy server if DEBUG is false (want to allow mocks through while debugging)
-        Server copy = DEBUG ? server : new Server(server);
+    // removes a server from the scheduler. any tasks queued to it that haven't run yet get placed on other servers
+    // can be called at any time, including while executeAll is running (the server leaves before the next batch)
+    public void removeServer(Server server){
+        // check for null
+        if(server == null)
+            throw new NullPointerException("cannot remove null from server list");
 
-        // for each TaskPriority, add a new ServerWait entry to the waitTimes
-        waitTimes.forEach((priority, serverList) -> serverList.add(new ServerWait(Duration.ofMillis(0), copy)));
+        // queue the leave
+        membershipChanges.add(new MembershipChange(server, false));
+    }
+
+    // returns the servers currently in the scheduler (if executeAll is running on another thread this waits for it)
+    public List<Server> getServers(){
+        // apply any joins or leaves that are waiting
+        applyMembershipChanges();
+
+        // return a copy so callers can't modify the server list
+        return new ArrayList<>(servers);
+    }
+
+    // limits retries to a share of recent dispatches (null removes the limit)
+    public synchronized void setRetryBudget(RetryBudget budget){
+        retryBudget = budget;
+    }
+
+    // turns on hedging of straggling idempotent tasks for every server (null turns it off)
+    public synchronized void setHedgingPolicy(HedgingPolicy policy){
+        // apply joins first so every server gets the policy
+        applyMembershipChanges();
+
+        // save the policy & give it to the servers
+        hedgingPolicy = policy;
+        servers.stream().forEach(s -> s.setHedgingPolicy(policy));
+        if(policy != null)
+            policy.setServers(servers);
+    }
+
+    // sets the order every server takes tasks off its queue in (see DispatchOrder)
+    // with EARLIEST_DEADLINE_FIRST, tasks with deadlines are placed on the server with the least deadline work queued
+    // can only be changed while no tasks are queued on the servers. remote servers run tasks in their node's order
+    public synchronized void setDispatchOrder(DispatchOrder order){
+        // check for null
+        if(order == null)
+            throw new NullPointerException("dispatch order cannot be null");
+
+        // apply joins first so every server gets the order
+        applyMembershipChanges();
+
+        servers.stream().forEach(s -> s.setDispatchOrder(order));
+        dispatchOrder = order;
+    }
+
+    // makes tasks waiting on every server count as one priority higher for each interval they've waited (null turns aging off)
+    // used with PRIORITY & EARLIEST_DEADLINE_FIRST order, so a steady stream of HIGH tasks can't starve the rest
+    public synchronized void setPriorityAging(Duration interval){
+        // bounds check
+        if(interval != null && interval.toMillis() < 0)
+            throw new IllegalArgumentException("aging interval cannot be negative");
+
+        // apply joins first so every server gets the interval
+        applyMembershipChanges();
+
+        agingInterval = interval;
+        servers.stream().forEach(s -> s.setPriorityAging(interval));
+    }
+
+    // sets the share of run time a priority gets on every server with WEIGHTED_FAIR order (see Server.setPriorityWeight)
+    public synchronized void setPriorityWeight(TaskPriority priority, int weight){
+        // check for null & bounds
+        if(priority == null)
+            throw new NullPointerException("priority cannot be null");
+        if(weight < 1)
+            throw new IllegalArgumentException("priority weight must be at least 1");
+
+        // apply joins first so every server gets the weight
+        applyMembershipChanges();
+
+        priorityWeights.put(priority, weight);
+        servers.stream().forEach(s -> s.setPriorityWeight(priority, weight));
+    }
+
+    // turns tenant fair share on or off. with it on, tasks wait in the scheduler by tenant until the next batch starts, then tenants
+    // take turns placing them so each gets its share of the batch no matter how many tasks it submitted (see dispatchTenantTasks)
+    // tasks already waiting when it's turned off are still placed at the start of the next batch
+    public synchronized void setTenantFairness(boolean fair){
+        tenantFairness = fair;
+        warnIfPreemptionBlocked();
+    }
+
+    // sets a tenant's share of each batch with tenant fairness on (1 by default, a tenant with share 2 gets twice as much as one with 1)
+    public synchronized void setTenantShare(String tenant, int share){
+        // check for null & bounds
+        if(tenant == null)
+            throw new NullPointerException("tenant cannot be null");
+        if(share < 1)
+            throw new IllegalArgumentException("tenant share must be at least 1");
+
+        tenantShares.put(tenant, share);
+    }
+
+    // caps the number of a tenant's tasks on the servers at once (placed in one batch) with tenant fairness on
+    // the rest wait for a later batch. Integer.MAX_VALUE (the default) means no cap
+    public synchronized void setTenantLimit(String tenant, int limit){
+        // check for null & bounds
+        if(tenant == null)
+            throw new NullPointerException("tenant cannot be null");
+        if(limit < 1)
+            throw new IllegalArgumentException("tenant limit must be at least 1");
+
+        tenantLimits.put(tenant, limit);
+    }
+
+    // memoizes completed tasks that have a cache key in cache, shared by every server (null turns it off)
+    // remote servers run tasks on their node, so the node's Server needs its own cache
+    public synchronized void setResultCache(ResultCache cache){
+        // apply joins first so every server gets the cache
+        applyMembershipChanges();
+
+        resultCache = cache;
+        servers.stream().forEach(s -> s.setResultCache(cache));
+    }
+
+    // starts journaling to the given journal, first re-scheduling the work it says hadn't finished (null turns journaling off)
+    // servers should be added before this is called so the recovered tasks have somewhere to go
+    public synchronized void setJournal(TaskJournal taskJournal){
+        journal = taskJournal;
+        if(journal == null)
+            return;
+        skipCompleted = true;
+        rememberCompleted = true;
+        warnIfPreemptionBlocked();
+
+        // rebuild the state from the whole journal
+        recover(journal.recover());
+    }
+
+    // restores the pending work from a snapshot, then replays only the journal records written after the snapshot (journal can be null)
+    // servers should be added before this is called so the restored tasks have somewhere to go
+    public synchronized void restore(Path snapshot, TaskJournal taskJournal){
+        // check for null
+        if(snapshot == null)
+            throw new NullPointerException("snapshot file cannot be null");
+
+        // read the snapshot & the journal tail
+        SchedulerSnapshot snap = SchedulerSnapshot.read(snapshot);
+        TaskJournal.Recovery tail = taskJournal == null ? null : taskJournal.recover(snap.getJournalPosition());
+        journal = taskJournal;
+        skipCompleted = true;
+        rememberCompleted = true;
+        warnIfPreemptionBlocked();
+
+        // tasks the tail finished don't need to run again
+        Set<String> finished = new HashSet<>();
+        if(tail != null){
+            finished.addAll(tail.getCompletedIds());
+            finished.addAll(tail.getAbandonedIds());
+        }
+
+        // restore the completed ids & attempt counts (the tail is newer than the snapshot)
+        completedIds.clear();
+        snap.completedIds.stream().forEach(completedIds::add);
+        snap.attempts.forEach(this::setAttempts);
+        finished.stream().forEach(id -> setAttempts(id, 0));
+
+        // re-place the queued tasks (the servers may not be the same ones, so they go through normal placement)
+        snap.queuedTasks.stream().flatMap(List::stream).filter(t -> !finished.contains(t.getId())).forEach(t -> {
+            track(t);
+            queueOrDefer(t);
+        });
+
+        // restart the retry timers with the time they had left
+        for(int i = 0; i < snap.retryTasks.size(); i++)
+            if(!finished.contains(snap.retryTasks.get(i).getId())){
+                track(snap.retryTasks.get(i));
+                retryQueue.add(new Retry(snap.retryTasks.get(i), Duration.ofMillis(snap.retryDelays.get(i))));
+            }
+
+        // put the dependent tasks back with the dependencies they already had fulfilled
+        for(int i = 0; i < snap.dependentTasks.size(); i++){
+            Task task = snap.dependentTasks.get(i);
+            if(finished.contains(task.getId()))
+                continue;
+            track(task);
+            Dependency d = new Dependency(task);
+            d.markCompleted(snap.fulfilledDependencies.get(i));
+            d.spill();
+            dependencies.add(d);
+        }
+        LOGGER.info("restored " + snap.getPendingCount() + " pending tasks from snapshot");
+
+        // queue dependent tasks whose dependencies all completed
+        schdeuleDependentTasks(Map.of());
+
+        // replay the journal tail
+        if(tail != null)
+            recover(tail);
+    }
+
+    // makes executeAll pull tasks from source as it makes room, keeping at most window tasks in the scheduler (null removes the source)
+    // dependent tasks can depend on tasks that come later in the source. if everything in the scheduler is waiting on dependencies,
+    // executeAll keeps pulling past the window until something can run (use setSpillStore to keep those waiting tasks off the heap)
+    public synchronized void setTaskSource(TaskSource source, int window){
+        // bounds check
+        if(source != null && window < 1)
+            throw new IllegalArgumentException("task source window must be at least 1");
+
+        taskSource = source;
+        sourceWindow = window;
+
+        // tasks pulled later can depend on ones that already ran
+        if(source != null)
+            rememberCompleted = true;
+    }
+
+    // remembers the ids of completed tasks for retention after they complete, so dependent tasks submitted after their dependencies ran
+    // still run (null remembers them until the capacity is reached). without this, a journal, snapshots or a task source, completed ids aren't kept
+    // with a journal, this is also how long a completed task is skipped if it's scheduled again
+    public synchronized void setCompletedRetention(Duration retention){
+        completedIds.setRetention(retention);
+        rememberCompleted = true;
+    }
+
+    // remembers at most maxIds completed ids, forgetting the ones that completed first (0 means no limit, 100,000 by default)
+    public synchronized void setCompletedCapacity(int maxIds){
+        completedIds.setCapacity(maxIds);
+    }
+
+    // returns the number of completed ids remembered
+    public synchronized int getCompletedIdCount(){
+        return completedIds.size();
+    }
+
+    // puts a bloom filter sized for expectedIds in front of the completed ids, so most lookups for ids that never completed are cheap (0 removes it)
+    public synchronized void setCompletedFilter(int expectedIds){
+        completedIds.setFilter(expectedIds);
+    }
+
+    // keeps tasks that are waiting on dependencies in store instead of on the heap (null keeps new ones on the heap)
+    public synchronized void setSpillStore(SpillStore store){
+        spillStore = store;
+    }
+
+    // takes a snapshot of the pending work and writes it to file in the background
+    // the scheduler is only paused while its state is copied & serialized, the returned future completes once the file is written
+    public synchronized Future<SchedulerSnapshot> snapshot(Path file){
+        // check for null
+        if(file == null)
+            throw new NullPointerException("snapshot file cannot be null");
+
+        // copy the state & serialize it now (the next batch changes the tasks, so they can't be read later by the writer)
+        SchedulerSnapshot snap = captureSnapshot();
+        byte[] encoded = snap.encode();
+
+        // write it on the writer thread
+        if(snapshotWriter == null)
+            snapshotWriter = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "scheduler-snapshot-writer");
+                t.setDaemon(true);
+                return t;
+            });
+        return snapshotWriter.submit(() -> {
+            SchedulerSnapshot.write(file, encoded);
+            LOGGER.info("scheduler snapshot written: " + file);
+            return snap;
+        });
+    }
+
+    // makes executeAll snapshot the scheduler to file between batches, at most once per interval (null file turns it off)
+    public synchronized void setSnapshotInterval(Path file, Duration interval){
+        // check for null
+        if(file != null && interval == null)
+            throw new NullPointerException("snapshot interval cannot be null");
+
+        snapshotFile = file;
+        if(file != null)
+            rememberCompleted = true;
+        snapshotIntervalNanos = file == null ? 0 : interval.toMillis() * 1_000_000;
+        lastSnapshot = System.nanoTime();
     }
 
     // schedules a task to some available server
-    public void scheduleTask(Task task){
+    // returns a handle that completes with the completed task, or exceptionally with a TaskAbandonedException if the scheduler gives up on it
+    // (submitting an id that's already pending or running returns that task's handle instead of running it again)
+    // the handle completes on the thread running executeAll, so slow follow up work should use the async methods of CompletableFuture
+    public CompletableFuture<Task> scheduleTask(Task task){
+        return schedule(task).handle();
+    }
+
+    // schedules a task like scheduleTask without making a handle for it (use getHandle if one's needed later)
+    // for big backlogs where nothing waits on each task, since every handle stays on the heap until its task finishes
+    public void submitTask(Task task){
+        schedule(task);
+    }
+
+    // returns the handle of a pending or running task, making it if nobody asked for one yet (null if no task with the id is in flight)
+    public CompletableFuture<Task> getHandle(String taskId){
+        // check for null
+        if(taskId == null)
+            throw new NullPointerException("task id cannot be null");
+
+        Submission submission = inFlight.get(taskId);
+        return submission == null ? null : submission.handle();
+    }
+
+    // schedules a task to some available server & returns its entry in the in flight index (or the entry it attached to)
+    private Submission schedule(Task task){
         // check for null
         if(task == null)
             throw new NullPointerException("cannot schedule null task");
@@ -84,99 +521,613 @@ public class TaskScheduler {
         if(waitTimes.isEmpty())
             throw new SchedulerFullException("no servers are available to schedule to");
 
-        // test if task is non-dependent
-        if(task.getDependencies().isEmpty())
-            queueTask(task); // add task to a server
-        else
-            scheduleDependentTask(task); // add task to dependent task queue for later queueing
+        // a task with the same id is already pending or running, so this submission shares its outcome
+        Submission submission = new Submission(task.getPriority());
+        Submission existing = coalesce(task, submission);
+        if(existing != null)
+            return existing;
+
+        // a HIGH task can stop lower priority work that's running instead of waiting for the batch to end
+        if(preempt(task, submission))
+            return submission;
+
+        // schedule it (throwing if every server is full)
+        try{
+            submit(task, false);
+        }catch(RuntimeException e){
+            // anything that attached to it in the meantime fails too
+            inFlight.remove(task.getId(), submission);
+            submission.fail(e);
+            throw e;
+        }
+        return submission;
+    }
+
+    // schedules a task to run at a time (or as soon as possible if it has passed). the task is submitted by the first executeAll
+    // running at or after that time, like any other task (with its priority, & retried if it fails). executeAll doesn't wait for it
+    // returns a handle like scheduleTask. submitting the same id again before it runs attaches to the delayed task
+    public synchronized CompletableFuture<Task> scheduleAt(Task task, Instant when){
+        // check for null
+        if(task == null)
+            throw new NullPointerException("cannot schedule null task");
+        if(when == null)
+            throw new NullPointerException("time cannot be null");
+
+        // a task with the same id is already pending or running, so this submission shares its outcome
+        Submission submission = new Submission(task.getPriority());
+        Submission existing = coalesce(task, submission);
+        if(existing != null)
+            return existing.handle();
+
+        // wait for its time
+        LOGGER.info("task delayed until " + when + ". id: " + task.getId());
+        DelayedTask timer = new DelayedTask(task, null, when.toEpochMilli());
+        delayed.put(task.getId(), timer);
+        synchronized(timers){
+            timers.add(timer, timer.due);
+        }
+        return submission.handle();
+    }
+
+    // schedules a task to run every period, starting one period from now. each run is submitted by the first executeAll
+    // running at or after its time, like any other task. a run that comes up while the last one is still pending is skipped
+    // runs that were missed while no executeAll was running aren't made up. cancel(taskId) stops it
+    // scheduling the same id again replaces the period
+    public synchronized void scheduleEvery(Task task, Duration period){
+        // check for null & bounds
+        if(task == null)
+            throw new NullPointerException("cannot schedule null task");
+        if(period == null)
+            throw new NullPointerException("period cannot be null");
+        if(period.toMillis() < 1)
+            throw new IllegalArgumentException("period must be at least 1ms");
+
+        // replaces any timer the id already had
+        DelayedTask timer = new DelayedTask(task, period, System.currentTimeMillis() + period.toMillis());
+        DelayedTask replaced = recurring.put(task.getId(), timer);
+        LOGGER.info("task scheduled every " + period.toMillis() + "ms. id: " + task.getId());
+        synchronized(timers){
+            if(replaced != null)
+                timers.remove(replaced, replaced.due);
+            timers.add(timer, timer.due);
+        }
+    }
+
+    // returns the number of delayed & recurring task timers waiting for their time
+    public synchronized int getPendingTimers(){
+        synchronized(timers){
+            return timers.size();
+        }
+    }
+
+    // cancels a pending or running task. returns false if no task with the id is pending or running
+    // the task is found through the in flight index & marked, then dropped the next time the scheduler or its server comes across it
+    // (a running task is interrupted & cleaned up by its server). its handle completes with a CancellationException right away,
+    // and the task is reported to the result sink as abandoned because it was "cancelled"
+    // submitting the id again before the task is dropped takes the cancellation back (a running task that was interrupted still counts as a failed attempt)
+    public boolean cancel(String taskId){
+        return cancel(taskId, false);
+    }
+
+    // cancels a pending or running task, and if cascade is true every task that depends on it (directly or not) as well
+    // dependent tasks are cancelled before the next batch (or the next executeAll if it isn't running)
+    public boolean cancel(String taskId, boolean cascade){
+        // check for null
+        if(taskId == null)
+            throw new NullPointerException("task id cannot be null");
+
+        // stop it recurring (a run that's pending is cancelled below)
+        DelayedTask repeating = recurring.remove(taskId);
+        boolean stopped = repeating != null;
+        if(stopped){
+            LOGGER.info("recurring task stopped. id: " + taskId);
+            synchronized(timers){
+                timers.remove(repeating, repeating.due);
+            }
+        }
+
+        // find the task
+        Submission submission = inFlight.get(taskId);
+        if(submission == null || !submission.cancel())
+            return stopped;
+        LOGGER.info("task cancelled. id: " + taskId);
+
+        // take a delayed task's timer out now instead of leaving it until its time (it's dropped by the next executeAll)
+        DelayedTask timer = delayed.remove(taskId);
+        if(timer != null){
+            synchronized(timers){
+                if(timers.remove(timer, timer.due))
+                    cancelledTimers.add(timer);
+            }
+        }
+
+        // stop it on the server it was placed on (skipped if it's queued, interrupted if it's running)
+        Server server = submission.server;
+        if(server != null)
+            server.cancel(taskId);
+
+        // cancel the dependent tasks once the scheduler has the lock
+        if(cascade)
+            cascadingCancels.add(taskId);
+        return true;
+    }
+
+    // returns the number of submissions that were attached to a pending or running task with the same id instead of running again
+    public long getCoalescedSubmissions(){
+        return coalescedSubmissions.get();
     }
 
     // tells all the servers to execute their tasks
-    // returns a Map of Servers to their completed task list
+    // returns a Map of Servers to their completed task list (keeps every completed task in memory, use executeAll(ResultSink) for big workloads)
     public synchronized Map<Server, List<Task>> executeAll() throws SchedulerException{
+        // apply any servers that joined or left since the last call so every server gets a list
+        applyMembershipChanges();
+
+        // collect the results into a map
+        CollectingResultSink collector = new CollectingResultSink(servers);
+        executeAll(collector);
+        return collector.getCompletedTasks();
+    }
+
+    // tells all the servers to execute their tasks
+    // each completed & abandoned task is given to sink as soon as the scheduler is done with it (nothing is kept once it's given to sink)
+    public synchronized void executeAll(ResultSink sink) throws SchedulerException{
+        // check for null
+        if(sink == null)
+            throw new NullPointerException("result sink cannot be null");
+
         // log executeAll
         LOGGER.info("scheduler executing all tasks");
 
         // initiate statistics collecting
         performanceMonitor.startTracking();
 
-        // just getting a list of servers (since identical lists of ServerWait objects exist for each priority level)
-        List<Server> servers = waitTimes.get(TaskPriority.HIGH).stream().map(sw -> sw.server).collect(Collectors.toList());
-        
-        // Map to hold return value data
-        Map<Server, List<Task>> completedTasks = new HashMap<>();
-        // initialize completedTasks with empty lists
-        servers.stream().forEach(s -> completedTasks.put(s, new ArrayList<Task>()));
+        // apply any servers that joined or left since the last call
+        applyMembershipChanges();
+
+        // send abandoned tasks to the sink for this run
+        resultSink = sink;
+
+        // cancel the tasks depending on tasks cancelled since the last run
+        cascadeCancels();
+
+        // pull the first tasks from the source & the delayed tasks that are due
+        pullFromSource();
+        fireTimers();
 
         // loop until no more tasks can run (waits for task dependencies & retries)
-        while(tasksQueued){
-            // holds the most recent batch of completed tasks for checking dependencies
+        while(tasksQueued || !retryQueue.isEmpty() || heldTasks > 0){
+            // place the tasks waiting by tenant for this batch
+            dispatchTenantTasks();
+
+            // if no tasks are scheduled but there are still tasks in the retryQueue, wait until the next task can be executed
+            if(!tasksQueued){
+                // tasks waiting by tenant that no server would take
+                if(retryQueue.isEmpty())
+                    break;
+                waitForRetry();
+                continue;
+            }
+
+            // make sure everything journaled so far is on disk before running the batch
+            if(journal != null)
+                journal.commit();
+
+            // holds the most recent batch of completed tasks for checking dependencies (tasks cancelled while they ran are dropped)
             Map<Server, List<Task>> taskBatch = executeTaskBatch(servers);
+            taskBatch.replaceAll((s, tasks) -> tasks.stream().filter(t -> !dropIfCancelled(t)).collect(Collectors.toList()));
+
+            // journal the completed tasks
+            if(journal != null)
+                taskBatch.values().stream().flatMap(List::stream).forEach(t -> journal.completed(t.getId()));
+
+            // remember the completed ids for dependent tasks that haven't arrived yet (& for skipping them after a restart)
+            if(rememberCompleted)
+                taskBatch.values().stream().flatMap(List::stream).forEach(t -> completedIds.add(t.getId()));
+
+            // remember where each task ran for tasks with an affinity to it
+            taskBatch.forEach((s, tasks) -> tasks.stream().forEach(t -> lastRanOn.put(t.getId(), s)));
+
+            // hand the completed tasks to the sink
+            taskBatch.forEach((s, tasks) -> tasks.stream().forEach(t -> sink.completed(s, t)));
+
+            // completed tasks aren't in flight & don't need their attempt counts or to avoid the servers they failed on anymore
+            taskBatch.values().stream().flatMap(List::stream).forEach(t -> {
+                failedOn.remove(t.getId());
+                setAttempts(t.getId(), 0);
+            });
 
-            // add completed tasks to completedTasks
-            servers.stream().forEach(s -> completedTasks.get(s).addAll(taskBatch.get(s)));
+            // complete the handles of the completed tasks
+            taskBatch.forEach((s, tasks) -> tasks.stream().forEach(t -> finish(t, s.getCompletionTime(t))));
+
+            // update how reliable each server has been so placement can favor the reliable ones
+            updateReliability();
+
+            // apply servers that joined or left while the batch was running (re-places tasks from servers that left)
+            applyMembershipChanges();
+
+            // the servers have drained their queues, so try the tasks that were turned away again
+            scheduleDeferredTasks();
 
             // check to see if any tasks in the retry queue can be scheduled yet
             scheduleRetries();
 
             // collect all the failed tasks from each server and add them to the retryQueue if they can be retried
-            collectFailedTasks(servers);
+            collectFailedTasks();
+
+            // re-place tasks that a server lost without reporting them (counts as a failure if the server is still up)
+            collectLostTasks();
+
+            // cancel the tasks depending on cancelled tasks
+            cascadeCancels();
 
             // schedule tasks whose dependencies have been fulfilled
             schdeuleDependentTasks(taskBatch);
 
-            // if no tasks are scheduled but there are still tasks in the retryQueue, wait until the next task can be executed
-            if(!tasksQueued && !retryQueue.isEmpty()){
-                try{
-                    Thread.sleep(retryQueue.peek().getTimeUntil());
-                }catch(InterruptedException e){
-                    System.out.println("interrupt occurred while waiting to retry task");
-                }
+            // the batch made room, pull more tasks from the source & the delayed tasks that came due
+            pullFromSource();
+            fireTimers();
 
-                // after waiting, there should be retries to schedule, so schedule them
-                scheduleRetries();
-
-                // alert if tasks didn't get scheduled by checking if no tasks are scheduled
-                if(!tasksQueued)
-                    System.out.println("waited to retry tasks but none were scheduled");
-            }
+            // snapshot the scheduler if it's time to
+            snapshotIfDue();
         }
 
+        // log tasks that are still waiting for room on a server (they stay deferred for the next executeAll)
+        deferredTasks.stream().forEach(t -> LOGGER.warning("task still deferred since every server is full. id: " + t.getId()));
+        tenantQueues.values().stream().flatMap(ArrayDeque::stream)
+            .forEach(t -> LOGGER.warning("task still waiting by tenant since every server is full. id: " + t.getId()));
+
         // log all tasks that couldn't execute due to incomplete dependencies
-        dependencies.stream().map(d -> d.dependentTask).forEach(t -> LOGGER.severe("task abandoned due to incomplete dependencies. id: " + t.getId()));
+        cascadeCancels();
+        dependencies.stream().forEach(d -> {
+            if(!dropIfCancelled(d.peekTask()))
+                abandon(d.peekTask(), "incomplete dependencies");
+            d.discard();
+        });
 
         // clear dependent task list of any leftover tasks that could not execute due to failed prereqs
         dependencies = new ArrayList<>();
+        pendingInheritance.clear();
 
-        // return completedTasks Map
-        return completedTasks;
+        // tasks abandoned outside of executeAll aren't reported to this sink
+        resultSink = null;
+
+        // sync the completions & abandoned tasks
+        if(journal != null)
+            journal.commit();
     }
 
     // getter method for the PerformanceMonitor
     public PerformanceMonitor getStats(){
-        // get a list of the servers (need to unpack from waitTimes)
-        List<Server> servers = waitTimes.get(TaskPriority.HIGH).stream().map(sw -> sw.server).collect(Collectors.toList());
-
-        // tell performanceMonitor to update stats for each server (the big amount of code is just getting a list of servers)
+        // tell performanceMonitor to update stats for each server
         performanceMonitor.loadStatsFor(servers);
 
         // return the performanceMonitor
         return performanceMonitor;
     }
 
+    // journals & schedules a submitted task (if deferIfFull is true, a task that no server has room for waits instead of throwing)
+    private synchronized void submit(Task task, boolean deferIfFull){
+        // skip tasks the journal says already completed (their handle completes with the task as it was submitted)
+        // each run of a recurring task is a new run of the same id, so the runs before it don't count
+        if(skipCompleted && !recurring.containsKey(task.getId()) && completedIds.contains(task.getId())){
+            LOGGER.info("task already completed before restart, skipping. id: " + task.getId());
+            finish(task, -1);
+            return;
+        }
+
+        // journal the submission & schedule it together so a snapshot never sees one without the other
+        if(journal != null)
+            journal.submitted(task);
+
+        // take the priority a task submitted earlier inherited for it
+        TaskPriority inherited = pendingInheritance.remove(task.getId());
+        if(inherited != null)
+            inheritPriority(task.getId(), inherited);
+
+        // test if task is non-dependent
+        if(!task.getDependencies().isEmpty())
+            scheduleDependentTask(task); // add task to dependent task queue for later queueing
+        else if(deferIfFull)
+            queueOrDefer(task);
+        else
+            queueTask(task); // add task to a server
+    }
+
+    // pulls tasks from the source until the window is full
+    // if nothing in the scheduler can run (everything is waiting on dependencies), keeps pulling until something can or the source runs out
+    private void pullFromSource(){
+        if(taskSource == null)
+            return;
+
+        // pull tasks
+        while(taskSource.hasNext() && (tasksInFlight() < sourceWindow || (!tasksQueued && retryQueue.isEmpty() && deferredTasks.isEmpty() && heldTasks == 0))){
+            Task task = Objects.requireNonNull(taskSource.next(), "task source gave a null task");
+            if(coalesce(task, new Submission(task.getPriority())) == null)
+                submit(task, true);
+        }
+
+        // done with the source once it runs out
+        if(!taskSource.hasNext()){
+            LOGGER.info("task source finished");
+            taskSource.close();
+            taskSource = null;
+        }
+    }
+
+    // submits the delayed & recurring tasks that have come due (recurring ones get a timer for their next run)
+    private void fireTimers(){
+        // drop the delayed tasks cancelled since the last time (putting back the ones submitted again since)
+        DelayedTask cancelled;
+        while((cancelled = cancelledTimers.poll()) != null){
+            if(dropIfCancelled(cancelled.task))
+                continue;
+            delayed.put(cancelled.task.getId(), cancelled);
+            synchronized(timers){
+                timers.add(cancelled, cancelled.due);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        List<DelayedTask> due;
+        synchronized(timers){
+            due = timers.advance(now);
+        }
+        for(DelayedTask timer : due){
+            Task task = timer.task;
+
+            // delayed once, it's already in the in flight index
+            if(timer.period == null){
+                delayed.remove(task.getId(), timer);
+                if(!dropIfCancelled(task))
+                    submit(task, true);
+                continue;
+            }
+
+            // recurring tasks that were stopped or rescheduled
+            if(recurring.get(task.getId()) != timer)
+                continue;
+
+            // set up the next run (skipping runs that were missed)
+            long period = timer.period.toMillis();
+            DelayedTask next = new DelayedTask(task, timer.period, now + period - (now - timer.due) % period);
+            recurring.put(task.getId(), next);
+            synchronized(timers){
+                timers.add(next, next.due);
+            }
+
+            // this run (skipped if the last one is still pending)
+            if(coalesce(task, new Submission(task.getPriority())) == null){
+                LOGGER.info("recurring task due. id: " + task.getId());
+                submit(task, true);
+            }
+        }
+    }
+
+    // adds a submitted task to the in flight index
+    // returns the entry of the task with the same id if one is already in flight (the submitted task is dropped), otherwise null
+    private Submission coalesce(Task task, Submission submission){
+        while(true){
+            Submission existing = inFlight.putIfAbsent(task.getId(), submission);
+            if(existing == null)
+                return null;
+
+            // a cancelled task that hasn't been dropped yet is taken back, with the new submission's handle
+            if(existing.cancelled){
+                submission.server = existing.server;
+                if(!inFlight.replace(task.getId(), existing, submission))
+                    continue;
+                LOGGER.info("cancelled task submitted again before it was dropped, taking the cancellation back. id: " + task.getId());
+                return submission;
+            }
+
+            coalescedSubmissions.incrementAndGet();
+            LOGGER.info("task with the same id already pending or running, attaching to it. id: " + task.getId());
+            return existing;
+        }
+    }
+
+    // adds a task put back by recover or restore to the in flight index (keeping any handle it already has)
+    private void track(Task task){
+        inFlight.putIfAbsent(task.getId(), new Submission(task.getPriority()));
+    }
+
+    // takes a completed task out of the in flight index & completes its handle
+    private void finish(Task task, long finishedAt){
+        Submission submission = inFlight.remove(task.getId());
+        if(submission != null){
+            long end = finishedAt < 0 ? System.nanoTime() : finishedAt;
+            performanceMonitor.recordLatency(task.getPriority(), Duration.ofMillis(Math.max(0, end - submission.submittedAt) / 1_000_000));
+            submission.complete(task);
+        }
+    }
+
+    // abandons a task that came up after it was cancelled. returns false if the task wasn't cancelled
+    private boolean dropIfCancelled(Task task){
+        Submission submission = inFlight.get(task.getId());
+        if(submission == null || !submission.cancelled)
+            return false;
+        abandon(task, "cancelled");
+        return true;
+    }
+
+    // cancels the tasks waiting on the ids in cascadingCancels (and the tasks waiting on those)
+    private void cascadeCancels(){
+        String id;
+        while((id = cascadingCancels.poll()) != null){
+            // only tasks waiting on dependencies can depend on a task that hasn't completed
+            int handle = taskIds.find(id);
+            if(handle == TaskIdRegistry.NONE)
+                continue;
+            for(Dependency d : dependencies)
+                if(d.waitsOn(handle) && cancel(d.taskId))
+                    cascadingCancels.add(d.taskId);
+        }
+    }
+
+    // returns the number of tasks in the scheduler that haven't finished (queued, deferred, waiting to retry or waiting on dependencies)
+    private int tasksInFlight(){
+        return placements.values().stream().mapToInt(List::size).sum() + deferredTasks.size() + retryQueue.size() + dependencies.size() + heldTasks;
+    }
+
+    // re-schedules the work a journal (or journal tail) says hadn't finished
+    private void recover(TaskJournal.Recovery recovery){
+        // finished tasks in the journal
+        Set<String> completed = recovery.getCompletedIds();
+        Set<String> abandoned = recovery.getAbandonedIds();
+        completed.stream().forEach(completedIds::add);
+        completed.stream().forEach(id -> setAttempts(id, 0));
+        abandoned.stream().forEach(id -> setAttempts(id, 0));
+        recovery.getAttempts().forEach(this::setAttempts);
+
+        // dependent tasks from a snapshot may have had dependencies finish (or finished themselves) in the journal
+        dependencies.stream().forEach(d -> d.markCompleted(completed));
+        dependencies.removeIf(d -> {
+            boolean finished = completed.contains(d.taskId) || abandoned.contains(d.taskId);
+            if(finished){
+                inFlight.remove(d.taskId);
+                d.discard();
+            }
+            return finished;
+        });
+
+        // dependent tasks from a snapshot that can run now
+        schdeuleDependentTasks(Map.of());
+
+        // schedule the pending tasks again (without journaling them as new submissions)
+        List<Task> pending = recovery.getPendingTasks();
+        LOGGER.info("recovered " + pending.size() + " pending tasks from journal (" + completedIds.size() + " completed)");
+        pending.stream().forEach(task -> {
+            track(task);
+            if(task.getDependencies().isEmpty())
+                queueOrDefer(task);
+            else
+                scheduleDependentTask(task);
+        });
+    }
+
+    // copies the pending work into a snapshot (must hold the lock, only references are copied so encode it before letting go)
+    private SchedulerSnapshot captureSnapshot(){
+        // tasks queued to each server, with the deferred tasks as one more group
+        List<List<Task>> queued = new ArrayList<>();
+        placements.forEach((s, ids) -> queued.add(placedTasks(s, ids)));
+        queued.add(new ArrayList<>(deferredTasks));
+        queued.add(tenantQueues.values().stream().flatMap(ArrayDeque::stream).collect(Collectors.toList()));
+
+        // retry timers
+        List<Task> retries = new ArrayList<>(retryQueue.size());
+        List<Long> delays = new ArrayList<>(retryQueue.size());
+        retryQueue.stream().forEach(r -> {
+            retries.add(r.task);
+            delays.add(r.getTimeUntil().toMillis());
+        });
+
+        // dependent tasks & their fulfilled dependencies
+        List<Task> dependents = new ArrayList<>(dependencies.size());
+        List<Set<String>> fulfilled = new ArrayList<>(dependencies.size());
+        dependencies.stream().forEach(d -> {
+            Task task = d.peekTask();
+            dependents.add(task);
+            fulfilled.add(d.fulfilledIds(task));
+        });
+
+        // attempt counts by id
+        Map<String, Integer> attempts = new HashMap<>();
+        for(int handle = 0; handle < taskAttempts.length; handle++)
+            if(taskAttempts[handle] > 0)
+                attempts.put(taskIds.idOf(handle), taskAttempts[handle]);
+
+        return new SchedulerSnapshot(journal == null ? -1 : journal.size(), completedIds.ids(), attempts, queued, retries, delays, dependents, fulfilled);
+    }
+
+    // returns the number of times a task has failed (0 if it hasn't)
+    private int attemptsOf(String id){
+        int handle = taskIds.find(id);
+        return handle == TaskIdRegistry.NONE || handle >= taskAttempts.length ? 0 : taskAttempts[handle];
+    }
+
+    // sets the number of times a task has failed (0 forgets the task & lets its handle be reused)
+    private void setAttempts(String id, int attempts){
+        // tasks that have failed already hold a handle
+        int handle = taskIds.find(id);
+        boolean tracked = handle != TaskIdRegistry.NONE && handle < taskAttempts.length && taskAttempts[handle] > 0;
+
+        // forget the task
+        if(attempts == 0){
+            if(tracked){
+                taskAttempts[handle] = 0;
+                taskIds.release(handle);
+            }
+            return;
+        }
+
+        // first failure, take a handle (growing the array if the handle is new)
+        if(!tracked){
+            handle = taskIds.acquire(id);
+            if(handle >= taskAttempts.length)
+                taskAttempts = Arrays.copyOf(taskAttempts, Math.max(taskAttempts.length * 2, taskIds.handleLimit()));
+        }
+        taskAttempts[handle] = attempts;
+    }
+
+
+    // takes a periodic snapshot if one is set up and the interval has passed
+    private void snapshotIfDue(){
+        if(snapshotFile == null || System.nanoTime() - lastSnapshot < snapshotIntervalNanos)
+            return;
+
+        lastSnapshot = System.nanoTime();
+        snapshot(snapshotFile);
+    }
+
     // tells the servers to execute one batch of tasks and returns a map of the completed tasks
     private Map<Server, List<Task>> executeTaskBatch(List<Server> servers){
         // holds completed tasks
         Map<Server, List<Task>> completed = new HashMap<>();
 
-        // call execute on each server and collect completed tasks
-        servers.stream().forEach(s -> completed.put(s, s.executeTasks()));
+        // take the placements for this batch (tasks queued while the batch runs go into a new map)
+        Map<Server, List<String>> placed = placements;
+        placements = new IdentityHashMap<>();
+        batchNumber++;
+
+        // reset the failed & lost tasks from the last batch
+        failedBatch = new IdentityHashMap<>();
+        lostTasks = new IdentityHashMap<>();
+
+        // call execute on each server and collect completed & failed tasks
+        servers.stream().forEach(s -> {
+            completed.put(s, s.executeTasks());
+            failedBatch.put(s, s.getFailedTasks());
+        });
+
+        // tasks handed to a server while it ran were placed in this batch (a priority they inherited doesn't matter, they ran first)
+        synchronized(handedOver){
+            handedOver.forEach((s, ids) -> {
+                placed.computeIfAbsent(s, k -> new ArrayList<>()).addAll(ids);
+                ids.forEach(pendingInheritance::remove);
+            });
+            handedOver.clear();
+        }
+
+        // any task placed on a server that the server neither completed nor failed was lost (compare ids since remote servers return copies)
+        placed.forEach((s, ids) -> {
+            // collect the ids the server reported back
+            Set<String> reported = new HashSet<>();
+            completed.getOrDefault(s, List.of()).stream().map(Task::getId).forEach(reported::add);
+            failedBatch.getOrDefault(s, List.of()).stream().map(Task::getId).forEach(reported::add);
+
+            // anything not reported is lost (read back from the server)
+            List<String> lost = ids.stream().filter(id -> !reported.contains(id)).collect(Collectors.toList());
+            if(!lost.isEmpty())
+                lostTasks.put(s, placedTasks(s, lost));
+        });
 
         // all queued tasks have been flushed, so reset flag & wait times
         tasksQueued = false;
         waitTimes.values().stream().forEach(q -> // iterate through each priority level
             q.stream().forEach(sw -> // iterate through each ServerWait
                 sw.expectedWait = Duration.ofMillis(0))); // set the wait time to 0
+        deadlineWaits.stream().forEach(sw -> sw.expectedWait = Duration.ofMillis(0));
 
         // return completed tasks
         return completed;
@@ -184,14 +1135,26 @@ public class TaskScheduler {
 
     // will update the dependency information given a new batch of completed tasks & schedule tasks whose dependencies get fulfilled
     private void schdeuleDependentTasks(Map<Server, List<Task>> taskBatch){
-        // first, construct a list of ids for every completed task
-        List<String> completedTaskIds = taskBatch.values().stream().flatMap(list -> list.stream().map(Task::getId)).collect(Collectors.toList());
+        // first, collect the handles of every completed task (ids without a handle have nothing waiting on them)
+        BitSet completedTaskIds = new BitSet();
+        taskBatch.values().stream().flatMap(List::stream).mapToInt(t -> taskIds.find(t.getId()))
+            .filter(h -> h != TaskIdRegistry.NONE).forEach(completedTaskIds::set);
+
+        // drop cancelled dependent tasks
+        dependencies.removeIf(dep -> {
+            Submission submission = inFlight.get(dep.taskId);
+            if(submission == null || !submission.cancelled)
+                return false;
+            abandon(dep.peekTask(), "cancelled");
+            dep.discard();
+            return true;
+        });
 
         // update the dependencies
-        dependencies.stream().forEach(dep -> dep.checkForCompleteDependencies(completedTaskIds)); // update dependency status
+        dependencies.stream().forEach(dep -> dep.markCompleted(completedTaskIds::get)); // update dependency status
         
         // schedule tasks with fulfilled dependencies
-        dependencies.stream().filter(Dependency::canRun).forEach(t -> queueTask(t.dependentTask));
+        dependencies.stream().filter(Dependency::canRun).forEach(t -> queueOrDefer(t.takeTask()));
 
         // remove scheduled dependent tasks
         dependencies.removeIf(Dependency::canRun);
@@ -204,96 +1167,484 @@ public class TaskScheduler {
 
         // task has dependencies, create new Dependency and add to dependencies list
         Dependency d = new Dependency(task);
+
+        // every dependency completed before a restart, so the task can be queued now
+        if(d.canRun()){
+            queueOrDefer(task);
+            return;
+        }
+
         // add in synchronized block so only one thread can modify dependencies at a time
-        synchronized(this){dependencies.add(d);}
+        synchronized(this){
+            d.spill();
+            dependencies.add(d);
+
+            // the tasks it waits on need to run at least as soon as it does
+            Submission submission = inFlight.get(task.getId());
+            if(priorityInheritance && submission != null){
+                submission.inheritance = new Inheritance(d, null, -1);
+                d.unfulfilledIds().forEach(id -> inheritPriority(id, submission.priority));
+            }
+        }
+    }
+
+    // raises a pending task's priority to at least priority (a task waiting on it needs it that soon), & the tasks it waits on in turn
+    // a task that's queued on a server is moved up there, others take the priority the next time they're placed
+    private void inheritPriority(String id, TaskPriority priority){
+        if(!priorityInheritance)
+            return;
+
+        // not submitted yet, it takes the priority when it is
+        Submission submission = inFlight.get(id);
+        if(submission == null){
+            pendingInheritance.merge(id, priority, (a, b) -> a.compareTo(b) >= 0 ? a : b);
+            return;
+        }
+
+        // already at least that urgent
+        if(submission.priority.compareTo(priority) >= 0)
+            return;
+        LOGGER.info("task inherits " + priority + " priority from a task waiting on it. id: " + id);
+        submission.priority = priority;
+
+        // pass it on to the tasks it's waiting on, or move it up on the server it's queued to
+        Inheritance inheritance = submission.inheritance;
+        if(inheritance == null)
+            return;
+        if(inheritance.dependency != null)
+            inheritance.dependency.unfulfilledIds().forEach(prereq -> inheritPriority(prereq, priority));
+        else if(inheritance.queuedBatch == batchNumber)
+            submission.server.boost(inheritance.queuedTask, priority);
+    }
+
+    // makes tasks take the priority of the most urgent task waiting on them (directly or not), so an urgent dependent task
+    // isn't held back by a low priority dependency. priorities are passed on as dependent tasks arrive
+    public synchronized void setPriorityInheritance(boolean inherit){
+        priorityInheritance = inherit;
+    }
+
+    // lets a HIGH task submitted while a batch is running stop a preemptible task of lower priority & run in its place
+    // the stopped task has preempt() called & is queued again on its server, without counting as a failed attempt
+    // only HIGH tasks that could go to any server skip the usual placement (not ones with dependencies or required labels). the rest
+    // wait for the batch as usual
+    // the handover happens without the lock (executeAll holds it for the whole batch), so it can't check or journal anything the lock
+    // guards: while a journal is set, completed ids are skipped (after setJournal or restore) or tenant fairness is on, no task
+    // preempts & a warning is logged. turn those off (or don't turn them on) to use preemption
+    public synchronized void setPreemption(boolean preempt){
+        preemption = preempt;
+        warnIfPreemptionBlocked();
+    }
+
+    // logs if preemption is on but won't happen (see setPreemption)
+    private void warnIfPreemptionBlocked(){
+        if(preemption && preemptionBlocked())
+            LOGGER.warning("preemption is on but won't happen while journaling, skipping completed tasks or with tenant fairness");
+    }
+
+    // true if a feature that needs to see every submission under the lock is on, so HIGH tasks can't preempt
+    private boolean preemptionBlocked(){
+        return journal != null || skipCompleted || tenantFairness;
+    }
+
+    // hands a HIGH task straight to a server running preemptible lower priority work, without taking the lock
+    // returns false if the task has to go through the usual placement
+    private boolean preempt(Task task, Submission submission){
+        // check that the task can skip the usual placement
+        if(!preemption || task.getPriority() != TaskPriority.HIGH || !task.getDependencies().isEmpty() || !task.getRequiredLabels().isEmpty())
+            return false;
+
+        // a feature that needs the lock is on (see setPreemption)
+        if(preemptionBlocked()){
+            LOGGER.info("task can't preempt while journaling, skipping completed tasks or with tenant fairness, placing it as usual. id: " + task.getId());
+            return false;
+        }
+
+        // find a server running something it can stop (the server runs the task next in the batch it's running)
+        // the handover is recorded with it so the batch it runs in sees it, & can re-place it if the server loses it
+        Server server = null;
+        synchronized(handedOver){
+            for(Server candidate : servers){
+                if(candidate.preemptFor(task)){
+                    server = candidate;
+                    handedOver.computeIfAbsent(server, k -> new ArrayList<>()).add(task.getId());
+                    break;
+                }
+            }
+        }
+        if(server == null)
+            return false;
+        LOGGER.info("task preempting running work. id: " + task.getId());
+        submission.server = server;
+
+        // cancelled while it was being handed over
+        if(submission.cancelled)
+            server.cancel(task.getId());
+
+        // count the dispatch towards the retry budget
+        if(retryBudget != null)
+            retryBudget.recordDispatch();
+        return true;
+    }
+
+    // sleeps until the soonest retry can be executed, then schedules it
+    private void waitForRetry(){
+        try{
+            Thread.sleep(retryQueue.peek().getTimeUntil());
+        }catch(InterruptedException e){
+            System.out.println("interrupt occurred while waiting to retry task");
+        }
+
+        // after waiting, there should be retries to schedule, so schedule them
+        scheduleRetries();
     }
 
     // schedules any tasks that can be retried at this moment in time & removes them from the retry queue
     private void scheduleRetries(){
+        // retries the budget pushed back (re-added after the loop so they aren't polled again right away)
+        List<Task> deferredRetries = new ArrayList<>();
+
         // check if the soonest task can be retried
         while(!retryQueue.isEmpty() && retryQueue.peek().canRetry()){
-            // pop the task from the queue & schedule it
-            queueTask(retryQueue.poll().task);
+            // pop the task from the queue
+            Task task = retryQueue.poll().task;
+
+            // check the retry budget
+            if(retryBudget != null && !retryBudget.tryAcquireRetry()){
+                if(retryBudget.getOverflow() == RetryBudget.Overflow.DEFER){
+                    deferredRetries.add(task);
+                }else{
+                    abandon(task, "retry budget used up");
+                }
+                continue;
+            }
+
+            // schedule it
+            queueOrDefer(task);
         }
+
+        // try deferred retries again once the budget window has moved on
+        deferredRetries.stream().forEach(t -> retryQueue.add(new Retry(t, retryBudget.getDeferDelay())));
     }
 
     // collect all the failed tasks from each server and add them to the retryQueue if they can be retried
-    private void collectFailedTasks(List<Server> servers){
-        // collect failed tasks into one list
-        List<Task> failedTasks = servers.stream().map(Server::getFailedTasks).flatMap(list -> list.stream()).collect(Collectors.toList());
+    private void collectFailedTasks(){
+        // count the failures & queue retries for each server's failed tasks
+        failedBatch.forEach(this::recordFailures);
+    }
+
+    // re-places tasks that were lost by a server during the last batch
+    // if the server is gone or offline the task never really ran, so it's re-placed without counting an attempt
+    // if the server is still up, the task is treated like any other failure (so a broken server can't loop forever)
+    private void collectLostTasks(){
+        lostTasks.forEach((s, tasks) -> {
+            // check if the server left or went offline
+            if(!servers.contains(s) || !s.isOnline()){
+                // log and re-place each task
+                tasks.stream().forEach(t -> {
+                    LOGGER.warning("task lost by departed server, re-placing. id: " + t.getId());
+                    replaceTask(t);
+                });
+            }else{
+                // server is still up, count as failures
+                recordFailures(s, tasks);
+            }
+        });
+
+        // lost tasks have been handled
+        lostTasks = new IdentityHashMap<>();
+    }
+
+    // updates attempt counts for tasks that failed on a server and adds them to the retryQueue if they can be retried
+    private void recordFailures(Server server, List<Task> failed){
+        // tasks that were cancelled aren't retried
+        List<Task> failedTasks = failed.stream().filter(t -> !dropIfCancelled(t)).collect(Collectors.toList());
+
+        // remember the server so retries go somewhere else
+        failedTasks.stream().map(Task::getId).forEach(id -> failedOn.computeIfAbsent(id, k -> new HashSet<>()).add(server));
 
         // update task attempt numbers
         failedTasks.stream().map(Task::getId).forEach(id -> {
-            // increment existing counts
-            Integer attemptNum = taskAttempts.computeIfPresent(id, (key, value) -> value + 1); 
-
-            // put in 1 if this is first retry (task not present in attempts list)
-            if(attemptNum == null){
-                taskAttempts.put(id, 1);
-                attemptNum = 1;
-            }
+            // increment the count (0 if this is the first failure)
+            int attemptNum = attemptsOf(id) + 1;
+            setAttempts(id, attemptNum);
 
             // log failed task
             LOGGER.warning("task fail # " + attemptNum + ". id: " + id);
+            if(journal != null)
+                journal.failed(id, attemptNum);
         });
 
         // if a task can be re-attempted, add it to the retryQueue
         failedTasks.stream().forEach(task -> {
             // get task attempt count
-            int attemptNum = taskAttempts.get(task.getId());
+            int attemptNum = attemptsOf(task.getId());
 
             // if task has not exceeded attempt limit, put on the retryQueue
             if(attemptNum < retryPolicy.getMaxAttempts())
-                retryQueue.add(new Retry(task, retryPolicy.getTimeoutForAttempt(taskAttempts.get(task.getId()))));
-            else // log that task gets abandoned
-                LOGGER.severe("task abandoned due to too many attempts. id: " + task.getId());
+                retryQueue.add(new Retry(task, retryPolicy.getTimeoutForAttempt(attemptNum)));
+            else // abandon the task
+                abandon(task, "too many attempts");
         });
     }
 
-    // this function schedules a task to a server without checking anything 
+    // scores each server by its success rate so far (from ServerStats) and re-sorts waitTimes with the new scores
+    private void updateReliability(){
+        // score every server
+        Map<Server, Double> scores = new IdentityHashMap<>();
+        servers.stream().forEach(s -> {
+            // servers that can't report stats keep their current score
+            ServerStats stats = s.getStats();
+            if(stats != null)
+                scores.put(s, reliabilityOf(stats));
+        });
+
+        // update each ServerWait and rebuild the queues so they're sorted by the new scores
+        waitTimes.replaceAll((priority, queue) -> {
+            queue.stream().forEach(sw -> sw.reliability = scores.getOrDefault(sw.server, sw.reliability));
+            return new PriorityQueue<>(queue);
+        });
+        deadlineWaits.stream().forEach(sw -> sw.reliability = scores.getOrDefault(sw.server, sw.reliability));
+        deadlineWaits = new PriorityQueue<>(deadlineWaits);
+    }
+
+    // returns a reliability score between 0 and 1 from a server's success rate
+    // uses (completed + 1) / (attempted + 1) so a new server starts at 1 and one bad task doesn't sink a server to 0
+    private static double reliabilityOf(ServerStats stats){
+        return (stats.getTasksCompleted() + 1.0) / (stats.getTasksAttempted() + 1.0);
+    }
+
+    // schedules a task to a server, or with tenant fairness on, holds it with its tenant's tasks until the next batch starts
     private synchronized void queueTask(Task task){
+        if(tenantFairness){
+            tenantQueues.computeIfAbsent(task.getTenant(), k -> new ArrayDeque<>()).add(task);
+            heldTasks++;
+            return;
+        }
+        placeTask(task);
+    }
+
+    // places the tasks waiting by tenant on the servers by dominant resource fairness: the next task always comes from the tenant
+    // with the lowest dominant share (the most it uses of the servers' cpus, their memory or the batch's tasks, over its share)
+    // so a tenant that submits far more tasks still only gets its share of the batch. tenants at their limit wait for the next batch
+    private void dispatchTenantTasks(){
+        if(heldTasks == 0)
+            return;
+
+        // what the batch has to share (servers without a capacity don't count towards the resources)
+        double cpus = 0;
+        long memory = 0;
+        for(Server server : servers){
+            Resources capacity = server.getCapacity();
+            if(capacity != null && server.isOnline()){
+                cpus += capacity.getCpus();
+                memory += capacity.getMemoryMb();
+            }
+        }
+        Resources total = new Resources(cpus, memory);
+        int batchTasks = heldTasks;
+
+        // each tenant's dominant share of the batch so far, the tasks it placed & the tenants the servers are full for
+        Map<String, Double> used = new HashMap<>();
+        Map<String, Integer> placed = new HashMap<>();
+        Set<String> full = new HashSet<>();
+        while(true){
+            // the tenant furthest below its share (ties go to the tenant that showed up first)
+            String next = null;
+            double lowest = Double.MAX_VALUE;
+            for(Map.Entry<String, ArrayDeque<Task>> e : tenantQueues.entrySet()){
+                String tenant = e.getKey();
+                if(e.getValue().isEmpty() || full.contains(tenant) || placed.getOrDefault(tenant, 0) >= tenantLimits.getOrDefault(tenant, Integer.MAX_VALUE))
+                    continue;
+                double share = used.getOrDefault(tenant, 0.0) / tenantShares.getOrDefault(tenant, 1);
+                if(share < lowest){
+                    next = tenant;
+                    lowest = share;
+                }
+            }
+            if(next == null)
+                break;
+
+            // place its next task
+            ArrayDeque<Task> queue = tenantQueues.get(next);
+            Task task = queue.poll();
+            heldTasks--;
+            if(dropIfCancelled(task))
+                continue;
+            try{
+                placeTask(task);
+            }catch(SchedulerFullException e){
+                // try it again next batch
+                queue.addFirst(task);
+                heldTasks++;
+                full.add(next);
+                continue;
+            }catch(SchedulerException e){
+                // nowhere to put the task
+                abandon(task, "no servers available");
+                continue;
+            }
+            used.merge(next, Math.max(task.getResources().dominantShareOf(total), 1.0 / batchTasks), Double::sum);
+            placed.merge(next, 1, Integer::sum);
+        }
+
+        // forget tenants with nothing waiting
+        tenantQueues.values().removeIf(ArrayDeque::isEmpty);
+    }
+
+    // this function schedules a task to a server without checking anything 
+    private synchronized void placeTask(Task task){
+        // apply any servers that joined or left so the task isn't placed on a server that's gone
+        applyMembershipChanges();
+
         // holds the destination server
         ServerWait destServer = null;
 
+        // the priority the task is queued at (higher than its own if it inherited one)
+        Submission submission = inFlight.get(task.getId());
+        TaskPriority priority = submission != null && submission.priority.compareTo(task.getPriority()) > 0 ? submission.priority : task.getPriority();
+
+        // the servers' expected waits for this task (tasks with deadlines have their own in earliest deadline first order)
+        PriorityQueue<ServerWait> waits = dispatchOrder == DispatchOrder.EARLIEST_DEADLINE_FIRST && task.getDeadline() != null
+            ? deadlineWaits : waitTimes.get(priority);
+
         // holds a list of servers that were pulled from waitTimes (which need to be added back after an appropriate server is found)
         List<ServerWait> polledServers = new ArrayList<>();
 
+        // servers this task already failed on. they're only used if no other server takes the task
+        Set<Server> avoid = failedOn.getOrDefault(task.getId(), Set.of());
+        List<ServerWait> avoidedServers = new ArrayList<>();
+
+        // counts servers the task was offered to & the ones that turned it away because their queue was full
+        int triedServers = 0;
+        int fullServers = 0;
+
+        // tasks with labels or an affinity are offered to the servers they're routed to first (their entries stay in waits)
+        // tasks with required labels aren't offered to any other server
+        List<ServerWait> routed = route(task, waits == deadlineWaits ? null : priority);
+        Iterator<ServerWait> routedOrder = routed == null ? null : routed.iterator();
+        // the routed servers, so they aren't offered the task again when it falls back to the rest
+        Set<Server> routedServers = routed == null ? Set.of() : routed.stream().map(w -> w.server).collect(Collectors.toSet());
+        boolean constrained = !task.getRequiredLabels().isEmpty();
+
+        // tasks that need resources are offered to servers best fit first (the one left with the least room once the task is on it)
+        // ties, & servers without a capacity, go by the shortest wait
+        Iterator<ServerWait> bestFit = null;
+        Resources needs = task.getResources();
+        if(!needs.isNone() && !constrained){
+            while(!waits.isEmpty())
+                polledServers.add(waits.poll());
+            List<ServerWait> byFit = new ArrayList<>(polledServers);
+            byFit.sort(Comparator.comparingDouble(w -> roomLeft(w.server, needs)));
+            bestFit = byFit.iterator();
+        }
+
         // find the first available server with the shortest wait of this task's priority level
-        while(true){
-            // get server with shortest waitTime
-            destServer = waitTimes.get(task.getPriority()).poll();
+        while(destServer == null){
+            // get the next server the task is routed to, the best fitting server, or the one with the shortest waitTime
+            ServerWait candidate;
+            boolean fromRouted = routedOrder != null && routedOrder.hasNext();
+            if(fromRouted)
+                candidate = routedOrder.next();
+            else if(constrained)
+                candidate = null;
+            else if(bestFit != null)
+                candidate = bestFit.hasNext() ? bestFit.next() : null;
+            else{
+                // add to polledServers list
+                candidate = waits.poll();
+                if(candidate != null)
+                    polledServers.add(candidate);
+            }
 
-            // check to make sure a server is available
-            if(destServer == null){
+            if(candidate != null){
+                // skip servers the task was already routed to
+                if(!fromRouted && routedServers.contains(candidate.server))
+                    continue;
+
+                // skip server if it's offline
+                if(!candidate.server.isOnline())
+                    continue;
+
+                // skip servers too small to ever hold the task (they don't count as full)
+                Resources capacity = candidate.server.getCapacity();
+                if(capacity != null && !needs.fitsIn(capacity))
+                    continue;
+
+                // hold back servers the task failed on
+                if(avoid.contains(candidate.server)){
+                    avoidedServers.add(candidate);
+                    continue;
+                }
+            }else if(!avoidedServers.isEmpty()){
+                // every other server was tried, fall back to a server the task failed on
+                candidate = avoidedServers.remove(0);
+            }else{
                 // add polled servers back
-                polledServers.stream().forEach(sw -> waitTimes.get(task.getPriority()).add(sw));
+                polledServers.stream().forEach(waits::add);
+
+                // if every reachable server was full, report overload so the caller can back off
+                if(fullServers > 0 && fullServers == triedServers)
+                    throw new SchedulerFullException("all servers are full, could not schedule task. id: " + task.getId());
                 
                 // throw exception
+                if(constrained)
+                    throw new SchedulerException("no servers with labels " + task.getRequiredLabels() + " are available to schedule task to. id: " + task.getId());
                 throw new SchedulerException("no servers are available to schedule task to");
             }
 
-            // add to polledServers list
-            polledServers.add(destServer);
-
-            // skip server if it's offline
-            if(!destServer.server.isOnline())
-                continue;
-
             // try to add the task to the server
             try{
-                destServer.server.addTask(task);
-                break;
+                triedServers++;
+                if(priority == task.getPriority())
+                    candidate.server.addTask(task);
+                else
+                    candidate.server.addTask(task, priority);
+                destServer = candidate;
+            }catch(ServerFullException e){
+                // server is overloaded for this priority, try the next server
+                LOGGER.log(Level.WARNING, "server full, trying next server: {0}", e.getMessage());
+                fullServers++;
             }catch(ServerException e){
                 // server threw some error while trying to add a task, report error and go on to next server
                 LOGGER.log(Level.WARNING, "server unavailable for scheduling: {0}", e.toString());
             }
         }
 
-        // add the expected duration of this task to the server wait time
+        // flag tasks predicted to miss their deadline (the work queued ahead of it plus its own estimate) before they run
+        if(task.getDeadline() != null){
+            long late = System.currentTimeMillis() + destServer.expectedWait.toMillis() + task.getEstimatedDuration().toMillis() - task.getDeadline().toEpochMilli();
+            if(late > 0){
+                LOGGER.warning("task predicted to miss its deadline by " + late + "ms. id: " + task.getId());
+                performanceMonitor.recordPredictedDeadlineMiss();
+            }
+        }
+
+        // add the expected duration of this task to the server wait time (taking a routed server's entry out of waits while it changes)
+        boolean inWaits = routed != null && !polledServers.contains(destServer);
+        if(inWaits)
+            waits.remove(destServer);
         destServer.expectedWait = destServer.expectedWait.add(task.getEstimatedDuration());
+        if(inWaits)
+            waits.add(destServer);
+
+        // remember where the task went in case the server leaves before executing it (& so cancel can find it)
+        placements.computeIfAbsent(destServer.server, k -> new ArrayList<>()).add(task.getId());
+        if(submission != null){
+            submission.server = destServer.server;
+            // the task is only kept to move it up when it inherits a priority, so a spilled backlog isn't held here either
+            submission.inheritance = priorityInheritance ? new Inheritance(null, task, batchNumber) : null;
+        }
+
+        // count the dispatch towards the retry budget
+        if(retryBudget != null)
+            retryBudget.recordDispatch();
+
+        // journal the placement
+        if(journal != null)
+            journal.placed(task.getId());
 
         // add all servers pulled from waitTimes back (which sorts it back into the queue)
-        polledServers.stream().forEach(sw -> waitTimes.get(task.getPriority()).add(sw));
+        polledServers.stream().forEach(waits::add);
 
         // set tasksQueued to true since a task just got queued
         tasksQueued = true;
@@ -302,6 +1653,355 @@ public class TaskScheduler {
         LOGGER.info("task scheduled to server. id: " + task.getId());
     }
 
+    // returns the servers a task is routed to in the order to try them, or null if it has no labels or affinity
+    // the server its affinity task ran on (or is queued on) comes first, then servers with all its preferred labels, then (if it
+    // has required labels) the rest of the servers with all of those. each group goes best fit first, then shortest wait
+    // servers are found through labelIndex rather than by going through every server
+    // priority picks the entries for the task's priority (null for the deadline entries)
+    private List<ServerWait> route(Task task, TaskPriority priority){
+        Set<String> required = task.getRequiredLabels();
+        Set<String> preferred = task.getPreferredLabels();
+        String affinity = task.getAffinity();
+        if(required.isEmpty() && preferred.isEmpty() && affinity == null)
+            return null;
+
+        // the servers allowed to run it (null means any)
+        Set<Server> allowed = required.isEmpty() ? null : labelled(required);
+
+        // group each server by how well it suits the task
+        Map<Server, Integer> groups = new LinkedHashMap<>();
+        if(affinity != null){
+            Server ranOn = lastRanOn.get(affinity);
+            Submission pending = inFlight.get(affinity);
+            if(pending != null && pending.server != null)
+                ranOn = pending.server;
+            if(ranOn != null && priorityEntries.containsKey(ranOn) && (allowed == null || allowed.contains(ranOn)))
+                groups.put(ranOn, 0);
+        }
+        if(!preferred.isEmpty())
+            labelled(preferred).stream().filter(s -> allowed == null || allowed.contains(s)).forEach(s -> groups.putIfAbsent(s, 1));
+        if(allowed != null)
+            allowed.stream().forEach(s -> groups.putIfAbsent(s, 2));
+
+        // order the servers' entries
+        Resources needs = task.getResources();
+        List<ServerWait> routed = new ArrayList<>(groups.size());
+        groups.keySet().stream().forEach(s -> routed.add(priority == null ? deadlineEntries.get(s) : priorityEntries.get(s).get(priority)));
+        routed.sort(Comparator.comparingInt((ServerWait w) -> groups.get(w.server))
+            .thenComparingDouble(w -> needs.isNone() ? 0 : roomLeft(w.server, needs))
+            .thenComparingDouble(ServerWait::weightedWait));
+        return routed;
+    }
+
+    // returns the servers with every one of labels (starting from the label the fewest servers have)
+    private Set<Server> labelled(Set<String> labels){
+        Set<Server> rarest = null;
+        for(String label : labels){
+            Set<Server> withLabel = labelIndex.getOrDefault(label, Set.of());
+            if(rarest == null || withLabel.size() < rarest.size())
+                rarest = withLabel;
+        }
+        Set<Server> matching = new LinkedHashSet<>();
+        for(Server server : rarest)
+            if(labels.stream().allMatch(l -> labelIndex.get(l).contains(server)))
+                matching.add(server);
+        return matching;
+    }
+
+    // the room a server would have left with a task's resources set aside, as a share of its capacity in its least used resource
+    // servers without a capacity count as having all their room left, servers the task doesn't fit on come last
+    private static double roomLeft(Server server, Resources needs){
+        Resources capacity = server.getCapacity();
+        if(capacity == null)
+            return 1;
+        Resources free = capacity.minus(server.getReservedResources());
+        if(!needs.fitsIn(free))
+            return Double.MAX_VALUE;
+        Resources left = free.minus(needs);
+        return Math.max(Resources.shareOf(left.getCpus(), capacity.getCpus()), Resources.shareOf(left.getMemoryMb(), capacity.getMemoryMb()));
+    }
+
+    // queues a task, holding on to it until after the next batch if every server is full
+    private void queueOrDefer(Task task){
+        // cancelled tasks sitting in the retry queue, the deferred list or waiting on dependencies are dropped here
+        if(dropIfCancelled(task))
+            return;
+
+        try{
+            queueTask(task);
+        }catch(SchedulerFullException e){
+            // keep the task for later instead of losing it
+            LOGGER.warning("all servers are full, deferring task. id: " + task.getId());
+            deferredTasks.add(task);
+        }
+    }
+
+    // queues every deferred task again (tasks that still don't fit are deferred again)
+    private void scheduleDeferredTasks(){
+        // take the current list so tasks that get deferred again go into a new one
+        List<Task> deferred = deferredTasks;
+        deferredTasks = new ArrayList<>();
+
+        deferred.stream().forEach(this::queueOrDefer);
+    }
+
+    // places a task on another server, abandoning it if no servers are left
+    private void replaceTask(Task task){
+        // don't re-place cancelled tasks
+        if(dropIfCancelled(task))
+            return;
+
+        try{
+            queueTask(task);
+        }catch(SchedulerFullException e){
+            // servers are there but full, try again after the next batch
+            deferredTasks.add(task);
+        }catch(SchedulerException e){
+            // nowhere to put the task
+            abandon(task, "no servers available");
+        }
+    }
+
+    // logs & journals a task the scheduler is giving up on, and hands it to the result sink
+    private void abandon(Task task, String reason){
+        LOGGER.severe("task abandoned due to " + reason + ". id: " + task.getId());
+        failedOn.remove(task.getId());
+        setAttempts(task.getId(), 0);
+        if(journal != null)
+            journal.abandoned(task.getId());
+        if(resultSink != null)
+            resultSink.abandoned(task, reason);
+
+        // fail its handle
+        Submission submission = inFlight.remove(task.getId());
+        if(submission != null)
+            submission.fail(new TaskAbandonedException(task, reason));
+    }
+
+    // applies all queued server joins & leaves
+    private synchronized void applyMembershipChanges(){
+        // apply changes in the order they were made
+        MembershipChange change;
+        while((change = membershipChanges.poll()) != null){
+            if(change.joining)
+                joinServer(change.server);
+            else
+                leaveServer(change.server);
+        }
+    }
+
+    // adds a server to waitTimes and the server list
+    private void joinServer(Server server){
+        // ignore servers that are already members
+        if(members.containsKey(server)){
+            LOGGER.warning("server is already in taskScheduler");
+            return;
+        }
+
+        // log server addition
+        LOGGER.info("server added to taskScheduler");
+
+        // defensively copy server if DEBUG is false (want to allow mocks through while debugging)
+        Server copy = DEBUG ? server : new Server(server);
+        members.put(server, copy);
+
+        // for each TaskPriority, add a new ServerWait entry to the waitTimes
+        Map<TaskPriority, ServerWait> entries = new EnumMap<>(TaskPriority.class);
+        waitTimes.forEach((priority, serverList) -> {
+            ServerWait entry = new ServerWait(Duration.ofMillis(0), copy);
+            entries.put(priority, entry);
+            serverList.add(entry);
+        });
+        ServerWait deadlineEntry = new ServerWait(Duration.ofMillis(0), copy);
+        deadlineWaits.add(deadlineEntry);
+        priorityEntries.put(copy, entries);
+        deadlineEntries.put(copy, deadlineEntry);
+
+        // index it by its labels
+        copy.getLabels().stream().forEach(label -> labelIndex.computeIfAbsent(label, k -> new LinkedHashSet<>()).add(copy));
+
+        // replace the server list
+        List<Server> updated = new ArrayList<>(servers);
+        updated.add(copy);
+        servers = updated;
+
+        // the new server takes tasks in the same order
+        if(dispatchOrder != DispatchOrder.PRIORITY)
+            copy.setDispatchOrder(dispatchOrder);
+        if(agingInterval != null)
+            copy.setPriorityAging(agingInterval);
+        priorityWeights.forEach(copy::setPriorityWeight);
+
+        // the new server shares the result cache
+        if(resultCache != null)
+            copy.setResultCache(resultCache);
+
+        // the new server hedges with the same policy & can take backups
+        if(hedgingPolicy != null){
+            copy.setHedgingPolicy(hedgingPolicy);
+            hedgingPolicy.setServers(servers);
+        }
+    }
+
+    // removes a server from waitTimes and the server list, then re-places the tasks that were waiting on it
+    private void leaveServer(Server server){
+        // find the server the scheduler is using
+        Server copy = members.remove(server);
+        if(copy == null){
+            LOGGER.warning("tried to remove a server that isn't in taskScheduler");
+            return;
+        }
+
+        // log server removal
+        LOGGER.info("server removed from taskScheduler");
+
+        // remove the server's entry from every priority level
+        waitTimes.values().stream().forEach(q -> q.removeIf(sw -> sw.server == copy));
+        deadlineWaits.removeIf(sw -> sw.server == copy);
+        priorityEntries.remove(copy);
+        deadlineEntries.remove(copy);
+
+        // take it out of the label index
+        copy.getLabels().stream().forEach(label -> {
+            Set<Server> withLabel = labelIndex.get(label);
+            withLabel.remove(copy);
+            if(withLabel.isEmpty())
+                labelIndex.remove(label);
+        });
+
+        // replace the server list
+        List<Server> updated = new ArrayList<>(servers);
+        updated.remove(copy);
+        servers = updated;
+
+        // backups can't go to the server anymore
+        if(hedgingPolicy != null)
+            hedgingPolicy.setServers(servers);
+
+        // re-place tasks that were queued to the server but haven't run
+        List<String> stranded = placements.remove(copy);
+        if(stranded != null)
+            placedTasks(copy, stranded).stream().forEach(t -> {
+                LOGGER.info("re-placing task from removed server. id: " + t.getId());
+                replaceTask(t);
+            });
+    }
+
+    // reads the tasks with the given ids back from the server they were placed on (placements only keeps ids)
+    private List<Task> placedTasks(Server server, List<String> ids){
+        Set<String> wanted = new HashSet<>(ids);
+        List<Task> tasks = server.getUnfinishedTasks().stream().filter(t -> wanted.remove(t.getId())).collect(Collectors.toList());
+
+        // a server that can't give a task back can't have it re-placed, so fail its handle instead of leaving it waiting
+        wanted.forEach(id -> {
+            LOGGER.severe("placed task not found on its server. id: " + id);
+            failedOn.remove(id);
+            setAttempts(id, 0);
+            if(journal != null)
+                journal.abandoned(id);
+            Submission submission = inFlight.remove(id);
+            if(submission != null)
+                submission.fail(new SchedulerException("task lost by its server. id: " + id));
+        });
+        return tasks;
+    }
+
+    // a pending or running task's entry in the in flight index
+    // there's one per queued task, so it only holds what every task needs (the handle & priority inheritance state are made when used)
+    private static class Submission {
+        // completes when the task finishes (null until someone asks for it, see handle())
+        private CompletableFuture<Task> handle = null;
+
+        // the server the task was last placed on (null if it hasn't been placed)
+        volatile Server server = null;
+
+        // when the task was submitted (for its latency)
+        final long submittedAt = System.nanoTime();
+
+        // the priority the task runs at: its own, or higher if it inherited one from a task waiting on it
+        TaskPriority priority;
+        // what's needed to pass an inherited priority on (only kept with priority inheritance)
+        Inheritance inheritance = null;
+
+        Submission(TaskPriority priorityValue){
+            priority = priorityValue;
+        }
+
+        // true once the task is cancelled (it's dropped the next time the scheduler comes across it)
+        volatile boolean cancelled = false;
+
+        // returns the handle, making it the first time it's asked for
+        synchronized CompletableFuture<Task> handle(){
+            if(handle == null){
+                handle = new CompletableFuture<>();
+                if(cancelled)
+                    handle.cancel(false);
+            }
+            return handle;
+        }
+
+        // completes the handle with the finished task (made here if nobody asked yet, in case someone still holds this entry)
+        synchronized void complete(Task task){
+            handle().complete(task);
+        }
+
+        // completes the handle exceptionally
+        synchronized void fail(Throwable e){
+            handle().completeExceptionally(e);
+        }
+
+        // marks the task cancelled & cancels its handle. returns false if it was already cancelled
+        synchronized boolean cancel(){
+            if(cancelled)
+                return false;
+            cancelled = true;
+            if(handle != null)
+                handle.cancel(false);
+            return true;
+        }
+    }
+
+    // what priority inheritance needs to pass a task's priority on: its dependency tracking while it waits on other tasks,
+    // or the task & the batch it was placed in (it's still queued on its server if no batch has started since)
+    private static class Inheritance {
+        final Dependency dependency;
+        final Task queuedTask;
+        final long queuedBatch;
+
+        Inheritance(Dependency dependencyValue, Task queuedTaskValue, long queuedBatchValue){
+            dependency = dependencyValue;
+            queuedTask = queuedTaskValue;
+            queuedBatch = queuedBatchValue;
+        }
+    }
+
+    // a delayed or recurring task waiting in the timer wheel (period is null if it only runs once)
+    private static class DelayedTask {
+        final Task task;
+        final Duration period;
+        final long due;
+
+        DelayedTask(Task taskValue, Duration periodValue, long dueValue){
+            task = taskValue;
+            period = periodValue;
+            due = dueValue;
+        }
+    }
+
+    // a server joining or leaving the scheduler
+    private static class MembershipChange {
+        // the server
+        final Server server;
+
+        // true if the server is joining, false if it's leaving
+        final boolean joining;
+
+        MembershipChange(Server s, boolean join){
+            server = s;
+            joining = join;
+        }
+    }
+
     // this is an entry class to maintain a list of servers sorted by expected wait time
     private class ServerWait implements Comparable<ServerWait> {
         // the expected wait for this entry (serves as the key)
@@ -310,25 +2010,42 @@ public class TaskScheduler {
         // the server (serves as the value)
         public Server server;
 
+        // how reliable the server has been (0 to 1). less reliable servers look like they have a longer wait
+        public double reliability = 1;
+
         ServerWait(Duration d, Server s){
             expectedWait = d;
             server = s;
         }
 
+        // the wait used for sorting: the expected wait (plus 1ms so idle servers still differ) scaled up by unreliability
+        double weightedWait(){
+            return (expectedWait.toMillis() + 1) / reliability;
+        }
+
         // used to compare wait times
         @Override
         public int compareTo(ServerWait other){
-            return expectedWait.compareTo(other.expectedWait);
+            return Double.compare(weightedWait(), other.weightedWait());
         }
     }
 
     // keeps track of the dependency status of a task
     private class Dependency {
-        // the task which has the dependencies
-        final Task dependentTask;
+        // id of the task which has the dependencies
+        final String taskId;
+
+        // the task which has the dependencies (null while it's spilled)
+        private Task dependentTask;
 
-        // map keeping track of the completion status of each dependency
-        final Map<String, Boolean> prereqStatus = new HashMap<>();
+        // the store the task is spilled to & its handle there
+        private SpillStore spilledTo = null;
+        private long spillHandle;
+
+        // handles of the dependencies that haven't completed yet (NONE once a dependency completes & its handle is let go)
+        private final int[] prereqs;
+        // number of dependencies that haven't completed yet
+        private int remaining;
 
         Dependency(Task task){
             // confirm not null
@@ -339,20 +2056,91 @@ public class TaskScheduler {
             
             // initialize variables
             dependentTask = task;
-            task.getDependencies().stream().forEach(depId -> prereqStatus.put(depId, false));
+            taskId = task.getId();
+            prereqs = task.getDependencies().stream().mapToInt(taskIds::acquire).toArray();
+            remaining = prereqs.length;
+            // dependencies that completed earlier (in this run, an earlier one or before a restart) are already fulfilled
+            markCompleted(completedIds::containsHandle);
+        }
+
+        // moves the task into the scheduler's spill store (if it has one)
+        void spill(){
+            if(spillStore == null || dependentTask == null)
+                return;
+            spilledTo = spillStore;
+            spillHandle = spilledTo.put(dependentTask);
+            dependentTask = null;
+        }
+
+        // returns the task, leaving it in the spill store
+        Task peekTask(){
+            return dependentTask != null ? dependentTask : spilledTo.get(spillHandle);
+        }
+
+        // returns the task, taking it out of the spill store
+        Task takeTask(){
+            if(dependentTask == null){
+                dependentTask = spilledTo.take(spillHandle);
+                spilledTo = null;
+            }
+            return dependentTask;
+        }
+
+        // frees the task's space in the spill store & its dependency handles when the task won't run
+        void discard(){
+            if(spilledTo != null)
+                spilledTo.release(spillHandle);
+            spilledTo = null;
+            for(int i = 0; i < prereqs.length; i++)
+                fulfill(i);
+        }
+
+        // tests if the task is still waiting on the id with this handle
+        boolean waitsOn(int handle){
+            for(int prereq : prereqs)
+                if(prereq == handle)
+                    return true;
+            return false;
         }
 
         // this function tells whether all of the dependencies have been fulfilled yet
         public boolean canRun(){
-            return prereqStatus.values().stream().reduce(true, (l, r) -> l && r);
+            return remaining == 0;
+        }
+
+        // sets the dependencies whose handles are completed as fulfilled
+        public void markCompleted(IntPredicate completedHandles){
+            for(int i = 0; i < prereqs.length; i++)
+                if(prereqs[i] != TaskIdRegistry.NONE && completedHandles.test(prereqs[i]))
+                    fulfill(i);
+        }
+
+        // sets the dependencies in a set of completed ids as fulfilled (checks each dependency instead of each id, for big sets)
+        public void markCompleted(Set<String> completedTaskIds){
+            for(int i = 0; i < prereqs.length; i++)
+                if(prereqs[i] != TaskIdRegistry.NONE && completedTaskIds.contains(taskIds.idOf(prereqs[i])))
+                    fulfill(i);
+        }
+
+        // returns the ids of the dependencies that haven't been fulfilled
+        List<String> unfulfilledIds(){
+            return Arrays.stream(prereqs).filter(h -> h != TaskIdRegistry.NONE).mapToObj(taskIds::idOf).collect(Collectors.toList());
+        }
+
+        // returns the ids of the dependencies that have been fulfilled (task is the dependent task)
+        Set<String> fulfilledIds(Task task){
+            Set<String> fulfilled = new HashSet<>(task.getDependencies());
+            Arrays.stream(prereqs).filter(h -> h != TaskIdRegistry.NONE).mapToObj(taskIds::idOf).forEach(fulfilled::remove);
+            return fulfilled;
         }
 
-        // this method searches through a list of task ids and will set the prereqStatus for any matching ids to true
-        // this doesn't change the status of previous calls to this method. so only give new task ids to this
-        // input: a list of ids containing ONLY completed tasks
-        public void checkForCompleteDependencies(List<String> completedTaskIds){
-            // iterates through all ids and changes the prereqStatus if the id matches (using computeIfPresent)
-            completedTaskIds.stream().forEach(id -> prereqStatus.computeIfPresent(id, (k, v) -> true));
+        // marks one dependency fulfilled & lets go of its handle
+        private void fulfill(int i){
+            if(prereqs[i] == TaskIdRegistry.NONE)
+                return;
+            taskIds.release(prereqs[i]);
+            prereqs[i] = TaskIdRegistry.NONE;
+            remaining--;
         }
     }
 
@@ -395,11 +2183,11 @@ public class TaskScheduler {
 
         // returns the amount of time until the task can be retried (or 0 if the task can be executed now)
         public java.time.Duration getTimeUntil(){
-            // subtract delayUntil from current time
-            long timeUntil = LocalTime.now().until(delayUntil, java.time.temporal.ChronoUnit.MILLIS);
+            // subtract delayUntil from current time (in nanoseconds, rounded up so sleeping this long always reaches delayUntil)
+            long timeUntil = LocalTime.now().until(delayUntil, java.time.temporal.ChronoUnit.NANOS);
 
             // make sure the time is not below 0 then return as java Duration
-            return java.time.Duration.ofMillis(Math.max(0, timeUntil));
+            return java.time.Duration.ofNanos(Math.max(0, timeUntil));
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package taskscheduler;
+
+import java.util.Iterator;
+import java.util.Objects;
+
+// a pull based stream of tasks. the scheduler only asks for the next task when it has room for it, so the source can read
+// tasks lazily (e.g. from a file) and never needs to hold the whole workload in memory
+public interface TaskSource extends Iterator<Task>, AutoCloseable {
+    // releases anything the source holds open (does nothing by default)
+    @Override
+    public default void close(){
+    }
+
+    // wraps an iterator as a TaskSource
+    public static TaskSource of(Iterator<? extends Task> tasks){
+        Objects.requireNonNull(tasks);
+        return new TaskSource(){
+            @Override
+            public boolean hasNext(){
+                return tasks.hasNext();
+            }
+
+            @Override
+            public Task next(){
+                return tasks.next();
+            }
+        };
+    }
+}
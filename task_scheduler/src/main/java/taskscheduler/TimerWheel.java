@@ -0,0 +1,146 @@
+package taskscheduler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+// a hierarchical timing wheel: timers sit in buckets by the time they're due, so adding one & collecting the ones that came due
+// don't depend on how many are waiting. the first level has wheelSize buckets tickMillis wide, each level above has buckets as
+// wide as the whole level below. timers too far out for a level go up one & move back down as their time gets closer
+// there's no thread behind it, the owner calls advance with the current time & gets back what came due
+// not thread safe (the scheduler synchronizes on it)
+public class TimerWheel<T> {
+    // width of a first level bucket & the number of buckets in each level
+    private final long tickMillis;
+    private final int wheelSize;
+
+    // the levels, first level first (levels are added as timers further out need them)
+    private final List<Level> levels = new ArrayList<>();
+
+    // the time the wheel was last advanced to
+    private long now;
+
+    // timers that were due when they were added or moved (handed out on the next advance)
+    private List<T> expired = new ArrayList<>();
+
+    // number of timers in the wheel
+    private int size = 0;
+
+    // creates a wheel that starts at startMillis
+    public TimerWheel(long startMillis, long tickMillisValue, int wheelSizeValue){
+        // bounds check
+        if(tickMillisValue < 1)
+            throw new IllegalArgumentException("tick must be at least 1ms");
+        if(wheelSizeValue < 2)
+            throw new IllegalArgumentException("wheel needs at least 2 buckets");
+
+        tickMillis = tickMillisValue;
+        wheelSize = wheelSizeValue;
+        now = startMillis;
+    }
+
+    // adds a timer that comes due at dueMillis (it comes due on the next advance if that's already passed)
+    public void add(T item, long dueMillis){
+        size++;
+        place(new Timer<>(item, dueMillis));
+    }
+
+    // moves the wheel up to nowMillis & returns the timers that came due (in no particular order)
+    // only the buckets between the last time & nowMillis are looked at, at most wheelSize per level
+    public List<T> advance(long nowMillis){
+        if(nowMillis > now){
+            // empty every bucket the time passed through, in every level (levels with no timers just move up)
+            boolean empty = size == expired.size();
+            List<Timer<T>> passed = new ArrayList<>();
+            for(Level level : levels){
+                long first = level.currentTime / level.tick;
+                long last = nowMillis / level.tick;
+                for(long t = first; !empty && t <= last && t < first + wheelSize; t++){
+                    ArrayDeque<Timer<T>> bucket = level.buckets.get((int)(t % wheelSize));
+                    passed.addAll(bucket);
+                    bucket.clear();
+                }
+                level.currentTime = last * level.tick;
+            }
+            now = nowMillis;
+
+            // the ones that are due are expired, the rest move down to the level that fits them now
+            passed.forEach(this::place);
+        }
+
+        // hand out the expired timers
+        List<T> due = expired;
+        expired = new ArrayList<>();
+        size -= due.size();
+        return due;
+    }
+
+    // takes a timer out before it comes due (dueMillis is the time it was added with, so only one bucket per level is looked at)
+    // returns false if it isn't in the wheel (it already came due or was never added)
+    public boolean remove(T item, long dueMillis){
+        // it's with the expired ones or in the bucket its time falls in on one of the levels
+        boolean removed = expired.removeIf(t -> t == item);
+        for(int i = 0; !removed && i < levels.size(); i++){
+            Level level = levels.get(i);
+            removed = level.buckets.get((int)((dueMillis / level.tick) % wheelSize)).removeIf(t -> t.item == item);
+        }
+        if(removed)
+            size--;
+        return removed;
+    }
+
+    // returns the number of timers in the wheel
+    public int size(){
+        return size;
+    }
+
+    // puts a timer in the lowest level whose range it falls in (or with the expired ones if it's due)
+    private void place(Timer<T> timer){
+        if(timer.due <= now){
+            expired.add(timer.item);
+            return;
+        }
+        for(int i = 0; ; i++){
+            Level level = i < levels.size() ? levels.get(i) : addLevel();
+
+            // it fits this level, or no level can be any wider without overflowing (it's checked again each time its bucket comes up)
+            if(timer.due - level.currentTime < level.tick * wheelSize || level.tick > Long.MAX_VALUE / wheelSize / wheelSize){
+                level.buckets.get((int)((timer.due / level.tick) % wheelSize)).add(timer);
+                return;
+            }
+        }
+    }
+
+    // adds a level above the highest one
+    private Level addLevel(){
+        long tick = levels.isEmpty() ? tickMillis : levels.get(levels.size() - 1).tick * wheelSize;
+        Level level = new Level(tick, now - now % tick);
+        levels.add(level);
+        return level;
+    }
+
+    // one level of the wheel: wheelSize buckets tick wide, starting from the bucket currentTime is in
+    private class Level {
+        final long tick;
+        final List<ArrayDeque<Timer<T>>> buckets = new ArrayList<>(wheelSize);
+        long currentTime;
+
+        Level(long tickValue, long currentTimeValue){
+            tick = tickValue;
+            currentTime = currentTimeValue;
+            for(int i = 0; i < wheelSize; i++)
+                buckets.add(new ArrayDeque<>());
+        }
+    }
+
+    // an item & when it's due
+    private static class Timer<T> {
+        final T item;
+        final long due;
+
+        Timer(T itemValue, long dueValue){
+            item = itemValue;
+            due = dueValue;
+        }
+    }
+}
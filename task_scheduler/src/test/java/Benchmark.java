@@ -0,0 +1,194 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import taskscheduler.*;
+
+// rough benchmarks that take too long to run with the tests
+// run with the test classpath: java Benchmark [restart|queue|ids] [number of tasks] [heap|spill|map|interned] [handles]
+public class Benchmark {
+    public static void main(String[] args) throws Exception {
+        // pick the benchmark & size
+        String name = args.length > 0 ? args[0] : "restart";
+        int tasks = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+        // only log warnings so logging doesn't dominate the timings
+        Logger root = Logger.getLogger("");
+        root.setLevel(Level.WARNING);
+        Arrays.stream(root.getHandlers()).forEach(h -> h.setLevel(Level.WARNING));
+
+        switch(name){
+            case "restart" -> restart(tasks);
+            case "queue" -> queue(tasks, args.length > 2 && args[2].equals("spill"), args.length > 3 && args[3].equals("handles"));
+            case "ids" -> ids(tasks, args.length > 2 && args[2].equals("interned"));
+            default -> System.out.println("unknown benchmark: " + name);
+        }
+    }
+
+    // compares restarting a scheduler with a backlog of tasks from the full journal vs from a snapshot + the journal tail
+    private static void restart(int tasks) throws Exception {
+        Path journalFile = Files.createTempFile("bench-journal", ".log");
+        Path snapshotFile = Files.createTempFile("bench-snapshot", ".bin");
+
+        // build the backlog
+        TaskJournal journal = new TaskJournal(journalFile);
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(new Server());
+        ts.setJournal(journal);
+        long start = System.nanoTime();
+        for(int i = 0; i < tasks; i++)
+            ts.scheduleTask(new SimpleTask("task" + i));
+        journal.commit();
+        System.out.println("journaled " + tasks + " submissions in " + millisSince(start) + "ms (" + journal.size() / 1024 / 1024 + "MB)");
+
+        // snapshot it (the pause is the time snapshot() takes to return, the write happens after)
+        start = System.nanoTime();
+        var written = ts.snapshot(snapshotFile);
+        System.out.println("snapshot pause: " + millisSince(start) + "ms");
+        written.get();
+        System.out.println("snapshot written in " + millisSince(start) + "ms (" + Files.size(snapshotFile) / 1024 / 1024 + "MB)");
+
+        // a few more tasks go into the journal tail
+        for(int i = 0; i < 1000; i++)
+            ts.scheduleTask(new SimpleTask("tail" + i));
+        journal.close();
+
+        // restart by replaying the whole journal
+        System.gc();
+        start = System.nanoTime();
+        TaskJournal replayJournal = new TaskJournal(journalFile);
+        TaskScheduler replayed = new TaskScheduler();
+        replayed.addServer(new Server());
+        replayed.setJournal(replayJournal);
+        System.out.println("restart from journal: " + millisSince(start) + "ms");
+        replayJournal.close();
+        replayed = null;
+
+        // restart from the snapshot and the tail
+        System.gc();
+        start = System.nanoTime();
+        TaskJournal tailJournal = new TaskJournal(journalFile);
+        TaskScheduler restored = new TaskScheduler();
+        restored.addServer(new Server());
+        restored.restore(snapshotFile, tailJournal);
+        System.out.println("restart from snapshot + tail: " + millisSince(start) + "ms");
+        tailJournal.close();
+
+        Files.delete(journalFile);
+        Files.delete(snapshotFile);
+    }
+
+    // queues tasks through the scheduler on one server with every task on the heap or with spilling, and reports gc time & heap used
+    // the scheduler keeps an in flight entry per queued task (& a handle if handles is true), the tasks themselves are left to the server's queue
+    // run each combination in a separate jvm so one doesn't affect the other's gc numbers
+    private static void queue(int tasks, boolean spill, boolean handles) throws Exception {
+        Path dir = Files.createTempDirectory("bench-spill");
+        SpillStore store = new SpillStore(dir);
+        Server server = new Server();
+        if(spill)
+            server.setSpillStore(store, 10_000);
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(server);
+
+        // fill the queue
+        long gcBefore = gcMillis();
+        long start = System.nanoTime();
+        for(int i = 0; i < tasks; i++){
+            if(handles)
+                ts.scheduleTask(new SimpleTask("task" + i));
+            else
+                ts.submitTask(new SimpleTask("task" + i));
+        }
+        System.out.println((spill ? "spill" : "heap") + (handles ? " with handles" : "") + ": queued " + tasks + " tasks in " + millisSince(start) + "ms, gc time while queueing: "
+            + (gcMillis() - gcBefore) + "ms");
+
+        // a full gc with the backlog live (how long a collection takes when the whole heap has to be walked)
+        start = System.nanoTime();
+        System.gc();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.out.println("full gc pause: " + millisSince(start) + "ms, heap used: " + memory.getHeapMemoryUsage().getUsed() / 1024 / 1024
+            + "MB, spilled: " + store.getStoredBytes() / 1024 / 1024 + "MB");
+        // keeps the scheduler & server (and the backlog) reachable until after the gc
+        System.out.println("still queued: " + server.getQueuedTaskCount());
+        Reference.reachabilityFence(ts);
+
+        store.close();
+        Files.delete(dir);
+    }
+
+    // compares the String keyed bookkeeping the scheduler used to do (HashMap attempt counts, HashSet completed ids) with
+    // interned handles (TaskIdRegistry, int[] attempt counts, BitSet completed ids): counts a failure, marks completed & looks up each id
+    // run map & interned in separate jvms so one doesn't affect the other's heap numbers
+    private static void ids(int tasks, boolean interned){
+        // the ids themselves are made first so they aren't counted in the heap used
+        String[] ids = new String[tasks];
+        for(int i = 0; i < tasks; i++)
+            ids[i] = "task" + i;
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long baseHeap = memory.getHeapMemoryUsage().getUsed();
+
+        long start = System.nanoTime();
+        long found = 0;
+        Object kept;
+        if(interned){
+            TaskIdRegistry registry = new TaskIdRegistry();
+            int[] attempts = new int[16];
+            BitSet completed = new BitSet();
+            for(String id : ids){
+                int handle = registry.acquire(id);
+                if(handle >= attempts.length)
+                    attempts = Arrays.copyOf(attempts, attempts.length * 2);
+                attempts[handle]++;
+            }
+            for(String id : ids)
+                completed.set(registry.acquire(id));
+            for(String id : ids){
+                int handle = registry.find(id);
+                if(completed.get(handle))
+                    found += attempts[handle];
+            }
+            kept = new Object[]{registry, attempts, completed};
+        }else{
+            Map<String, Integer> attempts = new HashMap<>();
+            Set<String> completed = new HashSet<>();
+            for(String id : ids)
+                attempts.merge(id, 1, Integer::sum);
+            for(String id : ids)
+                completed.add(id);
+            for(String id : ids)
+                if(completed.contains(id))
+                    found += attempts.get(id);
+            kept = new Object[]{attempts, completed};
+        }
+        long elapsed = millisSince(start);
+
+        // heap used by the bookkeeping
+        System.gc();
+        System.out.println((interned ? "interned" : "map") + ": " + tasks + " ids in " + elapsed + "ms, bookkeeping heap: "
+            + (memory.getHeapMemoryUsage().getUsed() - baseHeap) / 1024 / 1024 + "MB (found " + found + ")");
+        // keeps the bookkeeping reachable until after the gc
+        Reference.reachabilityFence(kept);
+    }
+
+    // total time spent in gc so far
+    private static long gcMillis(){
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    // milliseconds since a System.nanoTime() value
+    private static long millisSince(long start){
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
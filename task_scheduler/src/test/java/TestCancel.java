@@ -0,0 +1,128 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import taskscheduler.*;
+
+public class TestCancel {
+
+    @Test
+    public void testCancelQueued() {
+        // ensure that a cancelled task that's still queued doesn't run & is reported as cancelled
+        System.out.println("TEST 1\n");
+        Server server = new Server();
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(server);
+        CompletableFuture<Task> a = ts.scheduleTask(new SimpleTask("A"));
+        ts.scheduleTask(new SimpleTask("B"));
+        assertTrue(ts.cancel("A"));
+        assertFalse(ts.cancel("A"));
+        assertFalse(ts.cancel("unknown"));
+        assertTrue(a.isCancelled());
+        RecordingSink sink = new RecordingSink();
+        ts.executeAll(sink);
+        assertEquals(List.of("B"), sink.completed);
+        assertEquals(List.of("A: cancelled"), sink.abandoned);
+        // it can be submitted again once it's dropped
+        ts.scheduleTask(new SimpleTask("A"));
+        assertEquals(1, ts.executeAll().get(server).size());
+
+        // ensure that cancelling with cascade also cancels every task depending on it (directly or not)
+        System.out.println("TEST 2\n");
+        ts.scheduleTask(new SimpleTask("C"));
+        ts.scheduleTask(new TaskFactory("D").dependencies(new String[]{"C"}).build());
+        ts.scheduleTask(new TaskFactory("E").dependencies(new String[]{"D"}).build());
+        ts.scheduleTask(new SimpleTask("F"));
+        assertTrue(ts.cancel("C", true));
+        sink = new RecordingSink();
+        ts.executeAll(sink);
+        assertEquals(List.of("F"), sink.completed);
+        assertEquals(List.of("C: cancelled", "D: cancelled", "E: cancelled"), sink.abandoned.stream().sorted().toList());
+
+        // ensure that a task waiting to be retried is dropped instead of retried
+        System.out.println("TEST 3\n");
+        TaskScheduler retrying = new TaskScheduler(new RetryPolicy(3, new RetryPolicy.UniformTimeout(Duration.ofMillis(50))));
+        retrying.addServer(new Server());
+        retrying.scheduleTask(new SimpleTask("G"){
+            @Override
+            public boolean isCompleted(){
+                return false;
+            }
+        });
+        retrying.scheduleTask(new SimpleTask("H"));
+        sink = new RecordingSink(){
+            @Override
+            public void completed(Server s, Task task){
+                super.completed(s, task);
+                retrying.cancel("G");
+            }
+        };
+        retrying.executeAll(sink);
+        assertEquals(List.of("G: cancelled"), sink.abandoned);
+    }
+
+    @Test
+    public void testCancelRunning() throws InterruptedException {
+        // ensure that a running task is interrupted & cleaned up
+        System.out.println("TEST 1\n");
+        Server server = new Server();
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(server);
+        CleanupTask slow = new CleanupTask("slow", 3000);
+        CompletableFuture<Task> handle = ts.scheduleTask(slow);
+        Thread canceller = new Thread(() -> {
+            try{
+                Thread.sleep(200);
+            }catch(InterruptedException e){
+                return;
+            }
+            ts.cancel("slow");
+        });
+        canceller.start();
+        long start = System.currentTimeMillis();
+        List<Task> completed = ts.executeAll().get(server);
+        canceller.join();
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertTrue(completed.isEmpty());
+        assertFalse(slow.isCompleted());
+        assertEquals(1, slow.cleanups.get());
+        assertTrue(handle.isCancelled());
+    }
+
+    // sink that records what it's given
+    private static class RecordingSink implements ResultSink {
+        List<String> completed = new ArrayList<>();
+        List<String> abandoned = new ArrayList<>();
+
+        @Override
+        public void completed(Server server, Task task){
+            completed.add(task.getId());
+        }
+
+        @Override
+        public void abandoned(Task task, String reason){
+            abandoned.add(task.getId() + ": " + reason);
+        }
+    }
+
+    // task that counts its cleanups
+    private static class CleanupTask extends SimpleTask {
+        final AtomicInteger cleanups = new AtomicInteger();
+
+        CleanupTask(String id, long millis){
+            super(id, Duration.ofMillis(millis), millis);
+        }
+
+        @Override
+        public Future<Void> cleanup(){
+            cleanups.incrementAndGet();
+            return super.cleanup();
+        }
+    }
+}
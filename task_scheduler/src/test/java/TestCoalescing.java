@@ -0,0 +1,81 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import taskscheduler.*;
+
+public class TestCoalescing {
+
+    @Test
+    public void testDuplicates() {
+        // ensure that submitting the same id again while it's pending only runs it once
+        System.out.println("TEST 1\n");
+        Server server = new Server();
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(server);
+        ts.scheduleTask(new SimpleTask("A"));
+        ts.scheduleTask(new SimpleTask("A"));
+        ts.scheduleTask(new TaskFactory("B").dependencies(new String[]{"A"}).build());
+        ts.scheduleTask(new TaskFactory("B").dependencies(new String[]{"A"}).build());
+        assertEquals(2, ts.getCoalescedSubmissions());
+        assertEquals(List.of("A", "B"), ts.executeAll().get(server).stream().map(Task::getId).toList());
+        // once it finished, the id can run again
+        ts.scheduleTask(new SimpleTask("A"));
+        assertEquals(1, ts.executeAll().get(server).size());
+
+        // ensure that a duplicate submitted while the task is running (& then retried) attaches to it
+        System.out.println("TEST 2\n");
+        TaskScheduler retrying = new TaskScheduler(new RetryPolicy(3, new RetryPolicy.UniformTimeout(Duration.ofMillis(0))));
+        retrying.addServer(new Server());
+        FlakyTask flaky = new FlakyTask("F");
+        retrying.scheduleTask(flaky);
+        retrying.scheduleTask(new SimpleTask("A"));
+        List<String> completed = new ArrayList<>();
+        retrying.executeAll(new ResultSink(){
+            @Override
+            public void completed(Server s, Task task){
+                completed.add(task.getId());
+                // F failed in this batch & is waiting to be retried
+                if(task.getId().equals("A"))
+                    retrying.scheduleTask(new FlakyTask("F"));
+            }
+        });
+        assertEquals(List.of("A", "F"), completed);
+        assertEquals(2, flaky.runs.get());
+        assertEquals(1, retrying.getCoalescedSubmissions());
+
+        // ensure that an abandoned task can be submitted again
+        System.out.println("TEST 3\n");
+        ts.scheduleTask(new TaskFactory("C").dependencies(new String[]{"missing"}).build());
+        ts.scheduleTask(new TaskFactory("C").dependencies(new String[]{"missing"}).build());
+        ts.executeAll();
+        ts.scheduleTask(new SimpleTask("C"));
+        assertEquals(List.of("C"), ts.executeAll().get(server).stream().map(Task::getId).toList());
+        assertEquals(3, ts.getCoalescedSubmissions());
+    }
+
+    // task that fails its first run
+    private static class FlakyTask extends SimpleTask {
+        final AtomicInteger runs = new AtomicInteger();
+
+        FlakyTask(String id){
+            super(id);
+        }
+
+        @Override
+        public Future<Void> execute(){
+            runs.incrementAndGet();
+            return super.execute();
+        }
+
+        @Override
+        public boolean isCompleted(){
+            return runs.get() > 1 && super.isCompleted();
+        }
+    }
+}
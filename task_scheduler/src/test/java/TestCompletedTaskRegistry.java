@@ -0,0 +1,111 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import taskscheduler.*;
+
+public class TestCompletedTaskRegistry {
+
+    @Test
+    public void testLateDependents() {
+        // ensure that a dependent task submitted after its dependency finished in an earlier executeAll still runs
+        System.out.println("TEST 1\n");
+        Server server = new Server();
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(server);
+        ts.setCompletedRetention(null);
+        ts.scheduleTask(new SimpleTask("A"));
+        ts.executeAll();
+        ts.scheduleTask(new TaskFactory("B").dependencies(new String[]{"A"}).build());
+        Map<Server, List<Task>> completed = ts.executeAll();
+        assertEquals(List.of("B"), completed.get(server).stream().map(Task::getId).toList());
+        // without a journal, completed tasks can still be scheduled again
+        ts.scheduleTask(new SimpleTask("A"));
+        assertEquals(1, ts.executeAll().get(server).size());
+
+        // ensure that once the retention is up, a late dependent task is abandoned like before
+        System.out.println("TEST 2\n");
+        ts.setCompletedRetention(Duration.ofMillis(1));
+        sleep(5);
+        ts.scheduleTask(new TaskFactory("C").dependencies(new String[]{"A"}).build());
+        assertTrue(ts.executeAll().get(server).isEmpty());
+    }
+
+    @Test
+    public void testBounded() {
+        // ensure that with the default settings completed ids aren't kept at all
+        System.out.println("TEST 1\n");
+        Server server = new Server();
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(server);
+        for(int i = 0; i < 1000; i++)
+            ts.submitTask(new SimpleTask("task" + i));
+        ts.executeAll();
+        assertEquals(0, ts.getCompletedIdCount());
+
+        // ensure that once they're kept, only the most recent ones up to the capacity are
+        System.out.println("TEST 2\n");
+        ts.setCompletedRetention(null);
+        ts.setCompletedCapacity(100);
+        for(int round = 0; round < 5; round++){
+            for(int i = 0; i < 1000; i++)
+                ts.submitTask(new SimpleTask("round" + round + "-" + i));
+            ts.executeAll();
+            assertEquals(100, ts.getCompletedIdCount());
+        }
+        // the latest ones are still there for late dependent tasks, older ones aren't
+        ts.scheduleTask(new TaskFactory("late").dependencies(new String[]{"round4-999"}).build());
+        ts.scheduleTask(new TaskFactory("too-late").dependencies(new String[]{"round0-0"}).build());
+        assertEquals(List.of("late"), ts.executeAll().get(server).stream().map(Task::getId).toList());
+        assertThrows(IllegalArgumentException.class, () -> ts.setCompletedCapacity(-1));
+    }
+
+    @Test
+    public void testRegistry() {
+        // ensure that ids are remembered exactly, with or without the filter, and hold their handles while they're remembered
+        System.out.println("TEST 1\n");
+        TaskIdRegistry ids = new TaskIdRegistry();
+        CompletedTaskRegistry completed = new CompletedTaskRegistry(ids);
+        completed.setFilter(4);
+        for(int i = 0; i < 100; i++)
+            completed.add("task" + i);
+        completed.add("task0");
+        assertEquals(100, completed.size());
+        for(int i = 0; i < 100; i++)
+            assertTrue(completed.contains("task" + i));
+        for(int i = 100; i < 200; i++)
+            assertFalse(completed.contains("task" + i));
+        assertTrue(completed.containsHandle(ids.find("task5")));
+        completed.setFilter(0);
+        assertTrue(completed.contains("task99"));
+        assertFalse(completed.contains("task100"));
+        completed.clear();
+        assertEquals(0, ids.size());
+
+        // ensure that ids are forgotten (and their handles let go) once the retention is up
+        System.out.println("TEST 2\n");
+        completed.add("old");
+        completed.setRetention(Duration.ofMillis(20));
+        sleep(30);
+        completed.add("new");
+        assertFalse(completed.contains("old"));
+        assertTrue(completed.contains("new"));
+        assertEquals(Set.of("new"), completed.ids());
+        assertEquals(TaskIdRegistry.NONE, ids.find("old"));
+        sleep(30);
+        assertEquals(0, completed.size());
+        assertThrows(IllegalArgumentException.class, () -> completed.setFilter(-1));
+    }
+
+    private static void sleep(long millis){
+        try{
+            Thread.sleep(millis);
+        }catch(InterruptedException e){
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import taskscheduler.*;
+
+public class TestDeadline {
+
+    @Test
+    public void testEarliestDeadlineFirst() {
+        // ensure that tasks with deadlines run earliest deadline first ahead of every priority
+        System.out.println("TEST 1\n");
+        Server server = new Server();
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(server);
+        ts.setDispatchOrder(DispatchOrder.EARLIEST_DEADLINE_FIRST);
+        ts.scheduleTask(new TaskFactory("medium").priority("MEDIUM").build());
+        ts.scheduleTask(new DeadlineTask("high-tomorrow", TaskPriority.HIGH, 0, 86_400_000));
+        ts.scheduleTask(new DeadlineTask("low-soon", TaskPriority.LOW, 0, 50));
+        ts.scheduleTask(new TaskFactory("high").priority("HIGH").build());
+        List<String> order = ts.executeAll().get(server).stream().map(Task::getId).toList();
+        assertEquals(List.of("low-soon", "high-tomorrow", "high", "medium"), order);
+
+        // ensure that priority order ignores deadlines
+        System.out.println("TEST 2\n");
+        ts.setDispatchOrder(DispatchOrder.PRIORITY);
+        ts.scheduleTask(new DeadlineTask("low-soon", TaskPriority.LOW, 0, 50));
+        ts.scheduleTask(new TaskFactory("high").priority("HIGH").build());
+        assertEquals(List.of("high", "low-soon"), ts.executeAll().get(server).stream().map(Task::getId).toList());
+
+        // ensure that the order can't change under queued tasks
+        System.out.println("TEST 3\n");
+        ts.scheduleTask(new SimpleTask("queued"));
+        assertThrows(IllegalStateException.class, () -> ts.setDispatchOrder(DispatchOrder.EARLIEST_DEADLINE_FIRST));
+        assertThrows(NullPointerException.class, () -> ts.setDispatchOrder(null));
+    }
+
+    @Test
+    public void testDeadlineMetrics() {
+        // ensure that tasks predicted to miss their deadline are flagged when they're placed & misses are counted when they finish
+        System.out.println("TEST 1\n");
+        Server server = new Server();
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(server);
+        ts.setDispatchOrder(DispatchOrder.EARLIEST_DEADLINE_FIRST);
+        // estimated to take 100ms but due in 20ms
+        ts.scheduleTask(new DeadlineTask("late", TaskPriority.NONE, 100, 20));
+        // queued behind late, so it's predicted to miss too
+        ts.scheduleTask(new DeadlineTask("behind", TaskPriority.NONE, 10, 50));
+        ts.scheduleTask(new DeadlineTask("fine", TaskPriority.NONE, 0, 60_000));
+        assertEquals(2, ts.getStats().getPredictedDeadlineMisses());
+        ts.executeAll();
+        // late really runs 100ms, so it & behind finish after their deadlines
+        PerformanceMonitor stats = ts.getStats();
+        assertEquals(2.0 / 3, stats.getDeadlineMissRate(), 1e-9);
+        assertEquals(1, server.getStats().getDeadlinesMet());
+        assertEquals(2, server.getStats().getDeadlinesMissed());
+    }
+
+    // task due a number of milliseconds after it's created
+    private static class DeadlineTask extends PriorityTask {
+        private final Instant deadline;
+
+        DeadlineTask(String id, TaskPriority priority, long millis, long dueIn){
+            super(id, Duration.ofMillis(millis), millis, priority);
+            deadline = Instant.now().plusMillis(dueIn);
+        }
+
+        @Override
+        public Instant getDeadline(){
+            return deadline;
+        }
+    }
+}
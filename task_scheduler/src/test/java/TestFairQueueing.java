@@ -0,0 +1,82 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import taskscheduler.*;
+
+public class TestFairQueueing {
+
+    @Test
+    public void testWeightedFair() {
+        // ensure that with weighted fair order LOW tasks get their share instead of waiting behind every HIGH task
+        System.out.println("TEST 1\n");
+        Server server = new Server();
+        server.setDispatchOrder(DispatchOrder.WEIGHTED_FAIR);
+        for(int i = 0; i < 20; i++)
+            server.addTask(new TaskFactory("high" + i).priority("HIGH").estimatedDuration(10).build());
+        for(int i = 0; i < 5; i++)
+            server.addTask(new TaskFactory("low" + i).priority("LOW").estimatedDuration(10).build());
+        List<String> order = server.executeTasks().stream().map(Task::getId).toList();
+        // HIGH (weight 8) runs 8 tasks for every 2 LOW (weight 2) tasks
+        assertEquals(25, order.size());
+        assertEquals("low0", order.get(8));
+        assertEquals("low2", order.get(18));
+        assertEquals(8, order.subList(0, 10).stream().filter(id -> id.startsWith("high")).count());
+
+        // ensure that the weights can be changed
+        System.out.println("TEST 2\n");
+        server.setPriorityWeight(TaskPriority.HIGH, 1);
+        server.setPriorityWeight(TaskPriority.LOW, 1);
+        for(int i = 0; i < 4; i++){
+            server.addTask(new TaskFactory("high" + i).priority("HIGH").estimatedDuration(10).build());
+            server.addTask(new TaskFactory("low" + i).priority("LOW").estimatedDuration(10).build());
+        }
+        order = server.executeTasks().stream().map(Task::getId).toList();
+        // equal weights take turns
+        for(int i = 1; i < order.size(); i++)
+            assertNotEquals(order.get(i - 1).charAt(0), order.get(i).charAt(0));
+        assertThrows(IllegalArgumentException.class, () -> server.setPriorityWeight(TaskPriority.LOW, 0));
+
+        // ensure that priority order still runs every HIGH task first
+        System.out.println("TEST 3\n");
+        Server strict = new Server();
+        for(int i = 0; i < 20; i++)
+            strict.addTask(new TaskFactory("high" + i).priority("HIGH").build());
+        strict.addTask(new TaskFactory("low").priority("LOW").build());
+        assertEquals("low", strict.executeTasks().get(20).getId());
+    }
+
+    @Test
+    public void testAging() throws InterruptedException {
+        // ensure that a task that has waited long enough runs ahead of newer higher priority tasks
+        System.out.println("TEST 1\n");
+        Server server = new Server();
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(server);
+        ts.setPriorityAging(Duration.ofMillis(20));
+        ts.scheduleTask(new TaskFactory("old-low").priority("LOW").build());
+        Thread.sleep(70);
+        for(int i = 0; i < 3; i++)
+            ts.scheduleTask(new TaskFactory("high" + i).priority("HIGH").build());
+        assertEquals("old-low", ts.executeAll().get(server).get(0).getId());
+
+        // ensure that the per priority waits show how long each priority waited
+        System.out.println("TEST 2\n");
+        PerformanceMonitor stats = ts.getStats();
+        assertTrue(stats.getAverageQueueWait(TaskPriority.LOW).toMillis() >= 70);
+        assertTrue(stats.getAverageQueueWait(TaskPriority.HIGH).toMillis() < 70);
+        assertEquals(0, stats.getAverageQueueWait(TaskPriority.MEDIUM).toMillis());
+        assertEquals(3, server.getStats().getTasksDispatched(TaskPriority.HIGH));
+
+        // ensure that without aging the old task still waits
+        System.out.println("TEST 3\n");
+        ts.setPriorityAging(null);
+        ts.scheduleTask(new TaskFactory("old-low").priority("LOW").build());
+        Thread.sleep(70);
+        ts.scheduleTask(new TaskFactory("high").priority("HIGH").build());
+        assertEquals("high", ts.executeAll().get(server).get(0).getId());
+        assertThrows(IllegalArgumentException.class, () -> ts.setPriorityAging(Duration.ofMillis(-1)));
+    }
+}
@@ -0,0 +1,216 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.junit.jupiter.api.Test;
+
+import taskscheduler.*;
+
+public class TestJournal {
+
+    @Test
+    public void testRecovery() throws IOException {
+        // ensure that work that hadn't run when the scheduler died is run after a restart, and completed work isn't
+        System.out.println("TEST 1\n");
+        Path file = Files.createTempFile("journal", ".log");
+        // first scheduler runs A & C, then gets D and E (depends on A) queued before "crashing"
+        TaskJournal journal = new TaskJournal(file);
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(new Server());
+        ts.setJournal(journal);
+        ts.scheduleTask(new SimpleTask("A"));
+        ts.scheduleTask(new SimpleTask("C"));
+        ts.executeAll();
+        ts.scheduleTask(new SimpleTask("D"));
+        ts.scheduleTask(new TaskFactory("E").dependencies(new String[]{"A"}).build());
+        journal.close();
+
+        // restart with a new scheduler on the same journal
+        TaskJournal reopened = new TaskJournal(file);
+        TaskJournal.Recovery recovery = reopened.recover();
+        assertEquals(List.of("D", "E"), recovery.getPendingTasks().stream().map(Task::getId).toList());
+        assertTrue(recovery.getCompletedIds().containsAll(List.of("A", "C")));
+        TaskScheduler restarted = new TaskScheduler();
+        Server server = new Server();
+        restarted.addServer(server);
+        restarted.setJournal(reopened);
+        // A is skipped since it already completed
+        restarted.scheduleTask(new SimpleTask("A"));
+        Map<Server, List<Task>> completed = restarted.executeAll();
+        // ensure only D & E ran (E's dependency on A was already fulfilled)
+        assertEquals(List.of("D", "E"), completed.get(server).stream().map(Task::getId).sorted().toList());
+        reopened.close();
+
+        // ensure that nothing is pending once everything has run
+        System.out.println("TEST 2\n");
+        TaskJournal last = new TaskJournal(file);
+        assertTrue(last.recover().getPendingTasks().isEmpty());
+        last.close();
+        Files.delete(file);
+    }
+
+    @Test
+    public void testJournalFormat() throws IOException {
+        // ensure that records are read back in order across many mapped regions
+        System.out.println("TEST 3\n");
+        Path file = Files.createTempFile("journal", ".log");
+        // 1KB regions so 100 submissions span many regions
+        TaskJournal journal = new TaskJournal(file, 1024, Duration.ofMillis(10));
+        for(int i = 0; i < 100; i++)
+            journal.submitted(new SimpleTask("task" + i));
+        journal.failed("task5", 2);
+        journal.commit();
+        TaskJournal.Recovery recovery = journal.recover();
+        List<Task> pending = recovery.getPendingTasks();
+        assertEquals(100, pending.size());
+        assertEquals("task99", pending.get(99).getId());
+        assertEquals(2, recovery.getAttempts().get("task5"));
+
+        // ensure that a record torn by a crash is ignored along with anything after it
+        System.out.println("TEST 4\n");
+        long beforeLast = journal.size();
+        journal.completed("task0");
+        journal.close();
+        // corrupt the last record's data
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)){
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), beforeLast + 6);
+        }
+        TaskJournal reopened = new TaskJournal(file, 1024, Duration.ofMillis(10));
+        // task0 still looks pending since its completion record is bad
+        assertEquals(100, reopened.recover().getPendingTasks().size());
+        // new records go where the torn record was
+        assertEquals(beforeLast, reopened.size());
+        reopened.completed("task0");
+        assertEquals(99, reopened.recover().getPendingTasks().size());
+        reopened.close();
+        Files.delete(file);
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        // ensure that a restart from a snapshot only replays the journal written after it
+        System.out.println("TEST 5\n");
+        Path file = Files.createTempFile("journal", ".log");
+        Path snapshotFile = Files.createTempFile("snapshot", ".bin");
+        TaskJournal journal = new TaskJournal(file);
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(new Server());
+        ts.setJournal(journal);
+        // A & B run, C & D (depends on C) are pending when the snapshot is taken
+        ts.scheduleTask(new SimpleTask("A"));
+        ts.scheduleTask(new SimpleTask("B"));
+        ts.executeAll();
+        ts.scheduleTask(new SimpleTask("C"));
+        ts.scheduleTask(new TaskFactory("D").dependencies(new String[]{"C"}).build());
+        SchedulerSnapshot snapshot = ts.snapshot(snapshotFile).get();
+        assertEquals(2, snapshot.getPendingCount());
+        // after the snapshot, F is submitted and C finishes, then the scheduler "crashes"
+        ts.scheduleTask(new SimpleTask("F"));
+        journal.completed("C");
+        journal.close();
+
+        // restart from the snapshot and the journal tail
+        TaskJournal reopened = new TaskJournal(file);
+        TaskScheduler restarted = new TaskScheduler();
+        Server server = new Server();
+        restarted.addServer(server);
+        restarted.restore(snapshotFile, reopened);
+        Map<Server, List<Task>> completed = restarted.executeAll();
+        // C already ran, so D can run, and F comes from the tail
+        assertEquals(List.of("D", "F"), completed.get(server).stream().map(Task::getId).sorted().toList());
+        reopened.close();
+
+        // ensure that executeAll takes periodic snapshots
+        System.out.println("TEST 6\n");
+        Files.delete(snapshotFile);
+        TaskScheduler periodic = new TaskScheduler();
+        periodic.addServer(new Server());
+        periodic.setSnapshotInterval(snapshotFile, Duration.ofMillis(0));
+        periodic.scheduleTask(new SimpleTask("G"));
+        periodic.scheduleTask(new TaskFactory("H").dependencies(new String[]{"G"}).build());
+        periodic.executeAll();
+        // the writer runs in the background, wait for the file
+        for(int i = 0; i < 100 && !Files.exists(snapshotFile); i++)
+            Thread.sleep(10);
+        assertEquals(-1, SchedulerSnapshot.read(snapshotFile).getJournalPosition());
+        Files.delete(file);
+        Files.delete(snapshotFile);
+    }
+
+    @Test
+    public void testResubmission() throws IOException {
+        // ensure that an id submitted again after it completed (e.g. the next run of a recurring task) is still pending after a crash
+        System.out.println("TEST 7\n");
+        Path file = Files.createTempFile("journal", ".log");
+        TaskJournal journal = new TaskJournal(file);
+        journal.submitted(new SimpleTask("R"));
+        journal.completed("R");
+        journal.submitted(new SimpleTask("R"));
+        journal.close();
+
+        // restart on the same journal
+        TaskJournal reopened = new TaskJournal(file);
+        TaskJournal.Recovery recovery = reopened.recover();
+        assertEquals(List.of("R"), recovery.getPendingTasks().stream().map(Task::getId).toList());
+        assertTrue(recovery.getCompletedIds().contains("R"));
+        TaskScheduler restarted = new TaskScheduler();
+        Server server = new Server();
+        restarted.addServer(server);
+        restarted.setJournal(reopened);
+        assertEquals(List.of("R"), restarted.executeAll().get(server).stream().map(Task::getId).toList());
+        reopened.close();
+        Files.delete(file);
+    }
+
+    @Test
+    public void testSnapshotDuringBatch() throws Exception {
+        // ensure that a periodic snapshot holds the tasks as they were when it was taken, not as the next batch leaves them
+        System.out.println("TEST 8\n");
+        Path snapshotFile = Files.createTempFile("snapshot", ".bin");
+        Files.delete(snapshotFile);
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(new Server());
+        ts.setSnapshotInterval(snapshotFile, Duration.ofMillis(0));
+        // T is queued when the snapshot after A's batch is taken, then runs in the next batch
+        SlowTask.written.clear();
+        ts.scheduleTask(new SimpleTask("A"));
+        ts.scheduleTask(new SlowTask("T", Set.of("A")));
+        ts.executeAll();
+        for(int i = 0; i < 100 && SlowTask.written.isEmpty(); i++)
+            Thread.sleep(10);
+        // T was written before it ran, even though serializing it was slow
+        assertEquals(List.of(false), List.copyOf(SlowTask.written));
+        Files.deleteIfExists(snapshotFile);
+    }
+
+    // a task that's slow to serialize & records whether it had run when it was written
+    private static class SlowTask extends DependentTask {
+        private static final Queue<Boolean> written = new ConcurrentLinkedQueue<>();
+
+        // constructor
+        SlowTask(String newId, Set<String> newDependencies){
+            super(newId, Duration.ofMillis(0), 0, TaskPriority.MEDIUM, newDependencies);
+        }
+
+        // called before the task is serialized
+        private Object writeReplace(){
+            try{
+                Thread.sleep(300);
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+            written.add(isCompleted());
+            return this;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import taskscheduler.*;
+
+public class TestMembership {
+
+    @Test
+    public void testLocalMembership(){
+        // ensure that tasks queued to a server that leaves get placed on another server
+        System.out.println("TEST 1\n");
+        // create scheduler with one server
+        TaskScheduler ts = new TaskScheduler();
+        Server s1 = Mockito.spy(new Server());
+        ts.addServer(s1);
+        // schedule tasks to s1
+        ts.scheduleTask(new SimpleTask("A"));
+        ts.scheduleTask(new SimpleTask("B"));
+        // add a second server and remove the first before executing
+        Server s2 = Mockito.spy(new Server());
+        ts.addServer(s2);
+        ts.removeServer(s1);
+        // execute tasks
+        Map<Server, List<Task>> completed = ts.executeAll();
+        // ensure both tasks ran on s2 and s1 never executed
+        Mockito.verify(s1, Mockito.never()).executeTasks();
+        assertEquals(2, completed.get(s2).size());
+        assertEquals(List.of(s2), ts.getServers());
+
+        // ensure that servers can join & leave while executeAll is running
+        System.out.println("TEST 2\n");
+        // create scheduler with one server
+        TaskScheduler ts2 = new TaskScheduler();
+        Server s3 = Mockito.spy(new Server());
+        Server s4 = Mockito.spy(new Server());
+        ts2.addServer(s3);
+        // task A swaps s3 for s4 while it runs, task B (depends on A) has to go to s4
+        Task A = Mockito.spy(new SimpleTask("A"));
+        Mockito.doAnswer(invocation -> {
+            ts2.addServer(s4);
+            ts2.removeServer(s3);
+            return invocation.callRealMethod();
+        }).when(A).execute();
+        Task B = new TaskFactory("B").dependencies(new String[]{"A"}).build();
+        ts2.scheduleTask(A);
+        ts2.scheduleTask(B);
+        completed = ts2.executeAll();
+        // ensure A ran on s3 and B ran on s4
+        assertEquals("A", completed.get(s3).get(0).getId());
+        assertEquals("B", completed.get(s4).get(0).getId());
+    }
+
+    @Test
+    public void testRemoteMembership() throws Exception {
+        // ensure that NetworkServers registering & deregistering themselves join & leave the scheduler
+        System.out.println("TEST 3\n");
+        // use a port that the other tests don't use
+        int port = 1931;
+        // start two network servers on the same registry
+        NetworkServer nodeA = NetworkServer.start("nodeA", port);
+        NetworkServer nodeB = NetworkServer.start("nodeB", port);
+        try{
+            // create scheduler and watch the registry
+            TaskScheduler ts = new TaskScheduler();
+            ServerMembership membership = new ServerMembership(ts, "localhost", port);
+            membership.refresh();
+            assertEquals(Set.of("nodeA", "nodeB"), membership.getMembers());
+            assertEquals(2, ts.getServers().size());
+
+            // node B leaves, tasks still run on node A
+            nodeB.shutdown();
+            membership.refresh();
+            assertEquals(Set.of("nodeA"), membership.getMembers());
+            ts.scheduleTask(new SimpleTask("remote1"));
+            ts.scheduleTask(new SimpleTask("remote2"));
+            Map<Server, List<Task>> completed = ts.executeAll();
+            assertEquals(2, completed.values().stream().mapToInt(List::size).sum());
+            assertEquals(1, ts.getServers().size());
+        }finally{
+            // clean up the network servers
+            shutdownQuietly(nodeA);
+            shutdownQuietly(nodeB);
+        }
+    }
+
+    // shuts down a network server, ignoring failures
+    private void shutdownQuietly(NetworkServer server){
+        try{
+            server.shutdown();
+        }catch(RemoteException e){
+            // already gone
+        }
+    }
+}
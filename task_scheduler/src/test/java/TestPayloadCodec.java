@@ -0,0 +1,134 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import taskscheduler.*;
+
+public class TestPayloadCodec {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCodec(){
+        // ensure that big batches get compressed and come back the same
+        System.out.println("TEST 1\n");
+        // create codec with a 512 byte threshold
+        PayloadCodec codec = new PayloadCodec(true, 512);
+        // create a batch of tasks that compresses well
+        ArrayList<Task> batch = new ArrayList<>();
+        for(int i = 0; i < 200; i++)
+            batch.add(new SimpleTask("task" + i, Duration.ofMillis(5), 0));
+        // encode & decode
+        byte[] message = codec.encode(batch);
+        List<Task> decoded = (List<Task>)codec.decode(message);
+        // ensure ids match and the message is smaller than the serialized batch
+        assertEquals(200, decoded.size());
+        assertEquals("task199", decoded.get(199).getId());
+        CompressionStats stats = codec.getSnapshot();
+        assertEquals(1, stats.getMessagesCompressed());
+        assertTrue(stats.getBytesSentAfter() < stats.getBytesSentBefore());
+
+        // ensure that small messages skip compression
+        System.out.println("TEST 2\n");
+        codec = new PayloadCodec(true, 1_000_000);
+        message = codec.encode(new ArrayList<>(List.of(new SimpleTask("tiny"))));
+        assertEquals("tiny", ((List<Task>)codec.decode(message)).get(0).getId());
+        stats = codec.getSnapshot();
+        assertEquals(0, stats.getMessagesCompressed());
+        assertEquals(1, stats.getMessagesRaw());
+        // raw messages only add the format byte
+        assertEquals(stats.getBytesSentBefore() + 1, stats.getBytesSentAfter());
+
+        // ensure that a compressed message with a bad length in its header is rejected before anything is allocated
+        System.out.println("TEST 3\n");
+        PayloadCodec peer = codec;
+        assertThrows(ServerException.class, () -> peer.decode(new byte[]{1, (byte)0x80, 0, 0, 0}));
+        assertThrows(ServerException.class, () -> peer.decode(new byte[]{1, 0x7f, (byte)0xff, (byte)0xff, (byte)0xff}));
+    }
+
+    @Test
+    public void testRemoteCompression() throws RemoteException {
+        // ensure that a remote server with negotiated compression runs task batches
+        System.out.println("TEST 3\n");
+        // start a network server on a port the other tests don't use
+        NetworkServer node = NetworkServer.start("compressedNode", 1932);
+        try{
+            RemoteServer rs = new RemoteServer("localhost", 1932, "compressedNode");
+            assertTrue(rs.enableCompression(256));
+            // send a batch of tasks in one message and execute them
+            List<Task> batch = new ArrayList<>();
+            for(int i = 0; i < 50; i++)
+                batch.add(new SimpleTask("remote" + i));
+            rs.addTasks(batch);
+            assertEquals(50, rs.executeTasks().size());
+            // ensure both directions were compressed
+            CompressionStats stats = rs.getCompressionStats();
+            assertTrue(stats.getBytesSentAfter() < stats.getBytesSentBefore());
+            assertTrue(stats.getBytesReceivedAfter() < stats.getBytesReceivedBefore());
+
+            // ensure that tasks the scheduler places go out as one message per batch
+            System.out.println("TEST 4\n");
+            TaskScheduler ts = new TaskScheduler();
+            ts.addServer(rs);
+            for(int i = 0; i < 50; i++)
+                ts.scheduleTask(new SimpleTask("scheduled" + i));
+            long sent = rs.getCompressionStats().getMessagesCompressed() + rs.getCompressionStats().getMessagesRaw();
+            assertEquals(50, ts.executeAll().get(rs).size());
+            stats = rs.getCompressionStats();
+            assertEquals(sent + 1, stats.getMessagesCompressed() + stats.getMessagesRaw());
+            rs.close();
+        }finally{
+            node.shutdown();
+        }
+    }
+
+    @Test
+    public void testRemoteBatches() throws RemoteException {
+        // ensure that a remote server takes a whole batch or none of it when its queue fills up
+        System.out.println("TEST 5\n");
+        // start a network server that can only queue 3 tasks
+        NetworkServer node = NetworkServer.start("boundedNode", 1935);
+        try{
+            for(TaskPriority priority : TaskPriority.values())
+                node.setQueueCapacity(priority, 3);
+            RemoteServer rs = new RemoteServer("localhost", 1935, "boundedNode");
+            assertTrue(rs.enableCompression(256));
+            rs.addTasks(List.of(new SimpleTask("first0"), new SimpleTask("first1")));
+            // the second batch doesn't fit, so the client gets it back & nothing from it is queued
+            assertThrows(ServerFullException.class, () -> rs.addTasks(List.of(new SimpleTask("second0"), new SimpleTask("second1"))));
+            assertEquals(2, rs.getUnfinishedTasks().size());
+            List<Task> completed = rs.executeTasks();
+            assertEquals(2, completed.size());
+            assertTrue(completed.stream().allMatch(task -> task.getId().startsWith("first")));
+
+            // ensure that one client's compression settings don't change how another client's results are encoded
+            System.out.println("TEST 6\n");
+            RemoteServer other = new RemoteServer("localhost", 1935, "boundedNode");
+            assertTrue(other.enableCompression(1_000_000));
+            for(TaskPriority priority : TaskPriority.values())
+                node.setQueueCapacity(priority, 100);
+            List<Task> batch = new ArrayList<>();
+            for(int i = 0; i < 50; i++)
+                batch.add(new SimpleTask("remote" + i));
+            rs.addTasks(batch);
+            long receivedBefore = rs.getCompressionStats().getBytesReceivedBefore();
+            long receivedAfter = rs.getCompressionStats().getBytesReceivedAfter();
+            assertEquals(50, rs.executeTasks().size());
+            // the first client still gets its results compressed
+            CompressionStats stats = rs.getCompressionStats();
+            assertTrue(stats.getBytesReceivedAfter() - receivedAfter < stats.getBytesReceivedBefore() - receivedBefore);
+            // & the second gets them raw
+            other.addTasks(List.of(new SimpleTask("other")));
+            assertEquals(1, other.executeTasks().size());
+            stats = other.getCompressionStats();
+            assertEquals(stats.getBytesReceivedBefore() + 1, stats.getBytesReceivedAfter());
+            rs.close();
+            other.close();
+        }finally{
+            node.shutdown();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import taskscheduler.*;
+
+public class TestPreemption {
+
+    @Test
+    public void testServerPreemption() throws Exception {
+        // ensure that an urgent task stops a preemptible task that's running & the stopped task runs again afterwards
+        System.out.println("TEST 1\n");
+        Server server = new Server();
+        PreemptibleTask slow = new PreemptibleTask("slow", 600, TaskPriority.LOW);
+        server.addTask(slow);
+        CompletableFuture<List<Task>> batch = CompletableFuture.supplyAsync(server::executeTasks);
+        Thread.sleep(100);
+        assertTrue(server.preemptFor(new PriorityTask("urgent", Duration.ofMillis(0), 0, TaskPriority.HIGH)));
+        assertEquals(List.of("urgent", "slow"), batch.get().stream().map(Task::getId).toList());
+        assertEquals(1, slow.preemptions);
+        ServerStats stats = server.getStats();
+        assertEquals(1, stats.getTasksPreempted());
+        assertEquals(0, stats.getTasksFailed());
+        assertEquals(2, stats.getTasksAttempted());
+
+        // ensure that only lower priority, preemptible work is stopped
+        System.out.println("TEST 2\n");
+        assertFalse(server.preemptFor(new PriorityTask("idle", Duration.ofMillis(0), 0, TaskPriority.HIGH)));
+        server.addTask(new PriorityTask("stubborn", Duration.ofMillis(300), 300, TaskPriority.LOW));
+        server.addTask(new PreemptibleTask("peer", 300, TaskPriority.HIGH));
+        batch = CompletableFuture.supplyAsync(server::executeTasks);
+        Thread.sleep(100);
+        // peer runs first (HIGH), & an equal priority task can't stop it
+        assertFalse(server.preemptFor(new PriorityTask("equal", Duration.ofMillis(0), 0, TaskPriority.HIGH)));
+        Thread.sleep(300);
+        // stubborn isn't preemptible
+        assertFalse(server.preemptFor(new PriorityTask("blocked", Duration.ofMillis(0), 0, TaskPriority.HIGH)));
+        assertEquals(List.of("peer", "stubborn"), batch.get().stream().map(Task::getId).toList());
+        assertEquals(1, server.getStats().getTasksPreempted());
+    }
+
+    @Test
+    public void testWeightedFair() throws Exception {
+        // ensure that the urgent task runs next with weighted fair order, even while LOW still has run time left this round
+        System.out.println("TEST 1\n");
+        Server server = new Server();
+        server.setDispatchOrder(DispatchOrder.WEIGHTED_FAIR);
+        // LOW has plenty of run time left after slow is charged, so the fair order alone would keep serving it
+        server.setPriorityWeight(TaskPriority.LOW, 1000);
+        server.addTask(new PreemptibleTask("slow", 600, TaskPriority.LOW));
+        for(int i = 0; i < 3; i++)
+            server.addTask(new PriorityTask("low" + i, Duration.ofMillis(1), 0, TaskPriority.LOW));
+        CompletableFuture<List<Task>> batch = CompletableFuture.supplyAsync(server::executeTasks);
+        Thread.sleep(100);
+        assertTrue(server.preemptFor(new PriorityTask("urgent", Duration.ofMillis(0), 0, TaskPriority.HIGH)));
+        List<String> order = batch.get().stream().map(Task::getId).toList();
+        assertEquals("urgent", order.get(0));
+        assertEquals(5, order.size());
+
+        // ensure that the preempted run isn't counted as an attempt, so every start is accounted for
+        System.out.println("TEST 2\n");
+        ServerStats stats = server.getStats();
+        assertEquals(1, stats.getTasksPreempted());
+        assertEquals(5, stats.getTasksAttempted());
+        assertEquals(5, stats.getTasksCompleted());
+        assertEquals(0, server.getQueuedTaskCount());
+    }
+
+    @Test
+    public void testLatency() throws Exception {
+        // ensure that a HIGH task arriving mid-batch finishes much sooner when it can preempt LOW work
+        System.out.println("TEST 1\n");
+        long without = urgentLatency(false);
+        long with = urgentLatency(true);
+        System.out.println("HIGH task latency " + without + "ms without preemption, " + with + "ms with");
+        assertTrue(without >= 400);
+        assertTrue(with < 300);
+    }
+
+    @Test
+    public void testRestored() throws Exception {
+        // ensure that a HIGH task that completed before a restart isn't handed to a running server to run again
+        System.out.println("TEST 1\n");
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(new Server());
+        ts.setCompletedRetention(null);
+        ts.scheduleTask(new PriorityTask("urgent", Duration.ofMillis(0), 0, TaskPriority.HIGH));
+        ts.executeAll();
+        Path file = Files.createTempFile("snapshot", ".bin");
+        ts.snapshot(file).get();
+
+        // restart without a journal, with preemption on
+        Server server = new Server();
+        TaskScheduler restored = new TaskScheduler();
+        restored.addServer(server);
+        restored.restore(file, null);
+        restored.setPreemption(true);
+        PreemptibleTask slow = new PreemptibleTask("slow", 300, TaskPriority.LOW);
+        restored.scheduleTask(slow);
+        CompletableFuture<Map<Server, List<Task>>> batch = CompletableFuture.supplyAsync(restored::executeAll);
+        Thread.sleep(100);
+        Future<Task> urgent = restored.scheduleTask(new PriorityTask("urgent", Duration.ofMillis(0), 0, TaskPriority.HIGH));
+        assertTrue(urgent.isDone());
+        assertEquals(List.of("slow"), batch.get().get(server).stream().map(Task::getId).toList());
+        assertEquals(0, slow.preemptions);
+        Files.delete(file);
+    }
+
+    // runs a long LOW task & submits a HIGH one partway through, returns the average HIGH latency in ms
+    private static long urgentLatency(boolean preempt) throws Exception {
+        Server server = new Server();
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(server);
+        ts.setPreemption(preempt);
+        PreemptibleTask slow = new PreemptibleTask("slow", 600, TaskPriority.LOW);
+        CompletableFuture<Task> slowHandle = ts.scheduleTask(slow);
+
+        // the batch holds the scheduler until it's done, unless the HIGH task can preempt
+        CompletableFuture<Map<Server, List<Task>>> batch = CompletableFuture.supplyAsync(ts::executeAll);
+        Thread.sleep(100);
+        Future<Task> urgent = ts.scheduleTask(new PriorityTask("urgent", Duration.ofMillis(0), 0, TaskPriority.HIGH));
+        batch.get();
+        ts.executeAll();
+
+        // both complete, & the preempted task isn't counted as a failed attempt
+        assertTrue(urgent.get().isCompleted());
+        assertTrue(slowHandle.get().isCompleted());
+        assertEquals(preempt ? 1 : 0, slow.preemptions);
+        PerformanceMonitor stats = ts.getStats();
+        assertEquals(preempt ? 1 : 0, stats.getPreemptedTaskCount());
+        assertEquals(0, server.getStats().getTasksFailed());
+        return stats.getAverageLatency(TaskPriority.HIGH).toMillis();
+    }
+
+    // task that can be stopped for more urgent work, counting how many times it was
+    private static class PreemptibleTask extends PriorityTask {
+        private int preemptions = 0;
+
+        PreemptibleTask(String id, long duration, TaskPriority priority){
+            super(id, Duration.ofMillis(duration), duration, priority);
+        }
+
+        @Override
+        public boolean isPreemptible(){
+            return true;
+        }
+
+        @Override
+        public Future<Void> preempt(){
+            preemptions++;
+            return super.preempt();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import taskscheduler.*;
+
+public class TestPriorityInheritance {
+
+    @Test
+    public void testInheritance() {
+        // ensure that a queued LOW task moves up when a HIGH task starts waiting on it (& the task it waits on in turn)
+        System.out.println("TEST 1\n");
+        Server server = new Server();
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(server);
+        ts.setPriorityInheritance(true);
+        ts.scheduleTask(new TaskFactory("low").priority("LOW").build());
+        ts.scheduleTask(new TaskFactory("chained").priority("LOW").dependencies(new String[]{"low"}).build());
+        for(int i = 0; i < 3; i++)
+            ts.scheduleTask(new TaskFactory("medium" + i).priority("MEDIUM").build());
+        ts.scheduleTask(new TaskFactory("urgent").priority("HIGH").dependencies(new String[]{"chained"}).build());
+        List<String> order = new ArrayList<>();
+        ts.executeAll(new ResultSink(){
+            @Override
+            public void completed(Server s, Task task){
+                order.add(task.getId());
+            }
+        });
+        // low runs ahead of the MEDIUM tasks & only once
+        assertEquals(List.of("low", "medium0", "medium1", "medium2", "chained", "urgent"), order);
+
+        // ensure that a task submitted after the task waiting on it still inherits its priority
+        System.out.println("TEST 2\n");
+        ts.scheduleTask(new TaskFactory("urgent2").priority("HIGH").dependencies(new String[]{"late"}).build());
+        ts.scheduleTask(new TaskFactory("medium").priority("MEDIUM").build());
+        ts.scheduleTask(new TaskFactory("late").priority("NONE").build());
+        assertEquals(List.of("late", "medium"), ts.executeAll().get(server).subList(0, 2).stream().map(Task::getId).toList());
+
+        // ensure that without inheritance the LOW task waits its turn
+        System.out.println("TEST 3\n");
+        ts.setPriorityInheritance(false);
+        ts.scheduleTask(new TaskFactory("low2").priority("LOW").build());
+        ts.scheduleTask(new TaskFactory("medium").priority("MEDIUM").build());
+        ts.scheduleTask(new TaskFactory("urgent3").priority("HIGH").dependencies(new String[]{"low2"}).build());
+        assertEquals(List.of("medium", "low2"), ts.executeAll().get(server).subList(0, 2).stream().map(Task::getId).toList());
+    }
+
+    @Test
+    public void testLatencyUnderLoad() {
+        // ensure that the HIGH task finishes sooner under a steady MEDIUM load when its LOW dependency inherits its priority
+        System.out.println("TEST 1\n");
+        long without = urgentLatency(false);
+        long with = urgentLatency(true);
+        System.out.println("urgent task finished after " + without + " MEDIUM tasks without inheritance, " + with + " with");
+        assertTrue(with < without);
+    }
+
+    // runs a stream of MEDIUM tasks with a HIGH task waiting on a LOW one partway through
+    // returns the number of MEDIUM tasks that finished before the HIGH task
+    private static long urgentLatency(boolean inherit){
+        // a small server, so LOW tasks are turned away while MEDIUM work fills the queue
+        Server server = new Server();
+        server.setQueueCapacity(8);
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(server);
+        ts.setPriorityInheritance(inherit);
+
+        // the load, with the HIGH task & its LOW dependency arriving behind a few MEDIUM tasks
+        List<Task> tasks = new ArrayList<>();
+        for(int i = 0; i < 30; i++){
+            tasks.add(new TaskFactory("medium" + i).priority("MEDIUM").duration(2).build());
+            if(i == 9){
+                tasks.add(new TaskFactory("urgent").priority("HIGH").dependencies(new String[]{"prereq"}).build());
+                tasks.add(new TaskFactory("prereq").priority("LOW").build());
+            }
+        }
+        ts.setTaskSource(TaskSource.of(tasks.iterator()), 6);
+
+        // count the MEDIUM tasks that finish before the HIGH one
+        List<String> order = new ArrayList<>();
+        ts.executeAll(new ResultSink(){
+            @Override
+            public void completed(Server s, Task task){
+                order.add(task.getId());
+            }
+        });
+        assertEquals(32, order.size());
+        return order.subList(0, order.indexOf("urgent")).stream().filter(id -> id.startsWith("medium")).count();
+    }
+}
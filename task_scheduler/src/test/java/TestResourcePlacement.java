@@ -0,0 +1,127 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import taskscheduler.*;
+
+public class TestResourcePlacement {
+
+    @Test
+    public void testPlacement() {
+        // ensure that a task only goes to a server big enough for it
+        System.out.println("TEST 1\n");
+        Server small = new Server();
+        small.setCapacity(new Resources(2, 4096));
+        Server big = new Server();
+        big.setCapacity(new Resources(8, 32768));
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(small);
+        ts.addServer(big);
+        ts.scheduleTask(new ResourceTask("hungry", 1, 16384));
+        Map<Server, List<Task>> completed = ts.executeAll();
+        assertEquals(List.of("hungry"), ids(completed.get(big)));
+        assertTrue(completed.get(small).isEmpty());
+
+        // ensure that tasks go to the server they fit best
+        System.out.println("TEST 2\n");
+        ts.scheduleTask(new ResourceTask("fits-small", 2, 2048));
+        ts.scheduleTask(new ResourceTask("fits-big", 4, 2048));
+        completed = ts.executeAll();
+        assertEquals(List.of("fits-small"), ids(completed.get(small)));
+        assertEquals(List.of("fits-big"), ids(completed.get(big)));
+
+        // ensure that a task no server can ever hold is refused
+        System.out.println("TEST 3\n");
+        assertThrows(SchedulerException.class, () -> ts.scheduleTask(new ResourceTask("huge", 16, 0)));
+    }
+
+    @Test
+    public void testPacking() {
+        // ensure that best fit packs servers full where placing by wait would leave gaps
+        System.out.println("TEST 1\n");
+        Server a = new Server();
+        a.setCapacity(new Resources(4, 8192));
+        Server b = new Server();
+        b.setCapacity(new Resources(4, 8192));
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(a);
+        ts.addServer(b);
+        for(String id : new String[]{"three-a", "three-b", "one-a", "one-b"})
+            ts.scheduleTask(new ResourceTask(id, id.startsWith("three") ? 3 : 1, 0));
+        assertEquals(4, a.getReservedResources().getCpus());
+        assertEquals(4, b.getReservedResources().getCpus());
+        ts.executeAll();
+        PerformanceMonitor stats = ts.getStats();
+        assertEquals(1.0, stats.getBatchPackingEfficiency(), 1e-9);
+        assertEquals(1.0, a.getStats().getBatchCpuShare(), 1e-9);
+        assertEquals(0, a.getStats().getBatchMemoryShare(), 1e-9);
+        // the resources are given back once the tasks are taken off the queue
+        assertTrue(a.getReservedResources().isNone());
+
+        // ensure that tasks that don't fit right now wait for the next batch instead of overfilling a server
+        System.out.println("TEST 2\n");
+        Server server = new Server();
+        server.setCapacity(new Resources(2, 0));
+        TaskScheduler single = new TaskScheduler();
+        single.addServer(server);
+        // scheduleTask would throw for the task that doesn't fit, a task source holds on to it
+        List<Task> tasks = List.of(new ResourceTask("task0", 1, 0), new ResourceTask("task1", 1, 0), new ResourceTask("task2", 1, 0));
+        single.setTaskSource(TaskSource.of(tasks.iterator()), 3);
+        assertEquals(3, single.executeAll().get(server).size());
+        assertEquals(2, server.getStats().getPackedBatches());
+        assertEquals(0.75, server.getStats().getBatchPackingEfficiency(), 1e-9);
+        assertTrue(server.getStats().getTasksRejected() >= 1);
+
+        // ensure that a server turns away tasks it can't hold
+        System.out.println("TEST 3\n");
+        server.addTask(new ResourceTask("first", 2, 0));
+        assertThrows(ServerFullException.class, () -> server.addTask(new ResourceTask("second", 1, 0)));
+        ServerException e = assertThrows(ServerException.class, () -> server.addTask(new ResourceTask("too-big", 3, 0)));
+        assertFalse(e instanceof ServerFullException);
+        assertEquals(1, server.getQueuedTaskCount());
+        assertThrows(IllegalArgumentException.class, () -> new Resources(-1, 0));
+    }
+
+    @Test
+    public void testRemoteCapacity() throws Exception {
+        // ensure that a remote server holds the tasks it's sent to its batch budget & frees it once the batch runs
+        System.out.println("TEST 1\n");
+        NetworkServer node = NetworkServer.start("capacityNode", 1934);
+        try{
+            RemoteServer remote = new RemoteServer("localhost", 1934, "capacityNode");
+            remote.setCapacity(new Resources(2, 0));
+            remote.addTask(new ResourceTask("first", 2, 0));
+            assertThrows(ServerFullException.class, () -> remote.addTask(new ResourceTask("second", 1, 0)));
+            ServerException e = assertThrows(ServerException.class, () -> remote.addTask(new ResourceTask("too-big", 3, 0)));
+            assertFalse(e instanceof ServerFullException);
+            assertEquals(1, remote.executeTasks().size());
+            assertTrue(remote.getReservedResources().isNone());
+            remote.close();
+        }finally{
+            node.shutdown();
+        }
+    }
+
+    // returns the ids of a list of tasks
+    private static List<String> ids(List<Task> tasks){
+        return tasks.stream().map(Task::getId).toList();
+    }
+
+    // task that needs some cpus & memory
+    private static class ResourceTask extends SimpleTask {
+        private final Resources resources;
+
+        ResourceTask(String id, double cpus, long memoryMb){
+            super(id);
+            resources = new Resources(cpus, memoryMb);
+        }
+
+        @Override
+        public Resources getResources(){
+            return resources;
+        }
+    }
+}
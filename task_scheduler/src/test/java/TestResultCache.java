@@ -0,0 +1,135 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import taskscheduler.*;
+
+public class TestResultCache {
+
+    @Test
+    public void testMemoization() {
+        // ensure that a task with the same cache key only runs once across executeAll calls
+        System.out.println("TEST 1\n");
+        CountingTask.runs.set(0);
+        Server server = new Server();
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(server);
+        ResultCache cache = new ResultCache(1024 * 1024, null);
+        ts.setResultCache(cache);
+        ts.scheduleTask(new CountingTask("A", "key-A"));
+        ts.executeAll();
+        ts.scheduleTask(new CountingTask("A", "key-A"));
+        ts.scheduleTask(new SimpleTask("uncached"));
+        List<Task> completed = ts.executeAll().get(server);
+        // both ran (one from the cache) but A only executed once
+        assertEquals(2, completed.size());
+        assertEquals(1, CountingTask.runs.get());
+        assertTrue(completed.stream().allMatch(Task::isCompleted));
+        CacheStats stats = cache.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getEntries());
+        assertEquals(0.5, stats.getHitRate());
+
+        // ensure that least recently used entries are evicted to stay under the byte limit & entries expire
+        System.out.println("TEST 2\n");
+        CountingTask a = completedTask("A", "key-A");
+        CountingTask b = completedTask("B", "key-B");
+        long size = new PayloadCodec(true, 4096).encode(a).length;
+        ResultCache small = new ResultCache(size * 3 / 2, null);
+        small.put(a);
+        small.put(b);
+        assertNull(small.get(a));
+        assertNotNull(small.get(b));
+        assertEquals(1, small.getStats().getEvictions());
+        ResultCache shortLived = new ResultCache(1024 * 1024, Duration.ofMillis(10));
+        shortLived.put(a);
+        sleep(20);
+        assertNull(shortLived.get(a));
+        assertEquals(1, shortLived.getStats().getExpirations());
+
+        // ensure that a task with another id sharing a key still runs & is reported under its own id
+        System.out.println("TEST 3\n");
+        int runs = CountingTask.runs.get();
+        CompletableFuture<Task> handle = ts.scheduleTask(new CountingTask("A2", "key-A"));
+        completed = ts.executeAll().get(server);
+        assertEquals(List.of("A2"), completed.stream().map(Task::getId).toList());
+        assertEquals(runs + 1, CountingTask.runs.get());
+        assertEquals("A2", handle.getNow(null).getId());
+    }
+
+    @Test
+    public void testDiskTier() throws IOException {
+        // ensure that entries evicted from memory are kept on disk & are still there for a new cache on the same directory
+        System.out.println("TEST 1\n");
+        Path dir = Files.createTempDirectory("result-cache");
+        CountingTask a = completedTask("A", "key-A");
+        CountingTask b = completedTask("B", "key-B");
+        ResultCache cache = new ResultCache(0, null, dir, 1024 * 1024);
+        cache.put(a);
+        cache.put(b);
+        assertEquals(0, cache.getStats().getMemoryBytes());
+        assertEquals(2, cache.getStats().getEntries());
+        ResultCache reopened = new ResultCache(1024 * 1024, null, dir, 1024 * 1024);
+        Task hit = reopened.get(a);
+        assertEquals("A", hit.getId());
+        assertTrue(hit.isCompleted());
+        assertEquals(1, reopened.getStats().getDiskHits());
+        // the hit moved into memory
+        assertNotNull(reopened.get(a));
+        assertEquals(1, reopened.getStats().getHits());
+        try(var files = Files.list(dir)){
+            files.forEach(f -> f.toFile().delete());
+        }
+        Files.delete(dir);
+    }
+
+    // runs a task to completion (so it can be cached)
+    private static CountingTask completedTask(String id, String key){
+        CountingTask task = new CountingTask(id, key);
+        try{
+            task.execute().get();
+        }catch(Exception e){
+            throw new RuntimeException(e);
+        }
+        return task;
+    }
+
+    private static void sleep(long millis){
+        try{
+            Thread.sleep(millis);
+        }catch(InterruptedException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    // task with a cache key that counts how many times tasks of its class run
+    private static class CountingTask extends SimpleTask {
+        static final AtomicInteger runs = new AtomicInteger();
+        private final String key;
+
+        CountingTask(String id, String keyValue){
+            super(id);
+            key = keyValue;
+        }
+
+        @Override
+        public Future<Void> execute(){
+            runs.incrementAndGet();
+            return super.execute();
+        }
+
+        @Override
+        public String getCacheKey(){
+            return key;
+        }
+    }
+}
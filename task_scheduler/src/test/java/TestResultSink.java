@@ -0,0 +1,61 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import taskscheduler.*;
+
+public class TestResultSink {
+
+    @Test
+    public void testSink() {
+        // ensure that completed & abandoned tasks are given to the sink as they happen
+        System.out.println("TEST 1\n");
+        Server server = new Server();
+        TaskScheduler ts = new TaskScheduler(new RetryPolicy(2, new RetryPolicy.UniformTimeout(Duration.ofMillis(0))));
+        ts.addServer(server);
+        // A runs, B depends on A, C depends on a task that never runs, F always fails
+        ts.scheduleTask(new SimpleTask("A"));
+        ts.scheduleTask(new TaskFactory("B").dependencies(new String[]{"A"}).build());
+        ts.scheduleTask(new TaskFactory("C").dependencies(new String[]{"missing"}).build());
+        ts.scheduleTask(new SimpleTask("F"){
+            @Override
+            public boolean isCompleted(){
+                return false;
+            }
+        });
+        RecordingSink sink = new RecordingSink();
+        ts.executeAll(sink);
+        // A completed in the first batch & B in the second (each is reported once)
+        assertEquals(List.of("A", "B"), sink.completed);
+        // C & F were abandoned with their reasons
+        assertEquals(List.of("F: too many attempts", "C: incomplete dependencies"), sink.abandoned);
+
+        // ensure that the collecting sink gives the same map executeAll() returns
+        System.out.println("TEST 2\n");
+        ts.scheduleTask(new SimpleTask("D"));
+        CollectingResultSink collector = new CollectingResultSink(ts.getServers());
+        ts.executeAll(collector);
+        assertEquals(List.of("D"), collector.getCompletedTasks().get(server).stream().map(Task::getId).toList());
+        assertTrue(collector.getAbandonedTasks().isEmpty());
+        assertThrows(NullPointerException.class, () -> ts.executeAll(null));
+    }
+
+    // sink that records what it's given
+    private static class RecordingSink implements ResultSink {
+        List<String> completed = new ArrayList<>();
+        List<String> abandoned = new ArrayList<>();
+
+        @Override
+        public void completed(Server server, Task task){
+            completed.add(task.getId());
+        }
+
+        @Override
+        public void abandoned(Task task, String reason){
+            abandoned.add(task.getId() + ": " + reason);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import taskscheduler.*;
+
+public class TestRouting {
+
+    @Test
+    public void testLabels() {
+        // ensure that tasks with required labels only go to servers with every one of them, however busy they are
+        System.out.println("TEST 1\n");
+        Server gpu = new Server();
+        gpu.setLabels(Set.of("gpu", "ssd"));
+        Server plain = new Server();
+        Server ssd = new Server();
+        ssd.setLabels(Set.of("ssd"));
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(gpu);
+        ts.addServer(plain);
+        ts.addServer(ssd);
+        for(int i = 0; i < 3; i++)
+            ts.scheduleTask(new RoutedTask("train" + i, 100, Set.of("gpu"), Set.of(), null));
+        Map<Server, List<Task>> completed = ts.executeAll();
+        assertEquals(3, completed.get(gpu).size());
+        assertTrue(completed.get(plain).isEmpty());
+        assertThrows(SchedulerException.class, () -> ts.scheduleTask(new RoutedTask("fpga", 0, Set.of("fpga"), Set.of(), null)));
+
+        // ensure that preferred labels are only a preference
+        System.out.println("TEST 2\n");
+        ts.scheduleTask(new RoutedTask("busy", 1000, Set.of("ssd"), Set.of(), null));
+        ts.scheduleTask(new RoutedTask("busy-gpu", 1000, Set.of("gpu"), Set.of(), null));
+        ts.scheduleTask(new RoutedTask("likes-ssd", 0, Set.of(), Set.of("ssd"), null));
+        ssd.setQueueCapacity(1);
+        gpu.setQueueCapacity(1);
+        ts.scheduleTask(new RoutedTask("likes-ssd-too", 0, Set.of(), Set.of("ssd"), null));
+        completed = ts.executeAll();
+        // the ssd servers were preferred even with longer waits, until they were full
+        assertTrue(ids(completed.get(ssd)).contains("likes-ssd") || ids(completed.get(gpu)).contains("likes-ssd"));
+        assertEquals(List.of("likes-ssd-too"), ids(completed.get(plain)));
+
+        // ensure that a server that leaves is taken out of the label index
+        System.out.println("TEST 3\n");
+        ts.removeServer(gpu);
+        assertThrows(SchedulerException.class, () -> ts.scheduleTask(new RoutedTask("train", 0, Set.of("gpu"), Set.of(), null)));
+    }
+
+    @Test
+    public void testAffinity() {
+        // ensure that a task with an affinity goes to the server that ran the task it's tied to, even if that server is busier
+        System.out.println("TEST 1\n");
+        Server a = new Server();
+        a.setLabels(Set.of("a"));
+        Server b = new Server();
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(a);
+        ts.addServer(b);
+        ts.scheduleTask(new RoutedTask("writer", 0, Set.of("a"), Set.of(), null));
+        ts.executeAll();
+        ts.scheduleTask(new RoutedTask("filler", 1000, Set.of("a"), Set.of(), null));
+        ts.scheduleTask(new RoutedTask("reader", 0, Set.of(), Set.of(), "writer"));
+        assertEquals(List.of("filler", "reader"), ids(ts.executeAll().get(a)));
+
+        // ensure that a task with an affinity to a task that's still queued goes to the same server
+        System.out.println("TEST 2\n");
+        ts.scheduleTask(new RoutedTask("filler", 1000, Set.of("a"), Set.of(), null));
+        ts.scheduleTask(new RoutedTask("producer", 0, Set.of(), Set.of(), null));
+        ts.scheduleTask(new RoutedTask("consumer", 0, Set.of(), Set.of(), "producer"));
+        Map<Server, List<Task>> completed = ts.executeAll();
+        assertEquals(List.of("producer", "consumer"), ids(completed.get(b)));
+
+        // ensure that an affinity doesn't override required labels
+        System.out.println("TEST 3\n");
+        ts.scheduleTask(new RoutedTask("must-be-a", 0, Set.of("a"), Set.of(), "consumer"));
+        assertEquals(List.of("must-be-a"), ids(ts.executeAll().get(a)));
+
+        // ensure that a full preferred server is only offered the task once before it goes elsewhere
+        System.out.println("TEST 4\n");
+        a.setQueueCapacity(TaskPriority.NONE, 1);
+        ts.scheduleTask(new RoutedTask("occupant", 0, Set.of("a"), Set.of(), null));
+        // b has the longer wait, so falling back by wait would reach a first
+        ts.scheduleTask(new RoutedTask("busy", 1000, Set.of(), Set.of(), "producer"));
+        int rejected = a.getStats().getTasksRejected();
+        ts.scheduleTask(new RoutedTask("overflow", 0, Set.of(), Set.of("a"), null));
+        assertEquals(rejected + 1, a.getStats().getTasksRejected());
+        assertEquals(List.of("busy", "overflow"), ids(ts.executeAll().get(b)));
+    }
+
+    // returns the ids of a list of tasks
+    private static List<String> ids(List<Task> tasks){
+        return tasks.stream().map(Task::getId).toList();
+    }
+
+    // task with labels & an affinity
+    private static class RoutedTask extends SimpleTask {
+        private final Set<String> required;
+        private final Set<String> preferred;
+        private final String affinity;
+
+        RoutedTask(String id, long estimate, Set<String> requiredLabels, Set<String> preferredLabels, String affinityId){
+            super(id, Duration.ofMillis(estimate), 0);
+            required = requiredLabels;
+            preferred = preferredLabels;
+            affinity = affinityId;
+        }
+
+        @Override
+        public Set<String> getRequiredLabels(){
+            return required;
+        }
+
+        @Override
+        public Set<String> getPreferredLabels(){
+            return preferred;
+        }
+
+        @Override
+        public String getAffinity(){
+            return affinity;
+        }
+    }
+}
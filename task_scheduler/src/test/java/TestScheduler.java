@@ -6,6 +6,10 @@ import java.time.LocalTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import taskscheduler.*;
 
@@ -213,6 +217,272 @@ public class TestScheduler {
     }
 
 
+    // tests that full servers turn tasks away and the scheduler reacts
+    @Test
+    public void testAdmissionControl(){
+        // ensure that when the least loaded server is full, the task goes to the next server
+        System.out.println("TEST 11\n");
+        // create scheduler with a server that can only hold one task and a normal server
+        TaskScheduler ts = new TaskScheduler();
+        Server small = Mockito.spy(new Server());
+        small.setQueueCapacity(TaskPriority.NONE, 1);
+        Server big = Mockito.spy(new Server());
+        // give big a head start so small is the first choice for both tasks
+        ts.addServer(big);
+        ts.scheduleTask(new TaskFactory("filler").estimatedDuration(100).build());
+        ts.addServer(small);
+        ts.scheduleTask(new SimpleTask("A"));
+        ts.scheduleTask(new SimpleTask("B"));
+        Map<Server, List<Task>> completed = ts.executeAll();
+        // small ran one task, big ran the filler and the task small turned away
+        assertEquals(1, completed.get(small).size());
+        assertEquals(2, completed.get(big).size());
+        assertEquals(1, small.getStats().getTasksRejected());
+
+        // ensure that when every server is full, the scheduler reports overload
+        System.out.println("TEST 12\n");
+        TaskScheduler ts1 = new TaskScheduler();
+        Server tiny = new Server();
+        tiny.setQueueCapacity(TaskPriority.NONE, 1);
+        ts1.addServer(tiny);
+        ts1.scheduleTask(new SimpleTask("C"));
+        assertThrows(SchedulerFullException.class, () -> ts1.scheduleTask(new SimpleTask("D")));
+        // HIGH tasks still get in since only NONE is limited
+        ts1.scheduleTask(new TaskFactory("E").priority("HIGH").build());
+    }
+
+    // tests that retries avoid the servers a task failed on
+    @Test
+    public void testPlacementAwareRetries(){
+        // ensure that a retry goes to a different server than the one that failed it
+        System.out.println("TEST 15\n");
+        // create scheduler with 2 attempts & no delay
+        TaskScheduler ts = new TaskScheduler(new RetryPolicy(2, new RetryPolicy.UniformTimeout(Duration.ofMillis(0))));
+        // give the good server a head start so the broken server is the first choice
+        Server good = Mockito.spy(new Server());
+        ts.addServer(good);
+        ts.scheduleTask(new TaskFactory("filler").estimatedDuration(100).build());
+        BrokenServer broken = Mockito.spy(new BrokenServer());
+        ts.addServer(broken);
+        // task A goes to the broken server and fails, then the retry goes to the good server
+        ts.scheduleTask(new SimpleTask("A"));
+        Map<Server, List<Task>> completed = ts.executeAll();
+        Mockito.verify(broken, Mockito.times(1)).addTask(Mockito.any());
+        assertTrue(completed.get(good).stream().anyMatch(t -> t.getId().equals("A")));
+
+        // ensure that the broken server's low success rate makes it the last choice for new tasks
+        System.out.println("TEST 16\n");
+        ts.scheduleTask(new SimpleTask("B"));
+        completed = ts.executeAll();
+        assertEquals("B", completed.get(good).get(0).getId());
+        Mockito.verify(broken, Mockito.times(1)).addTask(Mockito.any());
+    }
+
+    // tests jittered backoff & retry budgets
+    @Test
+    public void testRetryBudget(){
+        // ensure that full jitter spreads out retry delays and never goes above the cap
+        System.out.println("TEST 17\n");
+        // create two timeouts capped at 300ms, one with jitter & one without
+        RetryPolicy.ExponentialTimeout plain = new RetryPolicy.ExponentialTimeout(Duration.ofMillis(100), Duration.ofMillis(300), RetryPolicy.Jitter.NONE);
+        RetryPolicy.ExponentialTimeout jittered = new RetryPolicy.ExponentialTimeout(Duration.ofMillis(100), Duration.ofMillis(300), RetryPolicy.Jitter.FULL, new java.util.Random(42));
+        // the 3rd attempt would be 400ms without the cap
+        assertEquals(300, plain.getTimeoutFor(3).toMillis());
+        java.util.Set<Long> delays = new java.util.HashSet<>();
+        for(int i = 0; i < 100; i++){
+            long delay = jittered.getTimeoutFor(3).toMillis();
+            assertTrue(delay >= 0 && delay <= 300);
+            delays.add(delay);
+        }
+        // 100 tasks failing together should not all come back at the same moment
+        assertTrue(delays.size() > 50);
+
+        // ensure that the budget only lets through its share of retries
+        System.out.println("TEST 18\n");
+        // 10% of dispatches can be retries
+        RetryBudget budget = new RetryBudget(0.1, 1, Duration.ofMillis(10000), RetryBudget.Overflow.DROP);
+        for(int i = 0; i < 100; i++)
+            budget.recordDispatch();
+        int allowed = 0;
+        while(budget.tryAcquireRetry())
+            allowed++;
+        assertEquals(10, allowed);
+        assertEquals(10, budget.getRetriesAllowed());
+        assertEquals(1, budget.getRetriesDenied());
+
+        // ensure that a scheduler with a used up budget drops retries instead of flooding the server
+        System.out.println("TEST 19\n");
+        // create scheduler with 3 attempts & no delay, and a budget that only allows the minimum 1 retry
+        TaskScheduler ts = new TaskScheduler(new RetryPolicy(3, new RetryPolicy.UniformTimeout(Duration.ofMillis(0))));
+        ts.setRetryBudget(new RetryBudget(0, 1, Duration.ofMillis(10000), RetryBudget.Overflow.DROP));
+        BrokenServer broken = Mockito.spy(new BrokenServer());
+        ts.addServer(broken);
+        // 20 tasks fail together
+        for(int i = 0; i < 20; i++)
+            ts.scheduleTask(new SimpleTask("fail" + i));
+        ts.executeAll();
+        // 20 first attempts and a single retry
+        Mockito.verify(broken, Mockito.times(21)).addTask(Mockito.any());
+
+        // ensure that deferred retries still run once the budget has room
+        System.out.println("TEST 20\n");
+        // budget allows 1 retry per 200ms window, retries that don't fit wait
+        ts = new TaskScheduler(new RetryPolicy(2, new RetryPolicy.UniformTimeout(Duration.ofMillis(0))));
+        ts.setRetryBudget(new RetryBudget(0, 1, Duration.ofMillis(200), RetryBudget.Overflow.DEFER));
+        broken = Mockito.spy(new BrokenServer());
+        ts.addServer(broken);
+        for(int i = 0; i < 3; i++)
+            ts.scheduleTask(new SimpleTask("fail" + i));
+        LocalTime start = LocalTime.now();
+        ts.executeAll();
+        // every task got its retry, spread out over the windows
+        Mockito.verify(broken, Mockito.times(6)).addTask(Mockito.any());
+        assertTrue(start.until(LocalTime.now(), ChronoUnit.MILLIS) >= 200);
+    }
+
+    // tests that tasks waiting on dependencies can be kept off the heap
+    @Test
+    public void testSpilledDependencies() throws Exception {
+        // ensure that spilled dependent tasks run once their dependencies complete and abandoned ones free their space
+        System.out.println("TEST 21\n");
+        SpillStore store = new SpillStore(java.nio.file.Files.createTempDirectory("spill"), 1024);
+        TaskScheduler ts = new TaskScheduler();
+        Server server = new Server();
+        ts.addServer(server);
+        ts.setSpillStore(store);
+        // B waits on A, C waits on a task that never runs
+        ts.scheduleTask(new SimpleTask("A"));
+        ts.scheduleTask(new TaskFactory("B").dependencies(new String[]{"A"}).build());
+        ts.scheduleTask(new TaskFactory("C").dependencies(new String[]{"missing"}).build());
+        assertEquals(2, store.getStoredTaskCount());
+        Map<Server, List<Task>> completed = ts.executeAll();
+        assertEquals(List.of("A", "B"), completed.get(server).stream().map(Task::getId).toList());
+        assertEquals(0, store.getStoredTaskCount());
+        store.close();
+    }
+
+    // tests that a backlog queued through the scheduler can be kept off the heap
+    @Test
+    public void testSpilledQueue() throws Exception {
+        // ensure that spilled tasks are read back from a server that leaves & re-placed
+        System.out.println("TEST 22\n");
+        SpillStore store = new SpillStore(java.nio.file.Files.createTempDirectory("spill"));
+        Server leaving = new Server();
+        leaving.setSpillStore(store, 2);
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(leaving);
+        for(int i = 0; i < 10; i++)
+            ts.scheduleTask(new SimpleTask("task" + i));
+        assertTrue(store.getStoredTaskCount() > 0);
+        Server staying = new Server();
+        ts.addServer(staying);
+        ts.removeServer(leaving);
+        Map<Server, List<Task>> completed = ts.executeAll();
+        assertEquals(10, completed.get(staying).size());
+        store.close();
+    }
+
+    // server that fails every task it's given
+    private static class BrokenServer extends Server {
+        // tasks waiting to "run", tasks that failed last batch & total tasks failed
+        private List<Task> queued = new ArrayList<>();
+        private List<Task> failed = new ArrayList<>();
+        private int numFailed = 0;
+
+        @Override
+        public void addTask(Task task){
+            queued.add(task);
+        }
+
+        @Override
+        public List<Task> getUnfinishedTasks(){
+            return new ArrayList<>(queued);
+        }
+
+        @Override
+        public List<Task> executeTasks(){
+            // every task fails
+            failed = queued;
+            queued = new ArrayList<>();
+            numFailed += failed.size();
+            return new ArrayList<>();
+        }
+
+        @Override
+        public List<Task> getFailedTasks(){
+            return new ArrayList<>(failed);
+        }
+
+        @Override
+        public ServerStats getStats(){
+            return new ServerStats(numFailed, 0, numFailed, Duration.ofMillis(0));
+        }
+    }
+
+    // tests that straggling idempotent tasks get a backup copy on another server
+    @Test
+    public void testHedging(){
+        // ensure that a straggler is beaten by its backup copy
+        System.out.println("TEST 13\n");
+        // create scheduler with two servers and hedge after 2x the estimate
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(new Server());
+        ts.addServer(new Server());
+        HedgingPolicy policy = new HedgingPolicy(0.95, 5, 2);
+        ts.setHedgingPolicy(policy);
+        // first run of the task takes 3 seconds, the backup copy takes 10ms
+        StragglerTask.runs.set(0);
+        ts.scheduleTask(new StragglerTask("straggler"));
+        LocalTime start = LocalTime.now();
+        Map<Server, List<Task>> completed = ts.executeAll();
+        // ensure the task completed quickly through the backup
+        assertTrue(start.until(LocalTime.now(), ChronoUnit.MILLIS) < 1000);
+        assertEquals(1, completed.values().stream().mapToInt(List::size).sum());
+        assertEquals(1, policy.getHedgesLaunched());
+        assertEquals(1, policy.getHedgesWon());
+        assertTrue(policy.getWastedTime().toMillis() > 0);
+
+        // ensure that tasks that aren't idempotent are never hedged
+        System.out.println("TEST 14\n");
+        ts.scheduleTask(new TaskFactory("slow").estimatedDuration(10).duration(200).build());
+        ts.executeAll();
+        assertEquals(1, policy.getHedgesLaunched());
+    }
+
+    // idempotent task whose first run is a straggler (3s) and whose later runs take 10ms
+    private static class StragglerTask extends SimpleTask {
+        // counts executions across copies
+        static final AtomicInteger runs = new AtomicInteger();
+
+        // completion flag (volatile since it's set from the task's thread)
+        private volatile boolean done = false;
+
+        StragglerTask(String id){
+            super(id, Duration.ofMillis(10), 0);
+        }
+
+        @Override
+        public Future<Void> execute(){
+            // pick the run length based on which run this is
+            long sleep = runs.getAndIncrement() == 0 ? 3000 : 10;
+            return Executors.newSingleThreadExecutor().submit(() -> {
+                Thread.sleep(sleep);
+                done = true;
+                return null;
+            });
+        }
+
+        @Override
+        public boolean isCompleted(){
+            return done;
+        }
+
+        @Override
+        public boolean isIdempotent(){
+            return true;
+        }
+    }
+
     // instructions: 
     // final List<LocalTime> destarr = new ArrayList<>();
     // Mockito.doAnswer(trackInvocationTime(destarr)).when(<mock or spy>).<method call>();
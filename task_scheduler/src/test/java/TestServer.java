@@ -1,7 +1,13 @@
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.inOrder;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
 import org.junit.jupiter.api.Test;
 
 import taskscheduler.*;
@@ -66,4 +72,64 @@ public class TestServer {
         assertEquals(1, server.getFailedTasks().size());
         assertEquals("B", server.getFailedTasks().get(0).getId());
     }
+
+    @Test
+    public void testQueueCapacity(){
+        // ensure that lower priorities are shed first when the queue fills up
+        System.out.println("TEST 4\n");
+        // create server with room for 4 tasks (HIGH: 4, MEDIUM: 3, LOW: 2, NONE: 1)
+        Server server = new Server();
+        server.setQueueCapacity(4);
+        // one NONE task fits, the second is rejected
+        server.addTask(new TaskFactory("none1").build());
+        assertThrows(ServerFullException.class, () -> server.addTask(new TaskFactory("none2").build()));
+        // LOW tasks fit until 2 tasks are queued
+        server.addTask(new TaskFactory("low1").priority("LOW").build());
+        assertThrows(ServerFullException.class, () -> server.addTask(new TaskFactory("low2").priority("LOW").build()));
+        // HIGH tasks can still use the rest of the queue
+        server.addTask(new TaskFactory("high1").priority("HIGH").build());
+        server.addTask(new TaskFactory("high2").priority("HIGH").build());
+        assertThrows(ServerFullException.class, () -> server.addTask(new TaskFactory("high3").priority("HIGH").build()));
+        assertEquals(4, server.getQueuedTaskCount());
+        assertEquals(3, server.getStats().getTasksRejected());
+        // executing frees the queue
+        assertEquals(4, server.executeTasks().size());
+        assertEquals(0, server.getQueuedTaskCount());
+        server.addTask(new TaskFactory("none3").build());
+    }
+
+    @Test
+    public void testSpillQueue() throws Exception {
+        // ensure that spilled tasks still run in priority order, first in first out within a priority
+        System.out.println("TEST 5\n");
+        // 1KB segments & only 2 tasks of each priority on the heap
+        Path dir = Files.createTempDirectory("spill");
+        SpillStore store = new SpillStore(dir, 1024);
+        Server server = new Server();
+        server.setSpillStore(store, 2);
+        // add 20 LOW tasks then 20 HIGH tasks
+        for(int i = 0; i < 20; i++)
+            server.addTask(new TaskFactory("low" + i).priority("LOW").build());
+        for(int i = 0; i < 20; i++)
+            server.addTask(new TaskFactory("high" + i).priority("HIGH").build());
+        // everything but the hot windows is in the store, spread over several segments
+        assertEquals(36, store.getStoredTaskCount());
+        assertTrue(store.getSegmentCount() > 1);
+        // execute & check the order
+        List<String> order = server.executeTasks().stream().map(Task::getId).toList();
+        assertEquals(40, order.size());
+        assertEquals("high0", order.get(0));
+        assertEquals("high19", order.get(19));
+        assertEquals("low0", order.get(20));
+        assertEquals("low19", order.get(39));
+        // the store is empty and its used up segments are deleted
+        assertEquals(0, store.getStoredTaskCount());
+        assertTrue(store.getSegmentCount() <= 1);
+
+        // ensure that spilling can't be switched while tasks are queued
+        System.out.println("TEST 6\n");
+        server.addTask(new SimpleTask("queued"));
+        assertThrows(IllegalStateException.class, () -> server.setSpillStore(null, 1));
+        store.close();
+    }
 }
@@ -0,0 +1,71 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.Test;
+
+import taskscheduler.*;
+
+public class TestTaskHandle {
+
+    @Test
+    public void testHandles() {
+        // ensure that a handle completes with the completed task as soon as its batch is done
+        System.out.println("TEST 1\n");
+        Server server = new Server();
+        TaskScheduler ts = new TaskScheduler(new RetryPolicy(2, new RetryPolicy.UniformTimeout(Duration.ofMillis(0))));
+        ts.addServer(server);
+        CompletableFuture<Task> a = ts.scheduleTask(new SimpleTask("A"));
+        CompletableFuture<Task> b = ts.scheduleTask(new TaskFactory("B").dependencies(new String[]{"A"}).build());
+        // A's handle is done before B runs
+        List<String> order = new ArrayList<>();
+        a.thenAccept(t -> order.add(t.getId() + " done, B " + (b.isDone() ? "done" : "waiting")));
+        assertFalse(a.isDone());
+        ts.executeAll();
+        assertEquals(List.of("A done, B waiting"), order);
+        assertTrue(a.join().isCompleted());
+        assertEquals("B", b.join().getId());
+
+        // ensure that a duplicate submission gets the same handle
+        System.out.println("TEST 2\n");
+        CompletableFuture<Task> c = ts.scheduleTask(new SimpleTask("C"));
+        assertSame(c, ts.scheduleTask(new SimpleTask("C")));
+        ts.executeAll();
+        assertTrue(c.isDone());
+
+        // ensure that abandoned tasks complete their handles exceptionally with the reason
+        System.out.println("TEST 3\n");
+        CompletableFuture<Task> failing = ts.scheduleTask(new SimpleTask("F"){
+            @Override
+            public boolean isCompleted(){
+                return false;
+            }
+        });
+        CompletableFuture<Task> orphan = ts.scheduleTask(new TaskFactory("D").dependencies(new String[]{"missing"}).build());
+        ts.executeAll();
+        CompletionException e = assertThrows(CompletionException.class, failing::join);
+        assertEquals("too many attempts", ((TaskAbandonedException)e.getCause()).getReason());
+        assertEquals("incomplete dependencies", ((TaskAbandonedException)assertThrows(CompletionException.class, orphan::join).getCause()).getReason());
+
+        // ensure that handles compose into pipelines (the next task is scheduled when the first finishes)
+        System.out.println("TEST 4\n");
+        CompletableFuture<Task> pipeline = ts.scheduleTask(new SimpleTask("step1"))
+            .thenCompose(t -> ts.scheduleTask(new SimpleTask(t.getId() + "-step2")));
+        ts.executeAll();
+        assertEquals("step1-step2", pipeline.join().getId());
+
+        // ensure that a task submitted without a handle runs, & a handle asked for later still completes
+        System.out.println("TEST 5\n");
+        ts.submitTask(new SimpleTask("quiet"));
+        ts.submitTask(new SimpleTask("watched"));
+        CompletableFuture<Task> watched = ts.getHandle("watched");
+        assertSame(watched, ts.getHandle("watched"));
+        assertNull(ts.getHandle("unknown"));
+        assertEquals(2, ts.executeAll().get(server).size());
+        assertTrue(watched.join().isCompleted());
+        assertNull(ts.getHandle("quiet"));
+    }
+}
@@ -0,0 +1,54 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import taskscheduler.*;
+
+public class TestTaskIdRegistry {
+
+    @Test
+    public void testInterning() {
+        // ensure that an id keeps its handle while it's referenced & the handle is reused once it's released
+        System.out.println("TEST 1\n");
+        TaskIdRegistry ids = new TaskIdRegistry(2);
+        int a = ids.acquire("A");
+        int b = ids.acquire("B");
+        assertEquals(a, ids.acquire("A"));
+        assertEquals(a, ids.find("A"));
+        assertEquals("B", ids.idOf(b));
+        assertEquals(TaskIdRegistry.NONE, ids.find("C"));
+        // A has 2 references, so it's still there after 1 release
+        ids.release(a);
+        assertEquals(a, ids.find("A"));
+        ids.release(a);
+        assertEquals(TaskIdRegistry.NONE, ids.find("A"));
+        assertNull(ids.idOf(a));
+        assertEquals(1, ids.size());
+        // the next new id gets A's old handle
+        assertEquals(a, ids.acquire("C"));
+        assertEquals(2, ids.handleLimit());
+        assertThrows(IllegalArgumentException.class, () -> ids.release(5));
+
+        // ensure that lookups stay right through growth & lots of removals (removal shifts entries in the table)
+        System.out.println("TEST 2\n");
+        TaskIdRegistry many = new TaskIdRegistry();
+        Map<String, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        for(int i = 0; i < 20_000; i++){
+            String id = "task" + random.nextInt(5_000);
+            Integer handle = expected.remove(id);
+            if(handle == null)
+                expected.put(id, many.acquire(id));
+            else
+                many.release(handle);
+        }
+        assertEquals(expected.size(), many.size());
+        expected.forEach((id, handle) -> assertEquals(handle, many.find(id)));
+        // handles are recycled, so they never go past the most ids that were interned at once
+        assertTrue(many.handleLimit() <= 5_000);
+    }
+}
@@ -0,0 +1,115 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import taskscheduler.*;
+
+public class TestTaskSource {
+
+    @Test
+    public void testStreaming() throws IOException {
+        // ensure that tasks are pulled from a file a window at a time and dependencies work in both directions
+        System.out.println("TEST 1\n");
+        // A runs first, "early" depends on "late" which is near the end of the file, "after" depends on A which completed long before
+        List<String> lines = new ArrayList<>();
+        lines.add("{\"id\": \"A\", \"priority\": \"HIGH\"}");
+        lines.add("{\"id\": \"early\", \"dependencies\": [\"late\"]}");
+        IntStream.range(0, 40).forEach(i -> lines.add("{\"id\": \"task" + i + "\", \"estimatedDuration\": 1}"));
+        lines.add("");
+        lines.add("{\"id\": \"after\", \"dependencies\": [\"A\"]}");
+        lines.add("{\"id\": \"late\"}");
+        Path file = Files.createTempFile("tasks", ".jsonl");
+        Files.write(file, lines);
+        // server that records how many tasks it had queued at each batch
+        WindowServer server = new WindowServer();
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(server);
+        ts.setTaskSource(new JsonLinesTaskSource(file), 5);
+        Map<Server, List<Task>> completed = ts.executeAll();
+        List<String> ids = completed.get(server).stream().map(Task::getId).toList();
+        // every task ran, and the dependent tasks ran after their dependencies
+        assertEquals(44, ids.size());
+        assertTrue(ids.indexOf("late") < ids.indexOf("early"));
+        assertTrue(ids.contains("after"));
+        // never more than the window was queued at once
+        assertTrue(server.maxQueued <= 5);
+        assertTrue(server.maxQueued > 0);
+        Files.delete(file);
+
+        // ensure that a source over an iterator works & that bad lines are reported with their line number
+        System.out.println("TEST 2\n");
+        ts.setTaskSource(TaskSource.of(List.of(new SimpleTask("X"), new SimpleTask("Y")).iterator()), 1);
+        assertEquals(2, ts.executeAll().get(server).size());
+        Path bad = Files.createTempFile("tasks", ".jsonl");
+        Files.write(bad, List.of("{\"id\": \"ok\"}", "{\"id\": 5}"));
+        JsonLinesTaskSource source = new JsonLinesTaskSource(bad);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, source::next);
+        assertTrue(e.getMessage().startsWith("line 2"));
+        source.close();
+        Files.delete(bad);
+
+        // ensure that wrong types & trailing text are reported like other bad lines (including on the first line)
+        System.out.println("TEST 3\n");
+        for(String line : List.of("{\"id\": \"a\", \"priority\": 3}", "{\"id\": \"a\", \"priority\": \"URGENT\"}",
+                "{\"id\": \"a\", \"dependencies\": \"b\"}", "{\"id\": \"a\"} extra")){
+            Path wrong = Files.createTempFile("tasks", ".jsonl");
+            Files.write(wrong, List.of(line));
+            e = assertThrows(IllegalArgumentException.class, () -> new JsonLinesTaskSource(wrong));
+            assertTrue(e.getMessage().startsWith("line 1"));
+            Files.delete(wrong);
+        }
+    }
+
+    @Test
+    public void testParsing() throws IOException {
+        // ensure that unicode escapes (backslash u & 4 hex digits) in strings are decoded
+        System.out.println("TEST 4\n");
+        Path file = Files.createTempFile("tasks", ".jsonl");
+        Files.write(file, List.of("{\"id\": \"\\u0041\\u00e9\", \"dependencies\": [\"b\\u002fc\"]}"));
+        JsonLinesTaskSource source = new JsonLinesTaskSource(file);
+        Task task = source.next();
+        assertEquals("A\u00e9", task.getId());
+        assertEquals(Set.of("b/c"), task.getDependencies());
+        source.close();
+        Files.delete(file);
+
+        // ensure that fractions, exponents & bad escapes are rejected with the line number & a clear message
+        System.out.println("TEST 5\n");
+        for(String line : List.of("{\"id\": \"a\", \"duration\": 1.5}", "{\"id\": \"a\", \"duration\": 1e3}", "{\"id\": \"a\", \"duration\": 2E1}")){
+            Path wrong = Files.createTempFile("tasks", ".jsonl");
+            Files.write(wrong, List.of("{\"id\": \"ok\"}", line));
+            JsonLinesTaskSource bad = new JsonLinesTaskSource(wrong);
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, bad::next);
+            assertTrue(e.getMessage().startsWith("line 2"));
+            assertTrue(e.getMessage().contains("whole"));
+            bad.close();
+            Files.delete(wrong);
+        }
+        Path wrong = Files.createTempFile("tasks", ".jsonl");
+        Files.write(wrong, List.of("{\"id\": \"\\u00g1\"}"));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new JsonLinesTaskSource(wrong));
+        assertTrue(e.getMessage().startsWith("line 1"));
+        assertTrue(e.getMessage().contains("hex"));
+        Files.delete(wrong);
+    }
+
+    // server that records the most tasks it had queued when a batch started
+    private static class WindowServer extends Server {
+        int maxQueued = 0;
+
+        @Override
+        public synchronized List<Task> executeTasks(){
+            maxQueued = Math.max(maxQueued, getQueuedTaskCount());
+            return super.executeTasks();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import taskscheduler.*;
+
+public class TestTenantFairness {
+
+    @Test
+    public void testFairShare() {
+        // ensure that a tenant submitting a few tasks isn't stuck behind a tenant that submitted many
+        System.out.println("TEST 1\n");
+        Server server = new Server();
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(server);
+        ts.setTenantFairness(true);
+        for(int i = 0; i < 20; i++)
+            ts.scheduleTask(new TenantTask("bulk" + i, "bulk", 2));
+        for(int i = 0; i < 4; i++)
+            ts.scheduleTask(new TenantTask("interactive" + i, "interactive", 2));
+        List<String> order = completionOrder(ts);
+        assertEquals(24, order.size());
+        // the tenants take turns until interactive runs out
+        assertEquals(4, order.subList(0, 8).stream().filter(id -> id.startsWith("interactive")).count());
+        PerformanceMonitor stats = ts.getStats();
+        assertTrue(stats.getAverageQueueWait("interactive").toMillis() < stats.getAverageQueueWait("bulk").toMillis());
+        assertEquals(20, stats.getTasksCompleted("bulk"));
+        assertTrue(stats.getTenantThroughput("interactive") > 0);
+
+        // ensure that tenants get batches in proportion to their shares
+        System.out.println("TEST 2\n");
+        ts.setTenantShare("bulk", 3);
+        for(int i = 0; i < 20; i++){
+            ts.scheduleTask(new TenantTask("bulk" + i, "bulk", 0));
+            ts.scheduleTask(new TenantTask("interactive" + i, "interactive", 0));
+        }
+        order = completionOrder(ts);
+        assertEquals(6, order.subList(0, 8).stream().filter(id -> id.startsWith("bulk")).count());
+        assertThrows(IllegalArgumentException.class, () -> ts.setTenantShare("bulk", 0));
+
+        // ensure that without tenant fairness tasks run in the order they were submitted
+        System.out.println("TEST 3\n");
+        ts.setTenantFairness(false);
+        for(int i = 0; i < 8; i++)
+            ts.scheduleTask(new TenantTask("bulk" + i, "bulk", 0));
+        ts.scheduleTask(new TenantTask("interactive", "interactive", 0));
+        assertEquals("interactive", completionOrder(ts).get(8));
+    }
+
+    @Test
+    public void testTenantLimit() {
+        // ensure that a tenant never has more than its limit of tasks on the servers at once
+        System.out.println("TEST 1\n");
+        List<Integer> batchSizes = new ArrayList<>();
+        Server server = new Server(){
+            @Override
+            public List<Task> executeTasks(){
+                batchSizes.add(getQueuedTaskCount());
+                return super.executeTasks();
+            }
+        };
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(server);
+        ts.setTenantFairness(true);
+        ts.setTenantLimit("capped", 2);
+        for(int i = 0; i < 6; i++)
+            ts.scheduleTask(new TenantTask("capped" + i, "capped", 0));
+        for(int i = 0; i < 2; i++)
+            ts.scheduleTask(new TenantTask("free" + i, "free", 0));
+        assertEquals(8, completionOrder(ts).size());
+        assertEquals(List.of(4, 2, 2), batchSizes);
+        assertThrows(IllegalArgumentException.class, () -> ts.setTenantLimit("capped", 0));
+    }
+
+    // runs every scheduled task & returns the ids in the order they completed
+    private static List<String> completionOrder(TaskScheduler ts){
+        List<String> order = new ArrayList<>();
+        ts.executeAll(new ResultSink(){
+            @Override
+            public void completed(Server s, Task task){
+                order.add(task.getId());
+            }
+        });
+        return order;
+    }
+
+    // task that belongs to a tenant
+    private static class TenantTask extends SimpleTask {
+        private final String tenant;
+
+        TenantTask(String id, String tenantValue, long millis){
+            super(id, Duration.ofMillis(millis), millis);
+            tenant = tenantValue;
+        }
+
+        @Override
+        public String getTenant(){
+            return tenant;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import taskscheduler.*;
+
+public class TestTimers {
+
+    @Test
+    public void testTimerWheel() {
+        // ensure that a million timers each come due on the first advance at or after their time
+        System.out.println("TEST 1\n");
+        // each item is its own due time
+        TimerWheel<Long> timed = new TimerWheel<>(0, 1, 256);
+        Random random = new Random(7);
+        for(int i = 0; i < 1_000_000; i++){
+            long due = 1 + random.nextLong(100_000_000);
+            timed.add(due, due);
+        }
+        assertEquals(1_000_000, timed.size());
+        long last = 0;
+        int fired = 0;
+        for(long now = 1; now <= 100_000_000; now *= 3){
+            for(long due : timed.advance(now)){
+                assertTrue(due <= now && due > last);
+                fired++;
+            }
+            last = now;
+        }
+        fired += timed.advance(100_000_000).size();
+        assertEquals(1_000_000, fired);
+        assertEquals(0, timed.size());
+
+        // ensure that timers fire in the right step when the wheel is advanced a little at a time
+        System.out.println("TEST 2\n");
+        TimerWheel<Long> stepped = new TimerWheel<>(1_000, 10, 8);
+        for(int i = 0; i < 10_000; i++){
+            long due = 1_000 + random.nextLong(50_000);
+            stepped.add(due, due);
+        }
+        // & one far enough out to need every level
+        stepped.add(Long.MAX_VALUE / 2, Long.MAX_VALUE / 2);
+        last = 1_000;
+        for(long now = 1_007; now <= 60_000; now += 7){
+            for(long due : stepped.advance(now))
+                assertTrue(due <= now && due > last);
+            last = now;
+        }
+        assertEquals(1, stepped.size());
+        assertThrows(IllegalArgumentException.class, () -> new TimerWheel<String>(0, 0, 8));
+
+        // ensure that a timer taken out before its time never comes due
+        System.out.println("TEST 3\n");
+        TimerWheel<String> removing = new TimerWheel<>(0, 1, 8);
+        removing.add("soon", 5);
+        removing.add("far", 1_000_000);
+        assertTrue(removing.remove("far", 1_000_000));
+        assertFalse(removing.remove("far", 1_000_000));
+        assertEquals(1, removing.size());
+        assertEquals(List.of("soon"), removing.advance(2_000_000));
+        assertFalse(removing.remove("soon", 5));
+    }
+
+    @Test
+    public void testDelayed() throws InterruptedException {
+        // ensure that a delayed task waits for its time without executeAll waiting for it
+        System.out.println("TEST 1\n");
+        Server server = new Server();
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(server);
+        CompletableFuture<Task> later = ts.scheduleAt(new SimpleTask("later"), Instant.now().plusMillis(150));
+        CompletableFuture<Task> now = ts.scheduleAt(new SimpleTask("now"), Instant.now().minusMillis(1));
+        long start = System.currentTimeMillis();
+        assertEquals(List.of("now"), ids(ts.executeAll().get(server)));
+        assertTrue(System.currentTimeMillis() - start < 150);
+        assertTrue(now.isDone());
+        assertFalse(later.isDone());
+        assertEquals(1, ts.getPendingTimers());
+        Thread.sleep(200);
+        assertEquals(List.of("later"), ids(ts.executeAll().get(server)));
+        assertTrue(later.isDone());
+
+        // ensure that a delayed task keeps its priority & is retried like any other task
+        System.out.println("TEST 2\n");
+        TaskScheduler retrying = new TaskScheduler(new RetryPolicy(3, new RetryPolicy.UniformTimeout(Duration.ofMillis(10))));
+        Server retryServer = new Server();
+        retrying.addServer(retryServer);
+        FlakyTask flaky = new FlakyTask("flaky");
+        retrying.scheduleAt(flaky, Instant.now());
+        retrying.scheduleTask(new SimpleTask("plain"));
+        retrying.scheduleAt(new TaskFactory("urgent").priority("HIGH").build(), Instant.now());
+        Thread.sleep(5);
+        List<String> order = new ArrayList<>();
+        retrying.executeAll(new ResultSink(){
+            @Override
+            public void completed(Server s, Task task){
+                order.add(task.getId());
+            }
+        });
+        assertEquals("urgent", order.get(0));
+        assertTrue(order.contains("flaky"));
+        assertEquals(2, flaky.runs.get());
+
+        // ensure that a cancelled delayed task doesn't run
+        System.out.println("TEST 3\n");
+        ts.scheduleAt(new SimpleTask("never"), Instant.now());
+        assertTrue(ts.cancel("never"));
+        assertTrue(ts.executeAll().get(server).isEmpty());
+
+        // ensure that cancelling a delayed task takes its timer out right away & the task is dropped by the next executeAll
+        System.out.println("TEST 4\n");
+        CompletableFuture<Task> distant = ts.scheduleAt(new SimpleTask("distant"), Instant.now().plusSeconds(3600));
+        assertEquals(1, ts.getPendingTimers());
+        assertTrue(ts.cancel("distant"));
+        assertEquals(0, ts.getPendingTimers());
+        assertTrue(distant.isCancelled());
+        List<String> dropped = new ArrayList<>();
+        ts.executeAll(new ResultSink(){
+            @Override
+            public void completed(Server s, Task task){
+            }
+
+            @Override
+            public void abandoned(Task task, String reason){
+                dropped.add(task.getId() + ": " + reason);
+            }
+        });
+        assertEquals(List.of("distant: cancelled"), dropped);
+        // submitting it again before it's dropped takes the cancellation back & keeps its time
+        ts.scheduleAt(new SimpleTask("again"), Instant.now().plusSeconds(3600));
+        assertTrue(ts.cancel("again"));
+        ts.scheduleTask(new SimpleTask("again"));
+        assertTrue(ts.executeAll().get(server).isEmpty());
+        assertEquals(1, ts.getPendingTimers());
+    }
+
+    @Test
+    public void testRecurring() throws InterruptedException, IOException {
+        // ensure that a recurring task runs once per period that executeAll comes around in
+        System.out.println("TEST 1\n");
+        Server server = new Server();
+        TaskScheduler ts = new TaskScheduler();
+        ts.addServer(server);
+        ts.scheduleEvery(new SimpleTask("heartbeat"), Duration.ofMillis(40));
+        long start = System.currentTimeMillis();
+        int runs = 0;
+        for(int i = 0; i < 4; i++){
+            Thread.sleep(50);
+            runs += ts.executeAll().get(server).size();
+        }
+        // at least one run per executeAll, & never more than one per period that passed
+        assertTrue(runs >= 4);
+        assertTrue(runs <= (System.currentTimeMillis() - start) / 40);
+        assertEquals(1, ts.getPendingTimers());
+
+        // ensure that cancelling stops it
+        System.out.println("TEST 2\n");
+        assertTrue(ts.cancel("heartbeat"));
+        assertFalse(ts.cancel("heartbeat"));
+        Thread.sleep(50);
+        assertTrue(ts.executeAll().get(server).isEmpty());
+        assertEquals(0, ts.getPendingTimers());
+        assertThrows(IllegalArgumentException.class, () -> ts.scheduleEvery(new SimpleTask("bad"), Duration.ofMillis(0)));
+
+        // ensure that every run executes with a journal (a run that completed doesn't make the next one look already done)
+        System.out.println("TEST 3\n");
+        Path file = Files.createTempFile("journal", ".log");
+        TaskJournal journal = new TaskJournal(file);
+        TaskScheduler journaled = new TaskScheduler();
+        journaled.addServer(server);
+        journaled.setJournal(journal);
+        journaled.scheduleEvery(new SimpleTask("heartbeat"), Duration.ofMillis(20));
+        runs = 0;
+        for(int i = 0; i < 3; i++){
+            Thread.sleep(30);
+            runs += journaled.executeAll().get(server).size();
+        }
+        assertTrue(runs >= 3);
+        journal.close();
+        Files.delete(file);
+    }
+
+    // returns the ids of a list of tasks
+    private static List<String> ids(List<Task> tasks){
+        return tasks.stream().map(Task::getId).toList();
+    }
+
+    // task that fails the first time it runs
+    private static class FlakyTask extends SimpleTask {
+        final AtomicInteger runs = new AtomicInteger();
+
+        FlakyTask(String id){
+            super(id);
+        }
+
+        @Override
+        public Future<Void> execute(){
+            if(runs.incrementAndGet() == 1)
+                throw new TaskException("first run fails");
+            return super.execute();
+        }
+    }
+}